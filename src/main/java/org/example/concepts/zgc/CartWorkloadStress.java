@@ -0,0 +1,379 @@
+package org.example.concepts.zgc;
+
+import ch.qos.logback.classic.Level;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.example.dto.cart.CartItemRequest;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.example.service.CartEngine;
+import org.example.service.CartService;
+import org.example.service.ShardedCartEngine;
+import org.example.service.SnowflakeIdGenerator;
+import org.example.service.SyncCartEngine;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cart Workload Driver: the REAL cart stack under load, in process
+ *
+ * PURPOSE:
+ * RetailMemoryStress allocates synthetic Orders. This driver instead runs the
+ * production CartService -> CartEngine -> CartRepository path (no HTTP, no Spring
+ * context) with a configurable operation mix, so cart nodes can be sized and
+ * regressions caught before they reach a load test.
+ *
+ * REPORTS:
+ * - ops/sec every second while running
+ * - per operation: count, throughput, latency p50/p90/p99/p99.9/max,
+ *   and bytes allocated per operation (com.sun.management.ThreadMXBean)
+ * - live carts and retained heap per cart after a full GC
+ *
+ * ============================================================================
+ * RUN
+ * ============================================================================
+ *
+ * mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *
+ * java --enable-preview -Xmx1G -XX:+UseZGC -XX:+ZGenerational \
+ *      -cp target/classes:$(cat target/cp.txt) org.example.concepts.zgc.CartWorkloadStress \
+ *      threads=8 customers=10000 duration=30s warmup=5s engine=sync \
+ *      mix=add:35,addFirst:10,remove:20,undo:10,redo:5,clear:5,get:15
+ *
+ * ARGUMENTS (key=value, all optional):
+ *   threads     worker threads                         (default: CPU cores)
+ *   customers   distinct customer ids (cardinality)    (default: 10000)
+ *   duration    measured run, e.g. 30s / 2m            (default: 30s)
+ *   warmup      unmeasured JIT warm-up                 (default: 5s)
+ *   engine      sync | sharded                         (default: sync)
+ *   shards      sharded engine writer threads          (default: CPU cores)
+ *   products    distinct product names                 (default: 500)
+ *   history     undo/redo depth per cart               (default: 10)
+ *   mix         weighted operations: add, addFirst, remove, undo, redo, clear, get
+ *   log         true keeps CartService INFO logging    (default: false)
+ *
+ * NOTE: bytes/op is measured per operation on the worker thread. With
+ * engine=sharded the cart mutation runs on a writer thread, so only the
+ * caller's share (request building, future, hand-off) is counted.
+ */
+public class CartWorkloadStress {
+
+    enum Op { ADD, ADD_FIRST, REMOVE, UNDO, REDO, CLEAR, GET }
+
+    private static final String DEFAULT_MIX = "add:35,addFirst:10,remove:20,undo:10,redo:5,clear:5,get:15";
+    private static final long MAX_LATENCY_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private static volatile boolean running = true;
+    private static volatile boolean measuring = false;
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.parseInt(options.getOrDefault("threads", Integer.toString(cores)));
+        int customers = Integer.parseInt(options.getOrDefault("customers", "10000"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "30s"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "5s"));
+        String engineName = options.getOrDefault("engine", "sync");
+        int shards = Integer.parseInt(options.getOrDefault("shards", Integer.toString(cores)));
+        int products = Integer.parseInt(options.getOrDefault("products", "500"));
+        int history = Integer.parseInt(options.getOrDefault("history", "10"));
+        Op[] opTable = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+
+        if (!Boolean.parseBoolean(options.getOrDefault("log", "false"))) {
+            // CartService logs every call at INFO - at millions of ops/sec that IS the benchmark
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.example")).setLevel(Level.ERROR);
+        }
+
+        /* STEP 1: Wire the production cart stack by hand (no journal, no Spring context) */
+        ProductCatalog productCatalog = new ProductCatalog();
+        CartRepository repository = new CartRepository(history, Duration.ofHours(1), Duration.ofSeconds(1),
+                new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+                productCatalog, new SimpleMeterRegistry());
+        CartEngine engine = switch (engineName) {
+            case "sync" -> new SyncCartEngine(repository);
+            case "sharded" -> new ShardedCartEngine(repository, shards, 1024);
+            default -> throw new IllegalArgumentException("engine must be sync or sharded: " + engineName);
+        };
+        CartService cartService = new CartService(engine, new SnowflakeIdGenerator(1), productCatalog);
+
+        printHeader(threads, customers, duration, warmup, engineName, products, history, opTable);
+
+        /* STEP 2: Start workers - they run through warm-up, then record */
+        List<Worker> workers = new ArrayList<>(threads);
+        List<Thread> workerThreads = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(cartService, engine, opTable, customers, buildRequests(products));
+            workers.add(worker);
+            Thread thread = new Thread(worker, "Worker-" + i);
+            workerThreads.add(thread);
+            thread.start();
+        }
+
+        System.out.printf("[Warm-up] %ds unmeasured...%n", warmup.toSeconds());
+        Thread.sleep(warmup.toMillis());
+        measuring = true;
+        long measureStart = System.nanoTime();
+
+        /* STEP 3: Report throughput once a second - dips are GC pauses or lock contention */
+        long lastTotal = 0;
+        for (long second = 1; second <= duration.toSeconds(); second++) {
+            Thread.sleep(1000);
+            long total = workers.stream().mapToLong(Worker::completed).sum();
+            System.out.printf("[%3ds] ops/sec: %,10d%n", second, total - lastTotal);
+            lastTotal = total;
+        }
+
+        measuring = false;
+        long elapsedNanos = System.nanoTime() - measureStart;
+        running = false;
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+        if (engine instanceof ShardedCartEngine sharded) {
+            sharded.close();
+        }
+
+        /* STEP 4: Merge per-thread results and print the summary */
+        printSummary(workers, elapsedNanos);
+        printRetainedHeap(repository);
+    }
+
+    /**
+     * One load-generating thread. Histograms and counters are thread-confined,
+     * so recording a sample neither allocates nor contends.
+     */
+    private static final class Worker implements Runnable {
+
+        private final CartService cartService;
+        private final CartEngine engine;
+        private final Op[] opTable;
+        private final int customers;
+        private final CartItemRequest[] requests;
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private final Histogram[] latency = new Histogram[Op.values().length];
+        private final long[] allocatedBytes = new long[Op.values().length];
+        // Read by the reporting thread while this worker runs
+        private final AtomicLongArray counts = new AtomicLongArray(Op.values().length);
+        private final AtomicLong completed = new AtomicLong();
+
+        Worker(CartService cartService, CartEngine engine, Op[] opTable, int customers,
+               CartItemRequest[] requests) {
+            this.cartService = cartService;
+            this.engine = engine;
+            this.opTable = opTable;
+            this.customers = customers;
+            this.requests = requests;
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new Histogram(MAX_LATENCY_NANOS, 3);
+            }
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running) {
+                Op op = opTable[random.nextInt(opTable.length)];
+                long customerId = 1 + random.nextInt(customers);
+
+                // Picking the item to remove is setup, not part of the measured operation
+                Long itemId = op == Op.REMOVE ? oldestItemId(customerId) : null;
+                if (op == Op.REMOVE && itemId == null) {
+                    op = Op.ADD;
+                }
+
+                boolean record = measuring;
+                long bytesBefore = record ? threadMXBean.getCurrentThreadAllocatedBytes() : 0;
+                long start = System.nanoTime();
+                switch (op) {
+                    case ADD -> cartService.addItem(customerId, requests[random.nextInt(requests.length)]);
+                    case ADD_FIRST -> cartService.addPriorityItem(customerId, requests[random.nextInt(requests.length)]);
+                    case REMOVE -> cartService.removeItem(customerId, itemId);
+                    case UNDO -> cartService.undoLastAction(customerId);
+                    case REDO -> cartService.redoLastAction(customerId);
+                    case CLEAR -> cartService.clearCart(customerId);
+                    case GET -> cartService.getCartState(customerId);
+                }
+                long nanos = System.nanoTime() - start;
+
+                if (record) {
+                    allocatedBytes[op.ordinal()] += threadMXBean.getCurrentThreadAllocatedBytes() - bytesBefore;
+                    latency[op.ordinal()].recordValue(Math.min(nanos, MAX_LATENCY_NANOS));
+                    counts.incrementAndGet(op.ordinal());
+                    completed.incrementAndGet();
+                }
+            }
+        }
+
+        private Long oldestItemId(long customerId) {
+            return engine.execute(customerId, cartState ->
+                    cartState.getItems().isEmpty() ? null : cartState.getItems().getFirst().getId());
+        }
+
+        long completed() {
+            return completed.get();
+        }
+    }
+
+    private static void printSummary(List<Worker> workers, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println("=================================================================");
+        System.out.printf("SUMMARY (%.1fs measured)%n", seconds);
+        System.out.println("=================================================================");
+        System.out.printf("%-10s %12s %12s %9s %9s %9s %9s %9s %10s%n",
+                "op", "count", "ops/sec", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "bytes/op");
+
+        Histogram all = new Histogram(MAX_LATENCY_NANOS, 3);
+        long allBytes = 0;
+        for (Op op : Op.values()) {
+            Histogram merged = new Histogram(MAX_LATENCY_NANOS, 3);
+            long count = 0;
+            long bytes = 0;
+            for (Worker worker : workers) {
+                merged.add(worker.latency[op.ordinal()]);
+                count += worker.counts.get(op.ordinal());
+                bytes += worker.allocatedBytes[op.ordinal()];
+            }
+            if (count == 0) {
+                continue;
+            }
+            all.add(merged);
+            allBytes += bytes;
+            printRow(op.name().toLowerCase(Locale.ROOT), merged, count, bytes, seconds);
+        }
+        System.out.println("-----------------------------------------------------------------");
+        printRow("total", all, all.getTotalCount(), allBytes, seconds);
+    }
+
+    private static void printRow(String name, Histogram histogram, long count, long bytes, double seconds) {
+        System.out.printf("%-10s %,12d %,12.0f %9.1f %9.1f %9.1f %9.1f %9.1f %,10d%n",
+                name, count, count / seconds,
+                histogram.getValueAtPercentile(50) / 1e3,
+                histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3,
+                histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3,
+                bytes / count);
+    }
+
+    /*
+     * Rough node sizing: heap still in use after a full GC, divided by live carts.
+     * Includes the (small) driver and JVM baseline, so treat it as an upper bound.
+     */
+    private static void printRetainedHeap(CartRepository repository) {
+        AtomicLong carts = new AtomicLong();
+        AtomicLong items = new AtomicLong();
+        repository.forEachCart((id, cartState) -> {
+            carts.incrementAndGet();
+            items.addAndGet(cartState.getItems().size());
+        });
+        System.gc();
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.println();
+        System.out.printf("Live carts: %,d | items: %,d | heap after GC: %.1f MB | ~%,d bytes/cart%n",
+                carts.get(), items.get(), used / 1024.0 / 1024.0,
+                carts.get() == 0 ? 0 : used / carts.get());
+    }
+
+    private static void printHeader(int threads, int customers, Duration duration, Duration warmup,
+                                    String engine, int products, int history, Op[] opTable) {
+        System.out.println("=================================================================");
+        System.out.println("CART WORKLOAD DRIVER: CartService + CartRepository in process");
+        System.out.println("=================================================================");
+        System.out.printf("  Java Version:    %s%n", System.getProperty("java.version"));
+        System.out.printf("  CPU Cores:       %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("  JVM Heap (-Xmx): %.0f MB%n", Runtime.getRuntime().maxMemory() / 1024.0 / 1024.0);
+        System.out.printf("  Threads:         %d%n", threads);
+        System.out.printf("  Customers:       %,d%n", customers);
+        System.out.printf("  Engine:          %s%n", engine);
+        System.out.printf("  Products:        %,d  | Undo depth: %d%n", products, history);
+        System.out.printf("  Warm-up / Run:   %ds / %ds%n", warmup.toSeconds(), duration.toSeconds());
+        Map<Op, Integer> weights = new LinkedHashMap<>();
+        for (Op op : opTable) {
+            weights.merge(op, 1, Integer::sum);
+        }
+        System.out.printf("  Mix (%%):         %s%n", weights);
+        System.out.println();
+    }
+
+    private static CartItemRequest[] buildRequests(int products) {
+        CartItemRequest[] requests = new CartItemRequest[products];
+        for (int i = 0; i < products; i++) {
+            CartItemRequest request = new CartItemRequest();
+            request.setProductName("SKU-" + i);
+            request.setPrice(BigDecimal.valueOf(100 + i * 37L % 10_000, 2));
+            request.setQuantity(1 + i % 3);
+            requests[i] = request;
+        }
+        return requests;
+    }
+
+    /*
+     * "add:35,remove:20,..." -> a 100-slot lookup table, so choosing the next
+     * operation is one random index instead of a weighted search
+     */
+    static Op[] parseMix(String mix) {
+        Map<Op, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] keyValue = part.trim().split(":");
+            Op op = switch (keyValue[0].trim()) {
+                case "add" -> Op.ADD;
+                case "addFirst" -> Op.ADD_FIRST;
+                case "remove" -> Op.REMOVE;
+                case "undo" -> Op.UNDO;
+                case "redo" -> Op.REDO;
+                case "clear" -> Op.CLEAR;
+                case "get" -> Op.GET;
+                default -> throw new IllegalArgumentException("Unknown operation in mix: " + keyValue[0]);
+            };
+            weights.merge(op, Integer.parseInt(keyValue[1].trim()), Integer::sum);
+        }
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("Mix weights must add up to more than zero: " + mix);
+        }
+
+        Op[] table = new Op[100];
+        int slot = 0;
+        int cumulative = 0;
+        for (Map.Entry<Op, Integer> entry : weights.entrySet()) {
+            cumulative += entry.getValue();
+            int end = (int) Math.round(cumulative * 100.0 / total);
+            while (slot < end) {
+                table[slot++] = entry.getKey();
+            }
+        }
+        return table;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Duration parseDuration(String value) {
+        return Duration.parse("PT" + value.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.config;
+
+import org.example.repository.CartRepository;
+import org.example.service.CartEngine;
+import org.example.service.ShardedCartEngine;
+import org.example.service.SyncCartEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cart engine configuration.
+ *
+ *   org.features.sequenced-collections.engine=sync      (default) lock per customer bin
+ *   org.features.sequenced-collections.engine=sharded   single-writer shards
+ *   org.features.sequenced-collections.engine.shards=0            0 = one per core
+ *   org.features.sequenced-collections.engine.queue-capacity=1024
+ *
+ * The sharded engine parks callers while their command runs; pair it with
+ * spring.threads.virtual.enabled=true.
+ */
+@Configuration
+public class CartEngineConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "org.features.sequenced-collections.engine", havingValue = "sync", matchIfMissing = true)
+    public CartEngine syncCartEngine(CartRepository cartRepository) {
+        return new SyncCartEngine(cartRepository);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "org.features.sequenced-collections.engine", havingValue = "sharded")
+    public CartEngine shardedCartEngine(
+            CartRepository cartRepository,
+            @Value("${org.features.sequenced-collections.engine.shards:0}") int shards,
+            @Value("${org.features.sequenced-collections.engine.queue-capacity:1024}") int queueCapacity) {
+        int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        return new ShardedCartEngine(cartRepository, shardCount, queueCapacity);
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.config;
+
+import org.example.repository.journal.CartJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Cart persistence configuration.
+ *
+ * When enabled, every cart change is journaled to memory-mapped segment files
+ * and periodically compacted into a snapshot, so carts survive a restart:
+ *
+ *   org.features.sequenced-collections.persistence.enabled=true
+ *   org.features.sequenced-collections.persistence.directory=data/cart-journal
+ *   org.features.sequenced-collections.persistence.segment-size-mb=64
+ *   org.features.sequenced-collections.persistence.flush-interval-ms=10
+ *   org.features.sequenced-collections.persistence.snapshot-interval-sec=300
+ *
+ * flush-interval-ms is the group-commit window: the most an OS crash can lose.
+ * When disabled, CartRepository stays purely in-memory.
+ */
+@Configuration
+@ConditionalOnProperty(name = "org.features.sequenced-collections.persistence.enabled", havingValue = "true")
+public class CartPersistenceConfig {
+
+    @Bean(destroyMethod = "close")
+    public CartJournal cartJournal(
+            @Value("${org.features.sequenced-collections.persistence.directory:data/cart-journal}") String directory,
+            @Value("${org.features.sequenced-collections.persistence.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${org.features.sequenced-collections.persistence.flush-interval-ms:10}") long flushIntervalMs,
+            @Value("${org.features.sequenced-collections.persistence.snapshot-interval-sec:300}") long snapshotIntervalSec) {
+        return new CartJournal(
+                Path.of(directory),
+                Math.toIntExact(segmentSizeMb * 1024L * 1024L),
+                Duration.ofMillis(flushIntervalMs),
+                Duration.ofSeconds(snapshotIntervalSec));
+    }
+}
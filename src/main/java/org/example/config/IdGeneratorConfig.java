@@ -0,0 +1,38 @@
+package org.example.config;
+
+import org.example.service.IdGenerator;
+import org.example.service.SnowflakeIdGenerator;
+import org.example.service.TransactionIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Id generation configuration.
+ *
+ * Instances whose ids can meet (e.g. carts shared through a common store)
+ * must use distinct node ids (0-1023):
+ *
+ *   --org.features.id-generator.node-id=1
+ *
+ * The same node id is used for payment transaction ids - they come from a
+ * separate generator, so cart item ids and transaction ids never compete for
+ * sequence numbers.
+ *
+ * To plug in another strategy, declare a different IdGenerator bean.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator cartItemIdGenerator(
+            @Value("${org.features.id-generator.node-id:0}") long nodeId) {
+        return new SnowflakeIdGenerator(nodeId);
+    }
+
+    @Bean
+    public TransactionIdGenerator transactionIdGenerator(
+            @Value("${org.features.id-generator.node-id:0}") long nodeId) {
+        return new TransactionIdGenerator(new SnowflakeIdGenerator(nodeId));
+    }
+}
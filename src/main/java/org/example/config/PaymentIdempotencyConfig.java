@@ -0,0 +1,30 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.service.PaymentIdempotencyCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Idempotency-Key cache for POST /api/payment/process.
+ *
+ *   org.features.record-patterns.idempotency.max-entries=100000
+ *   org.features.record-patterns.idempotency.ttl=24h
+ *
+ * A retry arriving after the TTL (or after its entry was pushed out by
+ * max-entries newer keys) is processed as a new payment.
+ */
+@Configuration
+public class PaymentIdempotencyConfig {
+
+    @Bean
+    public PaymentIdempotencyCache paymentIdempotencyCache(
+            @Value("${org.features.record-patterns.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${org.features.record-patterns.idempotency.ttl:24h}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        return new PaymentIdempotencyCache(maxEntries, ttl, meterRegistry, System::nanoTime);
+    }
+}
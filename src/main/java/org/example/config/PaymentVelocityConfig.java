@@ -0,0 +1,35 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.service.velocity.PaymentVelocityEngine;
+import org.example.service.velocity.VelocityLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Payment velocity checks (fraud detection).
+ *
+ *   org.features.record-patterns.fraud-detection=true           off = no engine, no memory
+ *   org.features.record-patterns.velocity.slots=65536           customers tracked at once (~400 B each)
+ *   org.features.record-patterns.velocity.max-payments=10,60,200      per 1m,1h,24h - 0 = no limit
+ *   org.features.record-patterns.velocity.max-amount=5000,20000,50000 dollars per 1m,1h,24h
+ *
+ * A payment over any limit is answered with REQUIRES_VERIFICATION before
+ * the routing rules are consulted.
+ */
+@Configuration
+public class PaymentVelocityConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "org.features.record-patterns.fraud-detection", havingValue = "true")
+    public PaymentVelocityEngine paymentVelocityEngine(
+            @Value("${org.features.record-patterns.velocity.slots:65536}") int slots,
+            @Value("${org.features.record-patterns.velocity.max-payments:10,60,200}") String maxPayments,
+            @Value("${org.features.record-patterns.velocity.max-amount:5000,20000,50000}") String maxAmount,
+            MeterRegistry meterRegistry) {
+        return new PaymentVelocityEngine(slots, VelocityLimits.parse(maxPayments, maxAmount),
+                meterRegistry, System::currentTimeMillis);
+    }
+}
@@ -8,7 +8,9 @@ public class Java21Methods {
     public static final String ADD_LAST = "addLast";
     public static final String GET_FIRST = "getFirst";
     public static final String GET_LAST = "getLast";
+    public static final String REMOVE_FIRST = "removeFirst";
     public static final String REMOVE_LAST = "removeLast";
+    public static final String REVERSED = "reversed";
     public static final String REMOVE = "remove";
     public static final String CLEAR = "clear";
 
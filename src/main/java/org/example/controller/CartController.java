@@ -1,11 +1,17 @@
 package org.example.controller;
 
+import org.example.dto.cart.CartBatchRequest;
 import org.example.dto.cart.CartItemRequest;
 import org.example.dto.common.ApiResponse;
 import org.example.model.cart.*;
 import org.example.constants.Java21Methods;
+import org.example.service.CartEventHub;
 import org.example.service.CartService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,9 +23,11 @@ public class CartController {
 
     private static final Logger logger = LoggerFactory.getLogger(CartController.class);
     private final CartService cartService;
+    private final CartEventHub cartEventHub;
 
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, CartEventHub cartEventHub) {
         this.cartService = cartService;
+        this.cartEventHub = cartEventHub;
     }
 
     // Add regular item to cart end
@@ -62,7 +70,7 @@ public class CartController {
                 .withServiceCall("CartService.removeItem", List.of(Java21Methods.REMOVE));
     }
 
-    // Undo last addition
+    // Undo last action (add, remove or clear)
     @PostMapping("/{customerId}/removelastitem")
     public ApiResponse undoLastAction(@PathVariable Long customerId) {
         logger.info(">>> Received request to undo last action for customer: {}", customerId);
@@ -74,6 +82,18 @@ public class CartController {
                 .withServiceCall("CartService.undoLastAction", List.of(Java21Methods.GET_LAST, Java21Methods.REMOVE_LAST));
     }
 
+    // Redo the most recently undone action
+    @PostMapping("/{customerId}/redo")
+    public ApiResponse redoLastAction(@PathVariable Long customerId) {
+        logger.info(">>> Received request to redo last undone action for customer: {}", customerId);
+
+        cartService.redoLastAction(customerId);
+
+        return new ApiResponse("ShoppingCartController.redoLastAction",
+                "Last undone action re-applied using Sequenced Collection removeLast")
+                .withServiceCall("CartService.redoLastAction", List.of(Java21Methods.GET_LAST, Java21Methods.REMOVE_LAST));
+    }
+
     // Clear entire cart
     @DeleteMapping("/{customerId}")
     public ApiResponse clearCart(@PathVariable Long customerId) {
@@ -86,11 +106,84 @@ public class CartController {
                 .withServiceCall("CartService.clearCart", List.of(Java21Methods.CLEAR));
     }
 
+    // Apply several operations in one request (one lock, one metadata refresh)
+    @PostMapping("/{customerId}/batch")
+    public ResponseEntity<ApiResponse> applyBatch(@PathVariable Long customerId,
+                                                  @RequestBody CartBatchRequest request) {
+        List<CartBatchRequest.Operation> operations = request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            logger.warn(">>> Rejected batch for customer {}: no operations", customerId);
+            return ResponseEntity.badRequest().body(
+                    new ApiResponse("ShoppingCartController.applyBatch", "Batch rejected - no changes applied")
+                            .withError("operations must contain at least one operation"));
+        }
+        logger.info(">>> Received batch of {} operations for customer: {}", operations.size(), customerId);
+
+        try {
+            CartService.BatchResult result = cartService.applyBatch(customerId, operations);
+
+            return ResponseEntity.ok(new ApiResponse("ShoppingCartController.applyBatch",
+                    "Applied " + result.operationsApplied() + " cart operations in a single update")
+                    .withServiceCall("CartService.applyBatch", List.of(
+                            Java21Methods.ADD_LAST, Java21Methods.ADD_FIRST, Java21Methods.REMOVE,
+                            Java21Methods.GET_LAST, Java21Methods.REMOVE_LAST, Java21Methods.CLEAR))
+                    .withMetadata("itemsAdded", result.itemsAdded())
+                    .withMetadata("itemsRemoved", result.itemsRemoved())
+                    .withMetadata("cartSize", result.cartSize()));
+
+        } catch (IllegalArgumentException e) {
+            logger.warn(">>> Rejected batch for customer {}: {}", customerId, e.getMessage());
+            return ResponseEntity.badRequest().body(
+                    new ApiResponse("ShoppingCartController.applyBatch", "Batch rejected - no changes applied")
+                            .withError(e.getMessage()));
+        }
+    }
+
+    // Merge a guest cart into this customer's cart (e.g. right after login)
+    @PostMapping("/{customerId}/merge/{guestCustomerId}")
+    public ApiResponse mergeCart(@PathVariable Long customerId, @PathVariable Long guestCustomerId) {
+        logger.info(">>> Received request to merge cart of {} into cart of customer: {}",
+                guestCustomerId, customerId);
+
+        try {
+            CartService.MergeResult result = cartService.mergeCarts(guestCustomerId, customerId);
+
+            return new ApiResponse("ShoppingCartController.mergeCart",
+                    "Guest cart merged in a single update and released")
+                    .withServiceCall("CartService.mergeCarts", List.of(Java21Methods.ADD_LAST))
+                    .withMetadata("linesMerged", result.linesMerged())
+                    .withMetadata("linesAdded", result.linesAdded())
+                    .withMetadata("linesCombined", result.linesCombined())
+                    .withMetadata("cartSize", result.cartSize());
+
+        } catch (IllegalArgumentException e) {
+            logger.warn(">>> Rejected merge into customer {}: {}", customerId, e.getMessage());
+            return new ApiResponse("ShoppingCartController.mergeCart", "Merge rejected - no changes applied")
+                    .withError(e.getMessage());
+        }
+    }
+
     // Get current cart state (for UI updates)
+    // 💡 The ETag is the cart's version: when the browser revalidates with
+    //    If-None-Match and nothing changed, Spring answers 304 without serializing
+    //    the cart. "no-cache" makes the browser revalidate on every poll.
     @GetMapping("/{customerId}")
-    public CartState getCart(@PathVariable Long customerId) {
+    public ResponseEntity<CartSnapshot> getCart(@PathVariable Long customerId) {
         logger.info(">>> Received request to get cart state for customer: {}", customerId);
 
-        return cartService.getCartState(customerId);
+        CartSnapshot snapshot = cartService.getCartState(customerId);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.eTag())
+                .body(snapshot);
+    }
+
+    // Push cart changes to the browser (Server-Sent Events) instead of polling
+    // 💡 The first "cart" event is the full cart, later ones only what changed
+    @GetMapping(path = "/{customerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCart(@PathVariable Long customerId) {
+        logger.info(">>> Received request to stream cart changes for customer: {}", customerId);
+
+        return cartEventHub.subscribe(customerId);
     }
-}
\ No newline at end of file
+}
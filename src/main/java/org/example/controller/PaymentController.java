@@ -3,10 +3,19 @@ package org.example.controller;
 import org.example.dto.payment.*;
 import org.example.dto.common.ApiResponse;
 import org.example.model.payment.Payment;
+import org.example.model.payment.TracingLevel;
+import org.example.service.PaymentBatchService;
+import org.example.service.PaymentIdempotencyCache;
 import org.example.service.PaymentService;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.routing.PaymentRoutingTable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.ArrayList;
@@ -17,30 +26,49 @@ public class PaymentController {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
     private final PaymentService paymentService;
+    private final PaymentRouter paymentRouter;
+    private final PaymentBatchService paymentBatchService;
+    private final PaymentIdempotencyCache idempotencyCache;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentRouter paymentRouter,
+                             PaymentBatchService paymentBatchService, PaymentIdempotencyCache idempotencyCache) {
         this.paymentService = paymentService;
+        this.paymentRouter = paymentRouter;
+        this.paymentBatchService = paymentBatchService;
+        this.idempotencyCache = idempotencyCache;
         logger.info("PaymentController initialized - Single POST mode");
     }
 
     // Main payment processing endpoint - SIMPLIFIED
+    // With an Idempotency-Key header a retry replays the first response (same transaction id)
     @PostMapping("/process")
-    public ApiResponse processPayment(@RequestBody PaymentRequest request) {
-        logger.info(">>> POST /api/payment/process - Payment processing request received");
-        logger.info("Processing payment: method={}, amount=${}, customer={}, international={}",
+    public ApiResponse processPayment(@RequestBody PaymentRequest request,
+                                      @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        // Per-payment lines are DEBUG - at payment volume they cost more than the payment
+        logger.debug(">>> POST /api/payment/process - Payment processing request received");
+        logger.debug("Processing payment: method={}, amount=${}, customer={}, international={}",
                 request.getPaymentMethod(), request.getAmount(),
                 request.getCustomerType(), request.isInternational());
 
         try {
             Payment payment = request.toPayment();
-            PaymentResponse response = paymentService.processPayment(
-                    payment,
-                    request.getCustomerType(),
-                    request.isInternational()
-            );
+            PaymentResponse response;
+            PaymentIdempotencyCache.Outcome idempotency = null;
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                response = process(payment, request);
+            } else {
+                PaymentIdempotencyCache.Result result = idempotencyCache.execute(
+                        request.getCustomerId(), idempotencyKey, fingerprint(request),
+                        () -> process(payment, request));
+                response = result.response();
+                idempotency = result.outcome();
+            }
 
             ApiResponse apiResponse = createApiResponse(payment, request, response);
-            logger.info("✓ Payment processing completed successfully. Transaction ID: {}",
+            if (idempotency != null) {
+                apiResponse.withMetadata("idempotency", idempotency);
+            }
+            logger.debug("✓ Payment processing completed successfully. Transaction ID: {}",
                     response.getTransactionId());
             return apiResponse;
 
@@ -52,7 +80,71 @@ public class PaymentController {
         }
     }
 
+    // Bulk upload: a JSON array or NDJSON of PaymentRequests in, NDJSON results out (in input order)
+    // e.g. curl -H 'Content-Type: application/x-ndjson' --data-binary @payments.ndjson \
+    //           'localhost:8080/api/payment/batch?onError=fail-fast'
+    @PostMapping(path = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void processBatch(@RequestParam(required = false) String tracing,
+                             @RequestParam(required = false) String onError,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        logger.info(">>> POST /api/payment/batch - streaming batch received (tracing={}, onError={})",
+                tracing, onError);
+
+        TracingLevel tracingLevel;
+        PaymentBatchService.FailureMode failureMode;
+        try {
+            tracingLevel = tracing != null ? TracingLevel.parse(tracing) : null;
+            failureMode = onError != null ? PaymentBatchService.FailureMode.parse(onError) : null;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tracing or onError value");
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        paymentBatchService.processBatch(request.getInputStream(), response.getOutputStream(),
+                tracingLevel, failureMode);
+    }
+
+    // Routing rules currently deciding payment outcomes
+    @GetMapping("/routes")
+    public ApiResponse getRoutes() {
+        logger.info(">>> GET /api/payment/routes");
+        return routesResponse("PaymentController.getRoutes", "Payment routing rules in match order",
+                paymentRouter.current(), paymentRouter);
+    }
+
     // Helper methods
+
+    private PaymentResponse process(Payment payment, PaymentRequest request) {
+        return paymentService.processPayment(
+                payment,
+                request.getCustomerType(),
+                request.isInternational(),
+                request.getTracing()
+        );
+    }
+
+    // What an Idempotency-Key stands for - reusing the key for anything else is an error
+    private static String fingerprint(PaymentRequest request) {
+        BigDecimal amount = request.getAmount();
+        return request.getPaymentMethod().toLowerCase() + "|"
+                + (amount != null ? amount.stripTrailingZeros().toPlainString() : "") + "|"
+                + request.getCustomerType() + "|" + request.isInternational();
+    }
+
+    // Shared with PaymentRoutesAdminController
+    static ApiResponse routesResponse(String controllerMethod, String description,
+                                      PaymentRoutingTable table, PaymentRouter paymentRouter) {
+        return new ApiResponse(controllerMethod, description)
+                .withServiceCall("PaymentRouter.current", List.of("sealed", "switch"))
+                .withMetadata("routes", table.getRoutes())
+                .withMetadata("compiledBands", table.getBandCount())
+                .withMetadata("location", paymentRouter.getLocation());
+    }
     private ApiResponse createApiResponse(Payment payment, PaymentRequest request,
                                           PaymentResponse paymentResponse) {
         String paymentType = getPatternName(request.getPaymentMethod());
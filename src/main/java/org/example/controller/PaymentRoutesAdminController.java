@@ -0,0 +1,68 @@
+package org.example.controller;
+
+import org.example.dto.common.ApiResponse;
+import org.example.service.routing.PaymentRoute;
+import org.example.service.routing.PaymentRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Write access to the payment routing rules.
+ *
+ * These endpoints decide every payment outcome and have no authentication of
+ * their own, so they only exist when explicitly switched on:
+ *
+ *   org.features.record-patterns.routes.admin-enabled=true
+ *
+ * Off by default - the rules are then only read from
+ * org.features.record-patterns.routes at startup. GET /api/payment/routes
+ * (read-only) is always available.
+ */
+@RestController
+@RequestMapping("/api/payment")
+@ConditionalOnProperty(name = "org.features.record-patterns.routes.admin-enabled", havingValue = "true")
+public class PaymentRoutesAdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentRoutesAdminController.class);
+    private final PaymentRouter paymentRouter;
+
+    public PaymentRoutesAdminController(PaymentRouter paymentRouter) {
+        this.paymentRouter = paymentRouter;
+        logger.warn("PaymentRoutesAdminController enabled - routing rules can be changed over HTTP");
+    }
+
+    // Swap in a new rule table without a redeploy - rejected as a whole if it does not compile
+    @PutMapping("/routes")
+    public ApiResponse replaceRoutes(@RequestBody List<PaymentRoute> routes) {
+        logger.info(">>> PUT /api/payment/routes - {} rules", routes.size());
+        try {
+            return PaymentController.routesResponse("PaymentRoutesAdminController.replaceRoutes",
+                    "Payment routing rules replaced", paymentRouter.replace(routes), paymentRouter);
+        } catch (IllegalArgumentException e) {
+            logger.warn(">>> Rejected routing rules: {}", e.getMessage());
+            return new ApiResponse("PaymentRoutesAdminController.replaceRoutes",
+                    "Routing rules rejected - previous rules still active")
+                    .withError(e.getMessage());
+        }
+    }
+
+    // Re-read org.features.record-patterns.routes (e.g. after editing the file)
+    @PostMapping("/routes/reload")
+    public ApiResponse reloadRoutes() {
+        logger.info(">>> POST /api/payment/routes/reload from {}", paymentRouter.getLocation());
+        try {
+            return PaymentController.routesResponse("PaymentRoutesAdminController.reloadRoutes",
+                    "Payment routing rules reloaded", paymentRouter.reload(), paymentRouter);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            logger.warn(">>> Routing rules reload failed: {}", e.getMessage());
+            return new ApiResponse("PaymentRoutesAdminController.reloadRoutes",
+                    "Routing rules reload failed - previous rules still active")
+                    .withError(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.controller;
+
+import org.example.constants.Java21Methods;
+import org.example.dto.common.ApiResponse;
+import org.example.service.RecentlyViewedService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/recently-viewed")
+public class RecentlyViewedController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentlyViewedController.class);
+    private final RecentlyViewedService recentlyViewedService;
+
+    public RecentlyViewedController(RecentlyViewedService recentlyViewedService) {
+        this.recentlyViewedService = recentlyViewedService;
+    }
+
+    // Record a product view - repeat views move to the end, the oldest view drops off
+    @PostMapping("/{customerId}/{productId}")
+    public ApiResponse recordView(@PathVariable long customerId, @PathVariable long productId) {
+        logger.debug(">>> Customer {} viewed product {}", customerId, productId);
+
+        long[] productIds = recentlyViewedService.recordView(customerId, productId);
+
+        return new ApiResponse("RecentlyViewedController.recordView",
+                "Product view recorded using SequencedSet-style addLast")
+                .withServiceCall("RecentlyViewedService.recordView",
+                        List.of(Java21Methods.ADD_LAST, Java21Methods.REMOVE_FIRST, Java21Methods.REVERSED))
+                .withMetadata("productIds", productIds)
+                .withMetadata("capacity", recentlyViewedService.getMaxRecentlyViewed());
+    }
+
+    // Recently viewed product ids, most recent first
+    @GetMapping("/{customerId}")
+    public ApiResponse getRecentlyViewed(@PathVariable long customerId) {
+        logger.debug(">>> Received request for recently viewed products of customer {}", customerId);
+
+        return new ApiResponse("RecentlyViewedController.getRecentlyViewed",
+                "Recently viewed products, most recent first")
+                .withServiceCall("RecentlyViewedService.getRecentlyViewed", List.of(Java21Methods.REVERSED))
+                .withMetadata("productIds", recentlyViewedService.getRecentlyViewed(customerId))
+                .withMetadata("capacity", recentlyViewedService.getMaxRecentlyViewed());
+    }
+
+    @DeleteMapping("/{customerId}")
+    public ApiResponse clearRecentlyViewed(@PathVariable long customerId) {
+        logger.info(">>> Received request to clear recently viewed products for customer {}", customerId);
+
+        recentlyViewedService.clear(customerId);
+
+        return new ApiResponse("RecentlyViewedController.clearRecentlyViewed",
+                "Recently viewed products cleared")
+                .withServiceCall("RecentlyViewedService.clear", List.of(Java21Methods.CLEAR));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.dto.cart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request body for POST /api/cart/{customerId}/batch
+ *
+ * Operations are applied in order, e.g.:
+ * <pre>
+ * { "operations": [
+ *     { "type": "ADD_LAST",  "item": { "productName": "iPhone 15", "price": 999.99, "quantity": 1 } },
+ *     { "type": "ADD_FIRST", "item": { "productName": "AirPods",   "price": 249.00, "quantity": 2 } },
+ *     { "type": "REMOVE",    "itemId": 123456789 },
+ *     { "type": "UNDO" }
+ * ] }
+ * </pre>
+ */
+public class CartBatchRequest {
+    private List<Operation> operations = new ArrayList<>();
+
+    public CartBatchRequest() {}
+
+    public List<Operation> getOperations() { return operations; }
+    public void setOperations(List<Operation> operations) { this.operations = operations; }
+
+    public enum OperationType {
+        ADD_LAST,   // same as POST /addlastitem
+        ADD_FIRST,  // same as POST /addfirstitem
+        REMOVE,     // same as DELETE /items/{itemId}
+        UNDO,       // same as POST /removelastitem
+        REDO,       // same as POST /redo
+        CLEAR       // same as DELETE /{customerId}
+    }
+
+    public static class Operation {
+        private OperationType type;
+        private CartItemRequest item;   // ADD_LAST / ADD_FIRST
+        private Long itemId;            // REMOVE
+
+        public Operation() {}
+
+        public OperationType getType() { return type; }
+        public void setType(OperationType type) { this.type = type; }
+
+        public CartItemRequest getItem() { return item; }
+        public void setItem(CartItemRequest item) { this.item = item; }
+
+        public Long getItemId() { return itemId; }
+        public void setItemId(Long itemId) { this.itemId = itemId; }
+    }
+}
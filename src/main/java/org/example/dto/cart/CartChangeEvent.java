@@ -0,0 +1,67 @@
+package org.example.dto.cart;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.example.model.cart.CartChange;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.CartState;
+import org.example.model.cart.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Payload of a "cart" event on GET /api/cart/{customerId}/stream
+ *
+ * The first event of a stream carries a single ITEMS_REPLACED change with the
+ * whole cart; every later event carries only what changed, plus the updated
+ * totals and getFirst()/getLast() metadata. Events arrive in version order.
+ * When the cart is removed (merged into another cart, expired) an event with
+ * version 0 and an empty ITEMS_REPLACED follows.
+ *
+ * @param incarnation the cart instance the version belongs to (see CartState.getIncarnation())
+ */
+public record CartChangeEvent(
+        @JsonIgnore long incarnation,
+        long version,
+        List<CartChange> changes,
+        BigDecimal totalAmount,
+        int itemCount,
+        int undoDepth,
+        int redoDepth,
+        Product oldestItem,
+        Product newestItem
+) {
+
+    /**
+     * Captures the event - call while holding the customer's lock
+     */
+    public static CartChangeEvent of(CartState cartState, List<CartChange> changes) {
+        return new CartChangeEvent(
+                cartState.getIncarnation(),
+                cartState.getVersion(),
+                changes,
+                cartState.getTotalAmount(),
+                cartState.getItems().size(),
+                cartState.getActionHistory().size(),
+                cartState.getRedoHistory().size(),
+                cartState.getOldestItem(),
+                cartState.getNewestItem());
+    }
+
+    /**
+     * Full-state event sent when a subscriber connects - CartSnapshot.EMPTY for
+     * a customer without a cart (or whose cart was removed)
+     */
+    public static CartChangeEvent snapshot(CartSnapshot snapshot) {
+        return new CartChangeEvent(
+                snapshot.incarnation(),
+                snapshot.version(),
+                List.of(new CartChange.ItemsReplaced(List.copyOf(snapshot.items()))),
+                snapshot.totalAmount(),
+                snapshot.items().size(),
+                snapshot.actionHistory().size(),
+                snapshot.redoHistory().size(),
+                snapshot.oldestItem(),
+                snapshot.newestItem());
+    }
+}
@@ -9,6 +9,7 @@ public class PaymentRequest {
     private Long customerId;
     private CustomerType customerType;
     private boolean isInternational;
+    private TracingLevel tracing;       // optional: off | sampled | full, null = server default
 
     public PaymentRequest() {}
 
@@ -33,5 +34,7 @@ public class PaymentRequest {
     public void setCustomerType(CustomerType customerType) { this.customerType = customerType; }
     public boolean isInternational() { return isInternational; }
     public void setInternational(boolean international) { isInternational = international; }
+    public TracingLevel getTracing() { return tracing; }
+    public void setTracing(TracingLevel tracing) { this.tracing = tracing; }
 }
 
@@ -32,7 +32,7 @@ public class PaymentResponse {
     // Constructors
 
     public PaymentResponse() {
-        this.patternMatchingSteps = new ArrayList<>();
+        this.patternMatchingSteps = List.of();
     }
 
     public PaymentResponse(String transactionId, PaymentStatus status,
@@ -42,7 +42,8 @@ public class PaymentResponse {
         this.processedAmount = processedAmount;
         this.paymentMethod = paymentMethod;
         this.processedAt = LocalDateTime.now();
-        this.patternMatchingSteps = new ArrayList<>();
+        // Shared empty list - untraced payments allocate nothing for their steps
+        this.patternMatchingSteps = List.of();
     }
 
     // Existing getters and setters - unchanged
@@ -116,15 +117,17 @@ public class PaymentResponse {
      * Set the list of pattern matching execution steps
      */
     public void setPatternMatchingSteps(List<PatternMatchingStep> patternMatchingSteps) {
-        this.patternMatchingSteps = patternMatchingSteps != null ? patternMatchingSteps : new ArrayList<>();
+        this.patternMatchingSteps = patternMatchingSteps != null ? patternMatchingSteps : List.of();
     }
 
     /**
      * Add a single pattern matching step
      */
     public void addPatternMatchingStep(PatternMatchingStep step) {
-        if (this.patternMatchingSteps == null) {
-            this.patternMatchingSteps = new ArrayList<>();
+        if (!(this.patternMatchingSteps instanceof ArrayList)) {
+            this.patternMatchingSteps = this.patternMatchingSteps == null
+                    ? new ArrayList<>()
+                    : new ArrayList<>(this.patternMatchingSteps);
         }
         this.patternMatchingSteps.add(step);
     }
@@ -0,0 +1,174 @@
+package org.example.model.cart;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SequencedCollection;
+
+/**
+ * BoundedHistory - Fixed-capacity ring buffer implementing SequencedCollection
+ *
+ * Backs the cart's action history. The backing array is allocated once, at the
+ * configured capacity (org.features.sequenced-collections.max-cart-history);
+ * when it is full, addLast() overwrites the OLDEST entry instead of growing.
+ *
+ * Java 21 APIs used by the undo flow:
+ * - addLast()    → push a new action (O(1), evicts the oldest when full)
+ * - getLast()    → peek at the most recent action
+ * - removeLast() → pop the most recent action
+ *
+ * addFirst() is not supported - history only ever grows at the end.
+ * Not thread-safe - callers mutate it inside CartRepository.mutate().
+ */
+public class BoundedHistory<E> extends AbstractCollection<E> implements SequencedCollection<E> {
+
+    private final Object[] elements;
+    private int head;   // index of the oldest element
+    private int size;
+    private int modCount;
+
+    public BoundedHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Copies the most recent {@code capacity} entries of the given collection
+     */
+    public BoundedHistory(int capacity, Collection<? extends E> source) {
+        this(capacity);
+        source.forEach(this::addLast);
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    @Override
+    public boolean add(E e) {
+        addLast(e);
+        return true;
+    }
+
+    @Override
+    public void addLast(E e) {
+        if (size == elements.length) {
+            // Full: overwrite the oldest slot and advance head
+            elements[head] = e;
+            head = physical(1);
+        } else {
+            elements[physical(size)] = e;
+            size++;
+        }
+        modCount++;
+    }
+
+    @Override
+    public E getFirst() {
+        if (size == 0) throw new NoSuchElementException();
+        return elementAt(0);
+    }
+
+    @Override
+    public E getLast() {
+        if (size == 0) throw new NoSuchElementException();
+        return elementAt(size - 1);
+    }
+
+    @Override
+    public E removeFirst() {
+        E first = getFirst();
+        elements[head] = null;
+        head = physical(1);
+        size--;
+        modCount++;
+        return first;
+    }
+
+    @Override
+    public E removeLast() {
+        E last = getLast();
+        elements[physical(size - 1)] = null;
+        size--;
+        modCount++;
+        return last;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            elements[physical(i)] = null;
+        }
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new RingIterator(false);
+    }
+
+    @Override
+    public SequencedCollection<E> reversed() {
+        return new ReversedView();
+    }
+
+    private int physical(int logicalIndex) {
+        return (head + logicalIndex) % elements.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int logicalIndex) {
+        return (E) elements[physical(logicalIndex)];
+    }
+
+    private final class RingIterator implements Iterator<E> {
+        private final boolean descending;
+        private final int expectedModCount = modCount;
+        private int visited;
+
+        RingIterator(boolean descending) {
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return visited < size;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (visited >= size) throw new NoSuchElementException();
+            int logical = descending ? size - 1 - visited : visited;
+            visited++;
+            return elementAt(logical);
+        }
+    }
+
+    /**
+     * Newest-first view required by SequencedCollection.reversed()
+     */
+    private final class ReversedView extends AbstractCollection<E> implements SequencedCollection<E> {
+
+        @Override public Iterator<E> iterator() { return new RingIterator(true); }
+        @Override public int size() { return size; }
+        @Override public void clear() { BoundedHistory.this.clear(); }
+
+        @Override public E getFirst() { return BoundedHistory.this.getLast(); }
+        @Override public E getLast() { return BoundedHistory.this.getFirst(); }
+        @Override public E removeFirst() { return BoundedHistory.this.removeLast(); }
+        @Override public E removeLast() { return BoundedHistory.this.removeFirst(); }
+        @Override public SequencedCollection<E> reversed() { return BoundedHistory.this; }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.model.cart;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.util.List;
+
+/**
+ * CartAction - One undoable step in a cart's history
+ *
+ * Each action is a small diff that can be reverted (undo) and re-applied (redo);
+ * none of them holds a copy of the cart it was applied to:
+ * - Added:   the item and whether it went to the front (priority) or the end
+ * - Removed: the item and the id of the item that preceded it, so undo puts it
+ *            back in exactly the same position
+ * - Cleared: the cleared lines as a plain immutable list - one reference per
+ *            line, no index or links; undo rebuilds the collection from it
+ * - Merged:  only the guest's lines, the id of the cart line each one went into,
+ *            and the guest's undo log - undo takes those quantities back out
+ *            (dropping lines the merge appended) and hands the guest its lines
+ *            and history again (CartService re-attaches the guest cart)
+ *
+ * Undo/redo is linear: any new action discards the redo stack, so when an action
+ * is reverted the cart is always in the state the action produced.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = CartAction.Added.class, name = "ADDED"),
+        @JsonSubTypes.Type(value = CartAction.Removed.class, name = "REMOVED"),
+        @JsonSubTypes.Type(value = CartAction.Cleared.class, name = "CLEARED"),
+        @JsonSubTypes.Type(value = CartAction.Merged.class, name = "MERGED")
+})
+public sealed interface CartAction {
+
+    record Added(CartItem item, boolean priority) implements CartAction {}
+
+    /**
+     * @param predecessorId id of the item before the removed one, null if it was first
+     */
+    record Removed(CartItem item, Long predecessorId) implements CartAction {}
+
+    /**
+     * @param items     the cleared lines in order (immutable)
+     * @param itemCount lines cleared
+     */
+    record Cleared(@JsonIgnore List<CartItem> items, int itemCount) implements CartAction {
+
+        public Cleared(List<CartItem> items) {
+            this(items, items.size());
+        }
+    }
+
+    /**
+     * @param fromCustomerId the (guest) cart whose lines were merged in
+     * @param guestItems     the guest's lines as they were merged
+     * @param lineIds        for each guest line, the id of the cart line it went
+     *                       into: an existing line of the same product, or the
+     *                       appended line - whose id is then its own (first line
+     *                       of a new product) or an earlier guest line's
+     * @param guestHistory   the guest's undo log, oldest first
+     * @param itemCount      lines after the merge, fixed at creation
+     */
+    record Merged(long fromCustomerId,
+                  @JsonIgnore List<CartItem> guestItems,
+                  @JsonIgnore long[] lineIds,
+                  @JsonIgnore List<CartAction> guestHistory,
+                  int itemCount) implements CartAction {}
+
+    /**
+     * The form CartSnapshot publishes: display-only copies of Cleared and Merged
+     * without the lines and guest history, which readers never need.
+     * Such copies cannot be undone.
+     */
+    default CartAction published() {
+        return switch (this) {
+            case Added added -> added;
+            case Removed removed -> removed;
+            case Cleared cleared -> new Cleared(null, cleared.itemCount());
+            case Merged merged -> new Merged(merged.fromCustomerId(), List.of(), new long[0],
+                    List.of(), merged.itemCount());
+        };
+    }
+
+    /**
+     * Short human-readable description for logs
+     */
+    default String describe() {
+        return switch (this) {
+            case Added(CartItem item, boolean priority) ->
+                    (priority ? "priority add of '" : "add of '") + item.getProduct().name() + "'";
+            case Removed(CartItem item, Long predecessorId) -> "removal of '" + item.getProduct().name() + "'";
+            case Cleared cleared -> "clear of " + cleared.itemCount() + " items";
+            case Merged merged -> "merge of cart " + merged.fromCustomerId();
+        };
+    }
+}
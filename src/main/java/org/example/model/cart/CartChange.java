@@ -0,0 +1,32 @@
+package org.example.model.cart;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.util.List;
+
+/**
+ * CartChange - The effect of an applied command on the visible item list
+ *
+ * Unlike CartCommand (what was asked) and CartAction (what can be undone), a
+ * change describes what a client must do to its copy of the cart:
+ * - ItemAdded:     insert item after afterItemId (at the front when null)
+ * - ItemRemoved:   drop the line with this id
+ * - ItemsReplaced: replace all lines (clear, undo of a clear, initial state)
+ *
+ * Only produced while a cart is watched - see CartState.setTrackChanges().
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = CartChange.ItemAdded.class, name = "ITEM_ADDED"),
+        @JsonSubTypes.Type(value = CartChange.ItemRemoved.class, name = "ITEM_REMOVED"),
+        @JsonSubTypes.Type(value = CartChange.ItemsReplaced.class, name = "ITEMS_REPLACED")
+})
+public sealed interface CartChange {
+
+    record ItemAdded(CartItem item, Long afterItemId) implements CartChange {}
+
+    record ItemRemoved(long itemId) implements CartChange {}
+
+    record ItemsReplaced(List<CartItem> items) implements CartChange {}
+}
@@ -0,0 +1,56 @@
+package org.example.model.cart;
+
+import java.util.List;
+
+/**
+ * CartCommand - Every change that can be made to a CartState
+ *
+ * Sealed so that CartState.apply() can switch over it exhaustively, and so that
+ * the same commands can be journaled to disk and replayed on startup.
+ *
+ * Commands are applied with CartState.apply() inside CartRepository.mutate().
+ */
+public sealed interface CartCommand {
+
+    /**
+     * Add an item to the end of the cart, or to the front when {@code priority}
+     */
+    record AddItem(CartItem item, boolean priority) implements CartCommand {}
+
+    /**
+     * Remove the line with the given item id (no-op when absent)
+     */
+    record RemoveItem(long itemId) implements CartCommand {}
+
+    /**
+     * Revert the most recent action (add, remove, clear or merge)
+     */
+    record UndoLast() implements CartCommand {}
+
+    /**
+     * Re-apply the most recently undone action
+     */
+    record RedoLast() implements CartCommand {}
+
+    /**
+     * Remove every line (undoable)
+     */
+    record ClearCart() implements CartCommand {}
+
+    /**
+     * Fold another customer's cart lines into this cart (undoable as one step).
+     * Lines for a product already in the cart add their quantity to it, other
+     * lines are appended in order. The source cart is released by the caller;
+     * the journal entry for this command records that release too.
+     *
+     * @param history the source cart's undo log, kept with the merge so undoing
+     *                it gives the source cart back its history. Not journaled -
+     *                recovery takes it from the recovered source cart.
+     */
+    record MergeItems(long fromCustomerId, List<CartItem> items, List<CartAction> history) implements CartCommand {
+
+        public MergeItems(long fromCustomerId, List<CartItem> items) {
+            this(fromCustomerId, items, List.of());
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package org.example.model.cart;
 
 import java.math.BigDecimal;
-import java.util.Random; // Added this import
 
 /**
  * CartItem - Represents a single item in the shopping cart
  *
  * Design decisions:
  * - Final fields for immutability
- * - Unique ID for tracking individual cart entries
+ * - Unique ID for tracking individual cart entries (assigned by an IdGenerator)
  * - Separate quantity and unit price
  */
 public class CartItem {
@@ -26,15 +25,6 @@ public class CartItem {
         this.unitPrice = unitPrice;
     }
 
-    /**
-     * Generates unique ID for each cart item
-     * In production, use UUID or database sequence
-     */
-    public static Long generateId() {
-        // Updated to match slide version
-        return System.currentTimeMillis() + new Random().nextInt(1000);
-    }
-
     // --- All setters removed ---
 
     public Long getId() { return id; }
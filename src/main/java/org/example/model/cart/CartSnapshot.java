@@ -0,0 +1,49 @@
+package org.example.model.cart;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * CartSnapshot - Immutable, published view of a cart for readers
+ *
+ * CartState is mutable and only safe to touch under the customer's lock.
+ * Readers (GET /api/cart/{id}) get a CartSnapshot instead:
+ * - published by the writer through a volatile field after each change
+ * - items are a PersistentCartItems version that shares structure with the
+ *   previous one, so publishing never copies the cart
+ * - serializing it while the cart keeps changing can neither throw
+ *   ConcurrentModificationException nor mix two versions
+ *
+ * Serializes to the same JSON fields as CartState.
+ *
+ * @param incarnation   identity of the cart instance (see CartState.getETag())
+ * @param actionHistory undo log, oldest first (bounded by max-cart-history)
+ * @param redoHistory   redo log, most recently undone last
+ */
+public record CartSnapshot(
+        long version,
+        @JsonIgnore long incarnation,
+        PersistentCartItems items,
+        List<CartAction> actionHistory,
+        List<CartAction> redoHistory,
+        Product oldestItem,
+        Product newestItem,
+        BigDecimal totalAmount
+) {
+
+    /**
+     * Stands in for a customer who has no cart yet - reads never create one
+     */
+    public static final CartSnapshot EMPTY = new CartSnapshot(0, 0, PersistentCartItems.EMPTY,
+            List.of(), List.of(), null, null, BigDecimal.ZERO.setScale(2));
+
+    /**
+     * Entity tag for conditional GETs - built per read, so writes do not pay for it
+     */
+    @JsonIgnore
+    public String eTag() {
+        return CartState.eTagOf(incarnation, version);
+    }
+}
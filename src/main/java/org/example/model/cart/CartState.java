@@ -1,7 +1,14 @@
 package org.example.model.cart;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SequencedCollection;
+import java.util.concurrent.atomic.AtomicLong;
 import java.math.BigDecimal;
 
 /**
@@ -19,6 +26,13 @@ import java.math.BigDecimal;
  * ✅ Provides getFirst(), getLast(), addFirst(), addLast(), removeFirst(), removeLast()
  * ✅ Better semantic meaning - "this collection maintains insertion order"
  * ✅ Future-proof - designed for Java 21+ features
+ *
+ * All changes go through apply(CartCommand), which switches over the sealed
+ * CartCommand hierarchy. Applied commands are kept until CartRepository drains
+ * them into the durable cart journal.
+ *
+ * CartState is only safe to use under the customer's lock. Readers instead get
+ * the immutable CartSnapshot published by publishSnapshot().
  */
 public class CartState {
 
@@ -27,16 +41,433 @@ public class CartState {
     // private List<CartItem> actionHistory = new ArrayList<>();
 
     // ✅ FIX #1: Use SequencedCollection - explicitly shows we care about order
-    // 💡 BEST PRACTICE: Declare with SequencedCollection interface, implement with ArrayList
-    private SequencedCollection<CartItem> items = new ArrayList<>();
-    private SequencedCollection<CartItem> actionHistory = new ArrayList<>();
+    // 💡 Items use IndexedCartItems (linked list + id index) so addFirst() and
+    //    remove-by-id are O(1); the undo and redo logs are fixed-size ring buffers
+    //    of CartAction diffs sized from org.features.sequenced-collections.max-cart-history
+    private IndexedCartItems items = new IndexedCartItems();
+    private BoundedHistory<CartAction> actionHistory;
+    private BoundedHistory<CartAction> redoHistory;
 
     // ✅ FIX #2: Maintain metadata for first/last item tracking using Java 21 APIs
     // These fields are dynamically updated after every cart modification
     private Product oldestItem;
     private Product newestItem;
 
-    public CartState() {}
+    // Commands applied since CartRepository last drained them (lazily allocated)
+    private List<CartCommand> pendingCommands;
+    // Visible-list changes since the last drain - only collected while trackChanges
+    private List<CartChange> pendingChanges;
+    private boolean trackChanges;
+    private boolean applying;
+    // Sequence number of the last journal entry reflected in this cart
+    private long journalSequence;
+    // Seeded from the clock so a cart recreated after expiry or a restart never
+    // reuses the (incarnation, version) pair of an earlier cart
+    private static final AtomicLong INCARNATIONS = new AtomicLong(System.currentTimeMillis() << 20);
+    private final long incarnation = INCARNATIONS.incrementAndGet();
+    // Bumped by every change made through apply(); read without the cart lock
+    private volatile long version;
+
+    // Expiry-wheel tick of the last access (written on every repository call)
+    private volatile long lastAccessTick;
+
+    // Last published read-only view - null until the cart is first read
+    private volatile CartSnapshot snapshot;
+
+    // Matches the default of org.features.sequenced-collections.max-cart-history
+    public static final int DEFAULT_MAX_HISTORY = 10;
+
+    public CartState() {
+        this(DEFAULT_MAX_HISTORY);
+    }
+
+    /**
+     * @param maxHistory number of actions kept for undo; older ones are overwritten
+     */
+    public CartState(int maxHistory) {
+        this.actionHistory = new BoundedHistory<>(maxHistory);
+        this.redoHistory = new BoundedHistory<>(maxHistory);
+    }
+
+    /**
+     * Applies a change to this cart and remembers it for the journal.
+     *
+     * @return true if the cart changed (no-ops such as removing an unknown id
+     *         or undoing with an empty history are not recorded)
+     */
+    public boolean apply(CartCommand command) {
+        applying = true;
+        boolean changed;
+        try {
+            changed = replay(command);
+        } finally {
+            applying = false;
+        }
+        if (changed) {
+            version++; // single writer - the caller holds the customer's lock
+            if (pendingCommands == null) {
+                pendingCommands = new ArrayList<>(2);
+            }
+            pendingCommands.add(command);
+        }
+        return changed;
+    }
+
+    /**
+     * Applies a change WITHOUT recording it - used when replaying the journal.
+     * Exhaustive pattern matching over the sealed CartCommand hierarchy.
+     */
+    public boolean replay(CartCommand command) {
+        return switch (command) {
+            case CartCommand.AddItem(CartItem item, boolean priority) -> {
+                if (priority) {
+                    // JAVA 21 API: addFirst() - Insert at FRONT of collection (position 0)
+                    items.addFirst(item);
+                } else {
+                    // JAVA 21 API: addLast() - Explicitly add to END of collection
+                    items.addLast(item);
+                }
+                record(new CartAction.Added(item, priority));
+                changedAdded(item);
+                yield true;
+            }
+            case CartCommand.RemoveItem(long itemId) -> {
+                CartItem predecessor = items.itemBefore(itemId);
+                CartItem removed = items.removeById(itemId);
+                if (removed == null) {
+                    yield false;
+                }
+                record(new CartAction.Removed(removed, predecessor != null ? predecessor.getId() : null));
+                changed(new CartChange.ItemRemoved(itemId));
+                yield true;
+            }
+            case CartCommand.UndoLast() -> undo();
+            case CartCommand.RedoLast() -> redo();
+            case CartCommand.ClearCart() -> {
+                if (items.isEmpty()) {
+                    yield false;
+                }
+                // Undo keeps only the lines (a flat array of references), not the
+                // collection's links and index; an empty collection is swapped in
+                record(new CartAction.Cleared(List.copyOf(items)));
+                items = new IndexedCartItems();
+                changed(new CartChange.ItemsReplaced(List.of()));
+                yield true;
+            }
+            case CartCommand.MergeItems(long fromCustomerId, List<CartItem> incoming, List<CartAction> guestHistory) -> {
+                if (incoming.isEmpty()) {
+                    yield false;
+                }
+                // Merged in place; undo keeps only the guest lines and where each went
+                long[] lineIds = mergeIn(incoming);
+                record(new CartAction.Merged(fromCustomerId, List.copyOf(incoming), lineIds,
+                        List.copyOf(guestHistory), items.size()));
+                changedAllItems();
+                yield true;
+            }
+        };
+    }
+
+    /*
+     * One pass over each cart - O(existing + incoming):
+     * 1. Index the first line of every product already in the cart
+     * 2. Incoming lines for those products become extra quantity on that line;
+     *    lines for new products are collected in order (duplicates among them
+     *    summed into the first one)
+     * 3. Only then change the cart: replace the raised lines in place, append
+     *    the new ones - so a quantity overflow or an id clash changes nothing
+     * Products are interned (ProductCatalog), so equal products hash cheaply.
+     *
+     * @return for each incoming line, the id of the cart line it went into
+     */
+    private long[] mergeIn(List<CartItem> incoming) {
+        Map<Product, CartItem> firstLine = new HashMap<>(items.size() * 2);
+        for (CartItem item : items) {
+            firstLine.putIfAbsent(item.getProduct(), item);
+        }
+
+        long[] lineIds = new long[incoming.size()];
+        Map<Long, CartItem> raised = new LinkedHashMap<>();
+        Map<Product, CartItem> newLines = new LinkedHashMap<>();
+        for (int i = 0; i < lineIds.length; i++) {
+            CartItem item = incoming.get(i);
+            CartItem existing = firstLine.get(item.getProduct());
+            if (existing != null) {
+                CartItem line = raised.getOrDefault(existing.getId(), existing);
+                raised.put(existing.getId(), withQuantityOf(line, item));
+                lineIds[i] = existing.getId();
+            } else {
+                CartItem line = newLines.merge(item.getProduct(), item, CartState::withQuantityOf);
+                if (line == item && items.findById(item.getId()) != null) {
+                    throw new IllegalArgumentException("Duplicate cart item id: " + item.getId());
+                }
+                lineIds[i] = line.getId();
+            }
+        }
+
+        raised.values().forEach(items::replace);
+        newLines.values().forEach(items::addLast);
+        return lineIds;
+    }
+
+    /*
+     * Reverts mergeIn() from the cart it produced, walking the guest lines
+     * backwards: each one's quantity comes off the line it went into, and a
+     * line the merge appended is dropped once its first guest line is reached.
+     */
+    private void mergeOut(CartAction.Merged merged) {
+        List<CartItem> guestItems = merged.guestItems();
+        for (int i = guestItems.size() - 1; i >= 0; i--) {
+            CartItem guestLine = guestItems.get(i);
+            long lineId = merged.lineIds()[i];
+            if (lineId == guestLine.getId()) {
+                items.removeById(lineId);
+            } else {
+                CartItem line = items.findById(lineId);
+                items.replace(new CartItem(line.getId(), line.getProduct(),
+                        line.getQuantity() - guestLine.getQuantity(), line.getUnitPrice()));
+            }
+        }
+    }
+
+    private static CartItem withQuantityOf(CartItem line, CartItem other) {
+        return new CartItem(line.getId(), line.getProduct(),
+                Math.addExact(line.getQuantity(), other.getQuantity()), line.getUnitPrice());
+    }
+
+    private void changedAllItems() {
+        if (trackChanges && applying) {
+            changed(new CartChange.ItemsReplaced(List.copyOf(items)));
+        }
+    }
+
+    /**
+     * Pattern: Action History as Stack
+     * - addLast() when recording an action (push) - a new action invalidates redo
+     * - removeLast() to undo (pop), then push onto the redo stack
+     */
+    private void record(CartAction action) {
+        actionHistory.addLast(action);
+        redoHistory.clear();
+    }
+
+    private boolean undo() {
+        if (actionHistory.isEmpty()) {
+            return false;
+        }
+        // JAVA 21 API: removeLast() - Pop most recent action from history
+        CartAction action = actionHistory.removeLast();
+        switch (action) {
+            case CartAction.Added(CartItem item, boolean priority) -> {
+                items.removeById(item.getId());
+                changed(new CartChange.ItemRemoved(item.getId()));
+            }
+            case CartAction.Removed(CartItem item, Long predecessorId) -> {
+                items.addAfter(predecessorId, item);
+                changedAdded(item);
+            }
+            case CartAction.Cleared cleared -> {
+                items = new IndexedCartItems(cleared.items());
+                changedAllItems();
+            }
+            case CartAction.Merged merged -> {
+                mergeOut(merged);
+                changedAllItems();
+                // The guest lines go back to the guest cart (restoreLines()), so
+                // there is nothing left here to redo - merging again redoes it
+                return true;
+            }
+        }
+        redoHistory.addLast(action);
+        return true;
+    }
+
+    private boolean redo() {
+        if (redoHistory.isEmpty()) {
+            return false;
+        }
+        CartAction action = redoHistory.removeLast();
+        switch (action) {
+            case CartAction.Added(CartItem item, boolean priority) -> {
+                if (priority) {
+                    items.addFirst(item);
+                } else {
+                    items.addLast(item);
+                }
+                changedAdded(item);
+            }
+            case CartAction.Removed(CartItem item, Long predecessorId) -> {
+                items.removeById(item.getId());
+                changed(new CartChange.ItemRemoved(item.getId()));
+            }
+            case CartAction.Cleared cleared -> {
+                items = new IndexedCartItems();
+                changed(new CartChange.ItemsReplaced(List.of()));
+            }
+            // undo() never pushes a merge, and snapshots drop the ones older
+            // versions did (CartJournalCodec.readAction())
+            case CartAction.Merged merged ->
+                    throw new IllegalStateException("A merge cannot be redone: " + merged.describe());
+        }
+        actionHistory.addLast(action);
+        return true;
+    }
+
+    /**
+     * Gives back lines and history that an undone merge took from this (guest)
+     * cart - see CartAction.Merged. Lines already in the cart are kept and go
+     * after the returned ones; the returned undo log is older than this cart's.
+     *
+     * Not a CartCommand: it is the second half of the account cart's journaled
+     * UndoLast, which recovery replays by calling this method too.
+     */
+    public void restoreLines(List<CartItem> lines, List<CartAction> history) {
+        applying = true;
+        try {
+            for (CartItem line : lines.reversed()) {
+                if (items.findById(line.getId()) == null) {
+                    items.addFirst(line);
+                }
+            }
+            if (!history.isEmpty()) {
+                List<CartAction> combined = new ArrayList<>(history);
+                combined.addAll(actionHistory);
+                actionHistory = new BoundedHistory<>(actionHistory.capacity(), combined);
+            }
+            if (trackChanges) {
+                changed(new CartChange.ItemsReplaced(List.copyOf(items)));
+            }
+        } finally {
+            applying = false;
+        }
+        version++;
+    }
+
+    private void changedAdded(CartItem item) {
+        if (trackChanges && applying) {
+            CartItem predecessor = items.itemBefore(item.getId());
+            changed(new CartChange.ItemAdded(item, predecessor != null ? predecessor.getId() : null));
+        }
+    }
+
+    private void changed(CartChange change) {
+        if (trackChanges && applying) {
+            if (pendingChanges == null) {
+                pendingChanges = new ArrayList<>(2);
+            }
+            pendingChanges.add(change);
+        }
+    }
+
+    /**
+     * Turns collection of CartChanges on or off - set by CartRepository for carts
+     * that have live subscribers, so unwatched carts pay nothing
+     */
+    public void setTrackChanges(boolean trackChanges) {
+        this.trackChanges = trackChanges;
+        if (!trackChanges) {
+            pendingChanges = null;
+        }
+    }
+
+    /**
+     * @return visible-list changes since the previous call, oldest first
+     */
+    public List<CartChange> drainPendingChanges() {
+        if (pendingChanges == null || pendingChanges.isEmpty()) {
+            return List.of();
+        }
+        List<CartChange> drained = pendingChanges;
+        pendingChanges = null;
+        return drained;
+    }
+
+    /**
+     * @return commands applied since the previous call, oldest first
+     */
+    public List<CartCommand> drainPendingCommands() {
+        if (pendingCommands == null || pendingCommands.isEmpty()) {
+            return List.of();
+        }
+        List<CartCommand> drained = pendingCommands;
+        pendingCommands = null;
+        return drained;
+    }
+
+    @JsonIgnore
+    public long getJournalSequence() { return journalSequence; }
+    public void setJournalSequence(long journalSequence) { this.journalSequence = journalSequence; }
+
+    /**
+     * Monotonically increasing change counter, also exposed to the UI
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Identity of this cart instance - a cart recreated later gets a new one
+     */
+    @JsonIgnore
+    public long getIncarnation() { return incarnation; }
+
+    /**
+     * Entity tag for conditional GETs - changes whenever the cart changes
+     */
+    @JsonIgnore
+    public String getETag() {
+        return eTagOf(incarnation, version);
+    }
+
+    static String eTagOf(long incarnation, long version) {
+        return "\"" + Long.toHexString(incarnation) + "-" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * Publishes the current state for lock-free readers and returns it.
+     * Call under the customer's lock (CartRepository does, after each change).
+     *
+     * 💡 Cheap: items.persistentView() is already up to date (O(log n) per change),
+     *    the history copies are bounded by max-cart-history, and nothing is
+     *    republished when the version has not moved.
+     */
+    public CartSnapshot publishSnapshot() {
+        CartSnapshot current = snapshot;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+        // JAVA 21 API: getFirst() / getLast() - same metadata as updateMetadata()
+        CartSnapshot published = new CartSnapshot(
+                version,
+                incarnation,
+                items.persistentView(),
+                publishedCopy(actionHistory),
+                publishedCopy(redoHistory),
+                items.isEmpty() ? null : items.getFirst().getProduct(),
+                items.isEmpty() ? null : items.getLast().getProduct(),
+                items.getTotalAmount());
+        snapshot = published;
+        return published;
+    }
+
+    // Readers get the actions without the live item collections they hold
+    private static List<CartAction> publishedCopy(BoundedHistory<CartAction> history) {
+        CartAction[] copy = new CartAction[history.size()];
+        int i = 0;
+        for (CartAction action : history) {
+            copy[i++] = action.published();
+        }
+        return List.of(copy);
+    }
+
+    /**
+     * @return the last published snapshot (a single volatile read), or null if
+     *         this cart has never been read
+     */
+    @JsonIgnore
+    public CartSnapshot getSnapshot() { return snapshot; }
+
+    @JsonIgnore
+    public long getLastAccessTick() { return lastAccessTick; }
+    public void touch(long tick) { this.lastAccessTick = tick; }
 
     /**
      * ✅ BEST PRACTICE: Update metadata using Java 21 Sequenced Collections API
@@ -63,19 +494,19 @@ public class CartState {
     }
 
     /**
-     * ✅ BEST PRACTICE: Calculate total using stream operations
-     * Demonstrates combining Java 8 Streams with Java 21 Collections
+     * ✅ BEST PRACTICE: Keep the total incrementally instead of re-streaming
+     * IndexedCartItems maintains a running total in fixed-point cents on every
+     * add/remove/clear; it is converted to BigDecimal only here, at the API boundary.
      */
     public BigDecimal getTotalAmount() {
-        return items.stream()
-                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return items.getTotalAmount();
     }
 
     /**
-     * @return SequencedCollection guaranteeing insertion order is maintained
+     * @return SequencedCollection guaranteeing insertion order is maintained,
+     *         with O(1) findById() / removeById()
      */
-    public SequencedCollection<CartItem> getItems() {
+    public IndexedCartItems getItems() {
         return items;
     }
 
@@ -83,20 +514,43 @@ public class CartState {
      * @param items SequencedCollection ensuring order preservation
      */
     public void setItems(SequencedCollection<CartItem> items) {
-        this.items = items;
+        this.items = items instanceof IndexedCartItems indexed ? indexed : new IndexedCartItems(items);
+        this.snapshot = null; // not a versioned change - readers re-publish under the lock
         updateMetadata(); // auto-refresh metadata when items are set
     }
 
     /**
-     * @return SequencedCollection of actions for undo/redo functionality
-     * Uses getLast() and removeLast() for stack-like LIFO behavior
+     * @return SequencedCollection of actions for undo functionality, oldest first
+     * Uses getLast() and removeLast() for stack-like LIFO behavior.
+     * Bounded: only the most recent max-cart-history actions are kept.
      */
-    public SequencedCollection<CartItem> getActionHistory() {
+    public SequencedCollection<CartAction> getActionHistory() {
         return actionHistory;
     }
 
-    public void setActionHistory(SequencedCollection<CartItem> actionHistory) {
-        this.actionHistory = actionHistory;
+    public void setActionHistory(SequencedCollection<CartAction> actionHistory) {
+        this.actionHistory = new BoundedHistory<>(this.actionHistory.capacity(), actionHistory);
+        this.snapshot = null;
+    }
+
+    /**
+     * @return undone actions that can be redone, most recently undone last
+     */
+    public SequencedCollection<CartAction> getRedoHistory() {
+        return redoHistory;
+    }
+
+    public void setRedoHistory(SequencedCollection<CartAction> redoHistory) {
+        this.redoHistory = new BoundedHistory<>(this.redoHistory.capacity(), redoHistory);
+        this.snapshot = null;
+    }
+
+    /**
+     * @return true if there is nothing to keep: no items and nothing to undo or redo
+     */
+    @JsonIgnore
+    public boolean isBlank() {
+        return items.isEmpty() && actionHistory.isEmpty() && redoHistory.isEmpty();
     }
 
     // ✅ FIX #3: Metadata getters/setters
@@ -0,0 +1,481 @@
+package org.example.model.cart;
+
+import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SequencedCollection;
+
+/**
+ * IndexedCartItems - SequencedCollection of cart lines with O(1) access by item id
+ *
+ * A doubly linked list (for order) combined with a HashMap from item id to list node
+ * (for lookup). This keeps every cart operation constant time:
+ * - addFirst() / addLast()       → link a node at either end, no element shifting
+ * - getFirst() / getLast()       → head / tail, used by CartState.updateMetadata()
+ * - findById() / removeById()    → hash lookup + unlink, no linear removeIf() scan
+ *
+ * 💡 Why not ArrayList?
+ * ArrayList.addFirst() shifts every element and removeIf() scans the whole list,
+ * which dominates latency for B2B carts with thousands of lines.
+ *
+ * The cart total is kept as a running sum of line totals in fixed-point cents
+ * (a primitive long), updated on every link/unlink/clear. getTotalAmount() only
+ * converts it to BigDecimal; it falls back to streaming the lines when a price
+ * has sub-cent digits or the sum overflows a long.
+ *
+ * Every line also carries an "order key" (a long, ascending from head to tail).
+ * Once persistentView() has been asked for, each add/remove is mirrored into an
+ * immutable PersistentCartItems in O(log n), which CartState publishes to
+ * lock-free readers. Carts nobody reads never build one.
+ *
+ * Item ids must be unique within a cart. Not thread-safe - callers mutate it
+ * inside CartRepository.mutate().
+ */
+public class IndexedCartItems extends AbstractCollection<CartItem> implements SequencedCollection<CartItem> {
+
+    // Marks a line whose total cannot be represented exactly in long cents
+    private static final long INEXACT = Long.MIN_VALUE;
+    // Spacing of order keys: leaves room for ~20 inserts between two neighbours
+    // (undo re-inserting a removed line) before keys are renumbered
+    private static final long ORDER_GAP = 1L << 20;
+
+    private final Map<Long, Node> index = new HashMap<>();
+    private Node head;
+    private Node tail;
+    private int modCount;
+
+    // Running total of all exact lines, in cents - only valid while !totalOverflowed
+    private long totalCents;
+    // Set when adding or removing a line overflowed totalCents
+    private boolean totalOverflowed;
+    // Number of lines with lineCents == INEXACT
+    private int inexactLines;
+
+    // Immutable mirror of this list for readers - null until first requested
+    private PersistentCartItems persistent;
+
+    private static final class Node {
+        final CartItem item;
+        final long lineCents;
+        long order;
+        Node prev;
+        Node next;
+
+        Node(CartItem item) {
+            this.item = item;
+            this.lineCents = toLineCents(item);
+        }
+    }
+
+    public IndexedCartItems() {}
+
+    public IndexedCartItems(Collection<? extends CartItem> items) {
+        items.forEach(this::addLast);
+    }
+
+    // ==================== Lookup by id ====================
+
+    /**
+     * @return the item with the given id, or null if it is not in the cart
+     */
+    public CartItem findById(Long itemId) {
+        Node node = index.get(itemId);
+        return node != null ? node.item : null;
+    }
+
+    /**
+     * Removes the item with the given id in O(1).
+     *
+     * @return the removed item, or null if it was not in the cart
+     */
+    public CartItem removeById(Long itemId) {
+        Node node = index.get(itemId);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.item;
+    }
+
+    /**
+     * @return the item directly before the given one, or null if it is first or absent
+     */
+    public CartItem itemBefore(Long itemId) {
+        Node node = index.get(itemId);
+        return node != null && node.prev != null ? node.prev.item : null;
+    }
+
+    /**
+     * Inserts an item directly after the item with the given id in O(1).
+     * A null (or no longer present) predecessor inserts at the front.
+     */
+    public void addAfter(Long predecessorId, CartItem item) {
+        Node predecessor = predecessorId != null ? index.get(predecessorId) : null;
+        if (predecessor == null) {
+            addFirst(item);
+            return;
+        }
+        Node node = register(item);
+        node.prev = predecessor;
+        node.next = predecessor.next;
+        if (predecessor.next != null) {
+            predecessor.next.prev = node;
+        } else {
+            tail = node;
+        }
+        predecessor.next = node;
+        assignOrder(node);
+    }
+
+    /**
+     * Swaps in a new version of a line (same id, e.g. another quantity) at the
+     * same position in O(1).
+     *
+     * @return the replaced item, or null (and nothing added) if the id is absent
+     */
+    public CartItem replace(CartItem item) {
+        Node node = index.get(item.getId());
+        if (node == null) {
+            return null;
+        }
+        Node predecessor = node.prev;
+        unlink(node);
+        addAfter(predecessor != null ? predecessor.item.getId() : null, item);
+        return node.item;
+    }
+
+    // ==================== Totals ====================
+
+    /**
+     * Sum of unitPrice * quantity over all lines.
+     *
+     * O(1) in the common case - the running cents total is converted to a
+     * BigDecimal with scale 2, whatever the number of lines. Only carts holding
+     * sub-cent prices or a sum beyond Long.MAX_VALUE cents re-stream the items.
+     */
+    public BigDecimal getTotalAmount() {
+        if (totalOverflowed) {
+            recomputeTotalCents();
+        }
+        if (runningTotalAvailable()) {
+            return BigDecimal.valueOf(totalCents, 2);
+        }
+        return stream()
+                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * @return true if getTotalAmount() is answered from the running cents total
+     */
+    boolean runningTotalAvailable() {
+        return inexactLines == 0 && !totalOverflowed;
+    }
+
+    /*
+     * After an overflow the running total is stale; re-sum the exact lines once
+     * so that removing the offending lines brings the O(1) path back.
+     */
+    private void recomputeTotalCents() {
+        long sum = 0;
+        try {
+            for (Node node = head; node != null; node = node.next) {
+                if (node.lineCents != INEXACT) {
+                    sum = Math.addExact(sum, node.lineCents);
+                }
+            }
+        } catch (ArithmeticException e) {
+            return;
+        }
+        totalCents = sum;
+        totalOverflowed = false;
+    }
+
+    private static long toLineCents(CartItem item) {
+        if (item.getUnitPrice() == null) {
+            return INEXACT;
+        }
+        try {
+            // Throws if the price has sub-cent digits or does not fit in a long
+            long unitCents = item.getUnitPrice().movePointRight(2).longValueExact();
+            return Math.multiplyExact(unitCents, (long) item.getQuantity());
+        } catch (ArithmeticException e) {
+            return INEXACT;
+        }
+    }
+
+    // ==================== SequencedCollection ====================
+
+    @Override
+    public boolean add(CartItem item) {
+        addLast(item);
+        return true;
+    }
+
+    @Override
+    public void addFirst(CartItem item) {
+        Node node = register(item);
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        } else {
+            tail = node;
+        }
+        head = node;
+        assignOrder(node);
+    }
+
+    @Override
+    public void addLast(CartItem item) {
+        Node node = register(item);
+        node.prev = tail;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+        assignOrder(node);
+    }
+
+    @Override
+    public CartItem getFirst() {
+        if (head == null) throw new NoSuchElementException();
+        return head.item;
+    }
+
+    @Override
+    public CartItem getLast() {
+        if (tail == null) throw new NoSuchElementException();
+        return tail.item;
+    }
+
+    @Override
+    public CartItem removeFirst() {
+        if (head == null) throw new NoSuchElementException();
+        Node node = head;
+        unlink(node);
+        return node.item;
+    }
+
+    @Override
+    public CartItem removeLast() {
+        if (tail == null) throw new NoSuchElementException();
+        Node node = tail;
+        unlink(node);
+        return node.item;
+    }
+
+    @Override
+    public SequencedCollection<CartItem> reversed() {
+        return new ReversedView();
+    }
+
+    // ==================== Collection ====================
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof CartItem item && findById(item.getId()) == item;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        unlink(index.get(((CartItem) o).getId()));
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        head = null;
+        tail = null;
+        totalCents = 0;
+        totalOverflowed = false;
+        inexactLines = 0;
+        modCount++;
+        if (persistent != null) {
+            persistent = PersistentCartItems.EMPTY;
+        }
+    }
+
+    @Override
+    public Iterator<CartItem> iterator() {
+        return new NodeIterator(false);
+    }
+
+    // ==================== Internals ====================
+
+    private Node register(CartItem item) {
+        Node node = new Node(item);
+        if (index.putIfAbsent(item.getId(), node) != null) {
+            throw new IllegalArgumentException("Duplicate cart item id: " + item.getId());
+        }
+        if (node.lineCents == INEXACT) {
+            inexactLines++;
+        } else if (!totalOverflowed) {
+            try {
+                totalCents = Math.addExact(totalCents, node.lineCents);
+            } catch (ArithmeticException e) {
+                totalOverflowed = true;
+            }
+        }
+        modCount++;
+        return node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        index.remove(node.item.getId());
+        if (node.lineCents == INEXACT) {
+            inexactLines--;
+        } else if (!totalOverflowed) {
+            try {
+                totalCents = Math.subtractExact(totalCents, node.lineCents);
+            } catch (ArithmeticException e) {
+                totalOverflowed = true;
+            }
+        }
+        modCount++;
+        if (persistent != null) {
+            persistent = persistent.without(node.order);
+        }
+    }
+
+    /*
+     * Gives a freshly linked node a key between its neighbours' keys - O(1), as
+     * the neighbours are its prev/next links - and mirrors it into the persistent
+     * view. Only when repeated inserts at one spot exhaust the gap are all keys
+     * renumbered (O(n)); the view is then rebuilt on its next use.
+     */
+    private void assignOrder(Node node) {
+        Node before = node.prev;
+        Node after = node.next;
+        if (before == null && after == null) {
+            node.order = 0;
+        } else if (before == null) {
+            node.order = after.order - ORDER_GAP;
+        } else if (after == null) {
+            node.order = before.order + ORDER_GAP;
+        } else {
+            // Unsigned shift: the difference of two ordered longs can exceed Long.MAX_VALUE
+            node.order = before.order + ((after.order - before.order) >>> 1);
+        }
+
+        boolean ordered = (before == null || before.order < node.order)
+                && (after == null || node.order < after.order);
+        if (!ordered) {
+            renumber();
+        } else if (persistent != null) {
+            persistent = persistent.with(node.order, node.item);
+        }
+    }
+
+    private void renumber() {
+        long order = -ORDER_GAP * (index.size() / 2);
+        for (Node node = head; node != null; node = node.next) {
+            node.order = order;
+            order += ORDER_GAP;
+        }
+        persistent = null;
+    }
+
+    /**
+     * Immutable snapshot of the current lines, in order. The first call builds it
+     * in O(n); from then on every change keeps it up to date in O(log n), so
+     * later calls are O(1).
+     */
+    public PersistentCartItems persistentView() {
+        if (persistent == null) {
+            int count = index.size();
+            long[] keys = new long[count];
+            CartItem[] lines = new CartItem[count];
+            int i = 0;
+            for (Node node = head; node != null; node = node.next) {
+                keys[i] = node.order;
+                lines[i++] = node.item;
+            }
+            persistent = PersistentCartItems.build(keys, lines, count);
+        }
+        return persistent;
+    }
+
+    private final class NodeIterator implements Iterator<CartItem> {
+        private final boolean descending;
+        private Node next;
+        private Node lastReturned;
+        private int expectedModCount = modCount;
+
+        NodeIterator(boolean descending) {
+            this.descending = descending;
+            this.next = descending ? tail : head;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public CartItem next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next == null) throw new NoSuchElementException();
+            lastReturned = next;
+            next = descending ? next.prev : next.next;
+            return lastReturned.item;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Reverse-ordered view required by SequencedCollection.reversed()
+     */
+    private final class ReversedView extends AbstractCollection<CartItem> implements SequencedCollection<CartItem> {
+
+        @Override public Iterator<CartItem> iterator() { return new NodeIterator(true); }
+        @Override public int size() { return IndexedCartItems.this.size(); }
+        @Override public boolean contains(Object o) { return IndexedCartItems.this.contains(o); }
+        @Override public boolean remove(Object o) { return IndexedCartItems.this.remove(o); }
+        @Override public void clear() { IndexedCartItems.this.clear(); }
+
+        @Override public boolean add(CartItem item) { IndexedCartItems.this.addFirst(item); return true; }
+        @Override public void addFirst(CartItem item) { IndexedCartItems.this.addLast(item); }
+        @Override public void addLast(CartItem item) { IndexedCartItems.this.addFirst(item); }
+        @Override public CartItem getFirst() { return IndexedCartItems.this.getLast(); }
+        @Override public CartItem getLast() { return IndexedCartItems.this.getFirst(); }
+        @Override public CartItem removeFirst() { return IndexedCartItems.this.removeLast(); }
+        @Override public CartItem removeLast() { return IndexedCartItems.this.removeFirst(); }
+        @Override public SequencedCollection<CartItem> reversed() { return IndexedCartItems.this; }
+    }
+}
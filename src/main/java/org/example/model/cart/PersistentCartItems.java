@@ -0,0 +1,260 @@
+package org.example.model.cart;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SequencedCollection;
+
+/**
+ * PersistentCartItems - Immutable, structurally shared SequencedCollection of cart lines
+ *
+ * Published to readers inside a CartSnapshot. Once created it NEVER changes,
+ * so any number of threads can iterate or serialize it without a lock.
+ *
+ * HOW WRITES STAY CHEAP (path copying):
+ * - Lines are kept in a treap ordered by the "order key" IndexedCartItems assigns
+ *   to each line (head-to-tail order = ascending keys)
+ * - with() / without() copy only the O(log n) nodes on the path to the change;
+ *   every other node is shared with the previous version
+ * - So publishing a new version after an add or remove allocates a handful of
+ *   nodes instead of copying the cart
+ *
+ * A treap node's priority is derived from its key, so the shape is deterministic
+ * and balanced in expectation even though keys arrive in order (addLast()).
+ *
+ * Mutators are package-private - only IndexedCartItems builds new versions.
+ */
+public final class PersistentCartItems extends AbstractCollection<CartItem> implements SequencedCollection<CartItem> {
+
+    public static final PersistentCartItems EMPTY = new PersistentCartItems(null);
+
+    private static final class Node {
+        final long key;
+        final int priority;
+        final CartItem item;
+        // Only assigned while build() links a brand-new tree, before it is published
+        Node left;
+        Node right;
+        int size;
+
+        Node(long key, CartItem item, Node left, Node right) {
+            this.key = key;
+            this.priority = priorityOf(key);
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        Node withLeft(Node newLeft) {
+            return new Node(key, item, newLeft, right);
+        }
+
+        Node withRight(Node newRight) {
+            return new Node(key, item, left, newRight);
+        }
+    }
+
+    private final Node root;
+
+    private PersistentCartItems(Node root) {
+        this.root = root;
+    }
+
+    // ==================== Versions (package-private) ====================
+
+    /**
+     * @return a new version with the line added under a key not yet present
+     */
+    PersistentCartItems with(long key, CartItem item) {
+        return new PersistentCartItems(insert(root, key, item));
+    }
+
+    /**
+     * @return a new version without the line with the given key
+     */
+    PersistentCartItems without(long key) {
+        return new PersistentCartItems(delete(root, key));
+    }
+
+    /**
+     * Builds a version from lines already sorted by key in O(n) (Cartesian tree
+     * construction along the right spine) - used the first time a cart is read
+     * and after whole-cart replacements (clear, merge).
+     */
+    static PersistentCartItems build(long[] keys, CartItem[] items, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Node[] spine = new Node[count];
+        int depth = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = new Node(keys[i], items[i], null, null);
+            Node lastPopped = null;
+            while (depth > 0 && spine[depth - 1].priority < node.priority) {
+                lastPopped = spine[--depth];
+            }
+            node.left = lastPopped;
+            if (depth > 0) {
+                spine[depth - 1].right = node;
+            }
+            spine[depth++] = node;
+        }
+        Node root = spine[0];
+        fixSizes(root);
+        return new PersistentCartItems(root);
+    }
+
+    private static int fixSizes(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        node.size = 1 + fixSizes(node.left) + fixSizes(node.right);
+        return node.size;
+    }
+
+    private static Node insert(Node node, long key, CartItem item) {
+        if (node == null) {
+            return new Node(key, item, null, null);
+        }
+        if (priorityOf(key) > node.priority) {
+            // The new line becomes the root of this subtree
+            Node[] parts = split(node, key);
+            return new Node(key, item, parts[0], parts[1]);
+        }
+        return key < node.key
+                ? node.withLeft(insert(node.left, key, item))
+                : node.withRight(insert(node.right, key, item));
+    }
+
+    // Splits into (keys < key, keys > key), copying only the path to key
+    private static Node[] split(Node node, long key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (node.key < key) {
+            Node[] parts = split(node.right, key);
+            parts[0] = node.withRight(parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        parts[1] = node.withLeft(parts[1]);
+        return parts;
+    }
+
+    private static Node delete(Node node, long key) {
+        if (node == null) {
+            return null;
+        }
+        if (key < node.key) {
+            return node.withLeft(delete(node.left, key));
+        }
+        if (key > node.key) {
+            return node.withRight(delete(node.right, key));
+        }
+        return join(node.left, node.right);
+    }
+
+    // Joins two treaps where every key in left < every key in right
+    private static Node join(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.priority > right.priority
+                ? left.withRight(join(left.right, right))
+                : right.withLeft(join(left, right.left));
+    }
+
+    private static int priorityOf(long key) {
+        // Fibonacci hashing - evenly spaced keys get well-mixed priorities
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // ==================== SequencedCollection (read-only) ====================
+
+    @Override
+    public int size() {
+        return sizeOf(root);
+    }
+
+    @Override
+    public CartItem getFirst() {
+        if (root == null) throw new NoSuchElementException();
+        Node node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.item;
+    }
+
+    @Override
+    public CartItem getLast() {
+        if (root == null) throw new NoSuchElementException();
+        Node node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.item;
+    }
+
+    @Override
+    public Iterator<CartItem> iterator() {
+        return new InOrderIterator(root, false);
+    }
+
+    @Override
+    public SequencedCollection<CartItem> reversed() {
+        return new ReversedView();
+    }
+
+    private static final class InOrderIterator implements Iterator<CartItem> {
+        private final Deque<Node> path = new ArrayDeque<>();
+        private final boolean descending;
+
+        InOrderIterator(Node root, boolean descending) {
+            this.descending = descending;
+            descend(root);
+        }
+
+        private void descend(Node node) {
+            while (node != null) {
+                path.push(node);
+                node = descending ? node.right : node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public CartItem next() {
+            if (path.isEmpty()) throw new NoSuchElementException();
+            Node node = path.pop();
+            descend(descending ? node.left : node.right);
+            return node.item;
+        }
+    }
+
+    /**
+     * Reverse-ordered view required by SequencedCollection.reversed()
+     */
+    private final class ReversedView extends AbstractCollection<CartItem> implements SequencedCollection<CartItem> {
+
+        @Override public Iterator<CartItem> iterator() { return new InOrderIterator(root, true); }
+        @Override public int size() { return PersistentCartItems.this.size(); }
+        @Override public CartItem getFirst() { return PersistentCartItems.this.getLast(); }
+        @Override public CartItem getLast() { return PersistentCartItems.this.getFirst(); }
+        @Override public SequencedCollection<CartItem> reversed() { return PersistentCartItems.this; }
+    }
+}
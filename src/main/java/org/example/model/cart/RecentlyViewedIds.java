@@ -0,0 +1,205 @@
+package org.example.model.cart;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * RecentlyViewedIds - Bounded "recently viewed" set of primitive product ids
+ *
+ * Same contract as a Java 21 LinkedHashSet used as a SequencedSet:
+ * - addLast(id)  → appends, or MOVES an id that is already present to the end
+ * - getFirst()   → oldest view, the next to be evicted
+ * - getLast()    → most recent view
+ * but bounded: when full, addLast() evicts the oldest id (like removeFirst()).
+ *
+ * Why not LinkedHashSet<Long>?
+ * - Every view would box a Long and allocate a linked hash node
+ * - Here the ids, links and hash index are primitive arrays sized ONCE from
+ *   org.features.sequenced-collections.max-recently-viewed, so a view
+ *   (hit, miss or eviction) is O(1) and allocation-free
+ *
+ * Layout:
+ * - ids/prev/next   → a doubly linked list threaded through fixed slots
+ * - index           → open-addressing hash (linear probing) of id → slot + 1
+ *
+ * Not thread-safe - RecentlyViewedService mutates it under the customer's lock.
+ */
+public class RecentlyViewedIds {
+
+    private static final int NONE = -1;
+
+    private final long[] ids;
+    private final int[] prev;
+    private final int[] next;
+    private final int[] index;  // slot + 1, 0 = empty
+    private final int mask;
+    private int head = NONE;    // oldest
+    private int tail = NONE;    // most recent
+    private int size;
+    // Expiry-wheel tick of the last access - read and written under the customer's lock
+    private long lastAccessTick;
+
+    public RecentlyViewedIds(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Recently viewed capacity must be positive: " + capacity);
+        }
+        this.ids = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        // Load factor <= 0.5 keeps probe sequences short
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.index = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    public long getLastAccessTick() { return lastAccessTick; }
+    public void touch(long tick) { this.lastAccessTick = tick; }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long id) {
+        return index[find(id)] != 0;
+    }
+
+    /**
+     * Records a view of {@code id}: moves it to the end, evicting the oldest id if full
+     *
+     * @return true if the id was not in the set before
+     */
+    public boolean addLast(long id) {
+        int position = find(id);
+        if (index[position] != 0) {
+            moveToTail(index[position] - 1);
+            return false;
+        }
+
+        int slot;
+        if (size < ids.length) {
+            slot = size++;
+        } else {
+            // Full: reuse the oldest slot (removeFirst() + addLast() without allocating)
+            slot = head;
+            unlink(slot);
+            deleteAt(find(ids[slot]));
+            position = find(id); // the deletion may have shifted entries
+        }
+        ids[slot] = id;
+        index[position] = slot + 1;
+        linkAtTail(slot);
+        return true;
+    }
+
+    public long getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException("No recently viewed products");
+        }
+        return ids[head];
+    }
+
+    public long getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException("No recently viewed products");
+        }
+        return ids[tail];
+    }
+
+    /**
+     * Snapshot in reversed() order - most recent view first, as shown in the UI
+     */
+    public long[] toArrayMostRecentFirst() {
+        long[] result = new long[size];
+        int i = 0;
+        for (int slot = tail; slot != NONE; slot = prev[slot]) {
+            result[i++] = ids[slot];
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(index, 0);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    // Position of id in the index, or of the empty cell where it would go
+    private int find(long id) {
+        int position = hash(id) & mask;
+        while (index[position] != 0 && ids[index[position] - 1] != id) {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    /*
+     * Linear-probing delete without tombstones: shift back every later entry of
+     * the probe run that would otherwise become unreachable
+     */
+    private void deleteAt(int hole) {
+        int position = hole;
+        while (true) {
+            position = (position + 1) & mask;
+            if (index[position] == 0) {
+                break;
+            }
+            int home = hash(ids[index[position] - 1]) & mask;
+            // Move the entry unless its home lies cyclically in (hole, position]
+            boolean reachable = hole <= position
+                    ? hole < home && home <= position
+                    : hole < home || home <= position;
+            if (!reachable) {
+                index[hole] = index[position];
+                hole = position;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private static int hash(long id) {
+        // Fibonacci hashing - sequential product ids spread over the whole table
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private void moveToTail(int slot) {
+        if (slot != tail) {
+            unlink(slot);
+            linkAtTail(slot);
+        }
+    }
+
+    private void linkAtTail(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+}
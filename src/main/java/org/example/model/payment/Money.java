@@ -0,0 +1,56 @@
+package org.example.model.payment;
+
+import java.math.BigDecimal;
+
+/**
+ * Whole-cents view of a payment amount, for comparing amounts as plain longs.
+ *
+ * BigDecimal.compareTo has to line up the two scales first (1000 vs 1500.00),
+ * and a BigDecimal is an object to chase on every comparison. Almost every
+ * real amount is a whole number of cents that fits easily in a long, so the
+ * guards compare longs and keep BigDecimal only for the rest:
+ *
+ *   1500.00 → 150000      12.5 → 1250       7 → 700
+ *   0.005   → NOT_CENTS   (fraction of a cent)
+ *   1E+30   → NOT_CENTS   (too large - or any other unusual scale)
+ *
+ * 💡 NOT_CENTS means "use the BigDecimal"; it is never a valid amount, so
+ *    callers can test for it with a single comparison.
+ */
+public final class Money {
+
+    /** Returned when the amount has no exact long-cents form */
+    public static final long NOT_CENTS = Long.MIN_VALUE;
+
+    // Below 10^16 even × 100 stays far from Long.MAX_VALUE
+    private static final int MAX_PRECISION = 16;
+
+    private Money() { }
+
+    /**
+     * @return the amount in cents, or NOT_CENTS when it is not a whole number
+     *         of cents or too large for the fast path
+     */
+    public static long toCents(BigDecimal amount) {
+        int scale = amount.scale();
+        if (scale < 0 || scale > 2 || amount.precision() > MAX_PRECISION) {
+            return NOT_CENTS;
+        }
+        // Compact BigDecimals hold the unscaled value as a long; the BigInteger is short-lived
+        long unscaled = amount.unscaledValue().longValue();
+        return switch (scale) {
+            case 0 -> unscaled * 100;
+            case 1 -> unscaled * 10;
+            default -> unscaled;
+        };
+    }
+
+    /**
+     * @return the threshold in cents, or NOT_CENTS when it is not a whole number
+     *         of cents - e.g. 1000 → 100000, 999.995 → NOT_CENTS
+     */
+    public static long thresholdToCents(BigDecimal threshold) {
+        BigDecimal stripped = threshold.stripTrailingZeros();
+        return toCents(stripped.scale() < 0 ? stripped.setScale(0) : stripped);
+    }
+}
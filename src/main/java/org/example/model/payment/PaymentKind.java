@@ -0,0 +1,33 @@
+package org.example.model.payment;
+
+/**
+ * The three permitted Payment types as a plain enum, used as a key in
+ * payment routing rules.
+ */
+public enum PaymentKind {
+    CREDIT_CARD("CreditCard", "Credit Card"),
+    PAYPAL("PayPal", "PayPal"),
+    BANK_TRANSFER("BankTransfer", "Bank Transfer");
+
+    private final String patternName;
+    private final String displayName;
+
+    PaymentKind(String patternName, String displayName) {
+        this.patternName = patternName;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Exhaustive over the sealed Payment hierarchy - no default branch needed
+     */
+    public static PaymentKind of(Payment payment) {
+        return switch (payment) {
+            case CreditCard c -> CREDIT_CARD;
+            case PayPal p -> PAYPAL;
+            case BankTransfer b -> BANK_TRANSFER;
+        };
+    }
+
+    public String getPatternName() { return patternName; }
+    public String getDisplayName() { return displayName; }
+}
@@ -0,0 +1,27 @@
+package org.example.model.payment;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * How much of the pattern matching execution a payment records for its response.
+ *
+ * - OFF:     nothing is recorded, patternMatchingSteps is empty - no tracing allocation
+ * - SAMPLED: 1 in N payments is traced into a reused buffer, the rest behave like OFF
+ * - FULL:    every payment records every step (what the payment demo page shows)
+ *
+ * Set globally with org.features.record-patterns.tracing, or per request
+ * through PaymentRequest.tracing.
+ */
+public enum TracingLevel {
+    OFF,
+    SAMPLED,
+    FULL;
+
+    /**
+     * Case-insensitive lookup, so both "off" and "OFF" work in JSON and properties
+     */
+    @JsonCreator
+    public static TracingLevel parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.repository;
+
+import org.example.model.cart.CartChange;
+import org.example.model.cart.CartState;
+
+import java.util.List;
+
+/**
+ * Receives the visible changes of every mutate() call on a watched cart.
+ *
+ * All methods are called while holding the customer's lock: isWatched() before
+ * the mutation, onChanges() after it. Implementations must only capture what
+ * they need from the cart and hand off - never block or do I/O here.
+ *
+ * A cart that became watched while a mutation was running reports that
+ * mutation as a single ItemsReplaced change.
+ */
+public interface CartChangeListener {
+
+    boolean isWatched(long customerId);
+
+    void onChanges(long customerId, CartState cartState, List<CartChange> changes);
+
+    /**
+     * The watched cart was removed (merged into another cart, idle expiry, reset)
+     */
+    void onRemoved(long customerId);
+}
@@ -0,0 +1,181 @@
+package org.example.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartExpiryWheel - Hashed timing wheel that finds idle carts
+ *
+ * HOW IT WORKS:
+ * - Time is counted in ticks (e.g. 1 second). The wheel is a ring of slots;
+ *   a deadline lands in slot (deadlineTick % slots). Deadlines further away
+ *   than one revolution simply stay in their slot until their tick comes round.
+ * - Request threads never touch the slots: touching a cart is a single volatile
+ *   write of currentTick() into the cart, and new carts are handed over through
+ *   a lock-free inbox. Only the ticker thread reads or writes the slots.
+ * - Deadlines are NOT moved on every touch. When a deadline fires, the handler
+ *   checks the cart's last access and either expires it or returns its new
+ *   deadline ("lazy rescheduling"), so each live cart costs one reschedule per TTL.
+ * - Each deadline carries a token naming the instance it was scheduled for. A
+ *   customer whose cart was removed and created again may briefly have the old
+ *   cart's deadline on the wheel too; the handler drops it by its token, so
+ *   every live cart keeps exactly one deadline.
+ *
+ * Public so other per-customer state (RecentlyViewedService) can expire idle
+ * customers the same way.
+ */
+public final class CartExpiryWheel implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartExpiryWheel.class);
+
+    /**
+     * Called by the ticker when a customer's deadline is reached.
+     *
+     * @param token what the deadline was scheduled with - tells a deadline left
+     *              behind by an earlier cart from the current cart's own one
+     * @return the tick of the next deadline (kept with the same token), or -1
+     *         when the cart is gone or the deadline is not the current cart's
+     */
+    @FunctionalInterface
+    public interface DeadlineHandler {
+        long onDeadline(long customerId, long token, long currentTick);
+    }
+
+    private record Deadline(long customerId, long token, long tick) {}
+
+    private final Duration tick;
+    private final String threadName;
+    private final List<Deadline>[] slots;
+    private final int mask;
+    private final Queue<Deadline> inbox = new ConcurrentLinkedQueue<>();
+    private final DeadlineHandler handler;
+    // Swapped with the slot being fired, so ticks do not allocate
+    private List<Deadline> spare = new ArrayList<>();
+
+    private volatile long currentTick;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param tick      wheel resolution - carts expire up to one tick late
+     * @param slotCount ring size, rounded up to a power of two
+     */
+    CartExpiryWheel(Duration tick, int slotCount, DeadlineHandler handler) {
+        this(tick, slotCount, "cart-expiry", handler);
+    }
+
+    /**
+     * @param threadName name of the ticker thread
+     */
+    @SuppressWarnings("unchecked")
+    public CartExpiryWheel(Duration tick, int slotCount, String threadName, DeadlineHandler handler) {
+        int size = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        this.tick = tick;
+        this.threadName = threadName;
+        this.slots = new List[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.handler = handler;
+    }
+
+    /**
+     * Coarse clock for last-access stamps - one volatile read
+     */
+    public long currentTick() {
+        return currentTick;
+    }
+
+    public long ticksFor(Duration duration) {
+        return Math.max(1, -Math.floorDiv(-duration.toNanos(), tick.toNanos()));
+    }
+
+    /**
+     * Registers a deadline. Safe from any thread; picked up on the next tick.
+     *
+     * @param token identifies the instance the deadline belongs to (e.g. a cart's
+     *              incarnation) and is handed back to the DeadlineHandler
+     */
+    public void schedule(long customerId, long token, long deadlineTick) {
+        inbox.add(new Deadline(customerId, token, deadlineTick));
+    }
+
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name(threadName).daemon().factory());
+        long nanos = tick.toNanos();
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                advance();
+            } catch (RuntimeException e) {
+                logger.error("Expiry tick failed on {}", threadName, e);
+            }
+        }, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Moves the wheel one tick and fires every deadline that is due.
+     * Only ever called from a single thread.
+     */
+    void advance() {
+        long now = currentTick + 1;
+        currentTick = now;
+
+        for (Deadline deadline; (deadline = inbox.poll()) != null; ) {
+            place(deadline, now);
+        }
+
+        int index = (int) (now & mask);
+        if (slots[index].isEmpty()) {
+            return;
+        }
+        List<Deadline> due = slots[index];
+        slots[index] = spare;
+        spare = due;
+        for (Deadline deadline : due) {
+            if (deadline.tick() > now) {
+                slots[index].add(deadline); // a later revolution
+                continue;
+            }
+            long next = handler.onDeadline(deadline.customerId(), deadline.token(), now);
+            if (next >= 0) {
+                place(new Deadline(deadline.customerId(), deadline.token(), next), now);
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * Deadlines on the wheel or still in the inbox - call from the ticker's thread
+     */
+    int pendingDeadlines() {
+        int count = inbox.size();
+        for (List<Deadline> slot : slots) {
+            count += slot.size();
+        }
+        return count;
+    }
+
+    private void place(Deadline deadline, long now) {
+        // Anything already due fires on the next tick
+        long at = Math.max(deadline.tick(), now + 1);
+        slots[(int) (at & mask)].add(at == deadline.tick()
+                ? deadline : new Deadline(deadline.customerId(), deadline.token(), at));
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+}
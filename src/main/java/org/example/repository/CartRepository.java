@@ -1,27 +1,364 @@
 // In-memory repository for demo
 package org.example.repository;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartChange;
 import org.example.model.cart.CartItem;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartSnapshot;
 import org.example.model.cart.CartState;
+import org.example.repository.journal.CartJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Repository
 public class CartRepository {
-    // Simple in-memory storage for demo purposes
-    private final Map<Long, CartState> customerCarts = new HashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(CartRepository.class);
+
+    // Concurrent in-memory storage - ConcurrentHashMap locks per hash bin, so
+    // different customers never contend on a global lock
+    private final Map<Long, CartState> customerCarts = new ConcurrentHashMap<>();
+
+    // Undo depth per cart - history ring buffers are allocated at this size
+    private final int maxCartHistory;
+
+    // Durable journal - null when persistence is disabled (see CartPersistenceConfig)
+    private final CartJournal journal;
+
+    // Recovered items share canonical Products with live ones
+    private final ProductCatalog productCatalog;
+
+    // Pushes cart changes to live subscribers (registered by CartEventHub)
+    private volatile CartChangeListener changeListener;
+
+    // Idle carts are dropped after cartIdleTtl without any access
+    private final CartExpiryWheel expiryWheel;
+    private final long idleTtlTicks;
+    private final Counter expiredCarts;
+
+    // Highest item id found in recovered carts - seeds the item id generator
+    private volatile long highestRecoveredItemId;
+
+    public CartRepository(
+            @Value("${org.features.sequenced-collections.max-cart-history:10}") int maxCartHistory,
+            @Value("${org.features.sequenced-collections.cart-idle-ttl:30m}") Duration cartIdleTtl,
+            @Value("${org.features.sequenced-collections.cart-expiry-tick:1s}") Duration expiryTick,
+            ObjectProvider<CartJournal> journal,
+            ProductCatalog productCatalog,
+            MeterRegistry meterRegistry) {
+        this.maxCartHistory = maxCartHistory;
+        this.productCatalog = productCatalog;
+        this.journal = journal.getIfAvailable();
+        this.expiryWheel = new CartExpiryWheel(expiryTick, 512, this::expireIfIdle);
+        this.idleTtlTicks = expiryWheel.ticksFor(cartIdleTtl);
+
+        Gauge.builder("cart.live", customerCarts, Map::size)
+                .description("Carts currently held in memory")
+                .register(meterRegistry);
+        this.expiredCarts = Counter.builder("cart.expired")
+                .description("Carts removed after being idle for the configured TTL")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rebuilds carts from the journal before the application takes traffic.
+     * A journal that cannot be read fails startup rather than silently losing carts.
+     */
+    @PostConstruct
+    void recoverCarts() {
+        if (journal != null) {
+            recoverFromJournal();
+        }
+        // Recovered carts get a full TTL from startup
+        customerCarts.forEach((id, cartState) -> expiryWheel.schedule(id, cartState.getIncarnation(), idleTtlTicks));
+        expiryWheel.start();
+    }
+
+    private void recoverFromJournal() {
+        try {
+            CartJournal.RecoveryResult result = journal.recover(
+                    customerCarts, id -> new CartState(maxCartHistory), productCatalog);
+            logger.info(">>> Recovered {} carts ({} from snapshot, {} journal entries replayed) in {} ms",
+                    result.cartsRecovered(), result.cartsFromSnapshot(), result.entriesReplayed(),
+                    result.elapsed().toMillis());
+            highestRecoveredItemId = result.highestItemId();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover carts from journal", e);
+        }
+        journal.start(this::forEachCart);
+    }
+
+    /**
+     * Final snapshot on shutdown, so the next start replays (almost) nothing
+     */
+    @PreDestroy
+    void snapshotCarts() {
+        expiryWheel.close();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.snapshot(this::forEachCart);
+        } catch (IOException e) {
+            logger.warn("Final cart snapshot failed - carts will be recovered from the journal", e);
+        }
+    }
+
+    /**
+     * Lock-free read of a customer's cart.
+     *
+     * Steady state is a map lookup plus a volatile read - no lock, no copy, and it
+     * never waits for a writer. Only the very first read of a cart publishes its
+     * snapshot under the lock; from then on every write keeps it current.
+     * A customer without a cart gets CartSnapshot.EMPTY (no cart is created).
+     */
+    public CartSnapshot snapshot(Long customerId) {
+        CartState cartState = customerCarts.get(customerId);
+        if (cartState == null) {
+            return CartSnapshot.EMPTY;
+        }
+        cartState.touch(expiryWheel.currentTick());
+        CartSnapshot snapshot = cartState.getSnapshot();
+        return snapshot != null ? snapshot : publishSnapshot(customerId);
+    }
+
+    // First read of a cart: publish under the lock - unless it was removed
+    // meanwhile, which must not bring it back
+    private CartSnapshot publishSnapshot(Long customerId) {
+        CartSnapshot[] published = {CartSnapshot.EMPTY};
+        customerCarts.computeIfPresent(customerId, (id, cartState) -> {
+            published[0] = cartState.publishSnapshot();
+            return cartState;
+        });
+        return published[0];
+    }
 
     public CartState getCartState(Long customerId) {
-        return customerCarts.computeIfAbsent(customerId, k -> new CartState());
+        CartState cartState = customerCarts.computeIfAbsent(customerId, this::newCart);
+        cartState.touch(expiryWheel.currentTick());
+        return cartState;
+    }
+
+    private CartState newCart(Long customerId) {
+        CartState cartState = new CartState(maxCartHistory);
+        scheduleExpiry(customerId, cartState);
+        return cartState;
+    }
+
+    // One deadline per cart instance - see expireIfIdle()
+    private void scheduleExpiry(Long customerId, CartState cartState) {
+        expiryWheel.schedule(customerId, cartState.getIncarnation(), expiryWheel.currentTick() + idleTtlTicks);
     }
 
     public void saveCartState(Long customerId, CartState cartState) {
-        customerCarts.put(customerId, cartState);
+        cartState.touch(expiryWheel.currentTick());
+        if (customerCarts.put(customerId, cartState) != cartState) {
+            scheduleExpiry(customerId, cartState);
+        }
+    }
+
+    /**
+     * Atomically applies a mutation to a customer's cart.
+     *
+     * The callback runs inside ConcurrentHashMap.compute(), which holds the lock
+     * of the customer's hash bin only. Concurrent calls for the same customer are
+     * serialized (no lost updates), calls for other customers proceed in parallel.
+     *
+     * Keep the callback short and never call back into this repository from it.
+     *
+     * @return whatever the mutation returns (e.g. the removed item, a flag)
+     */
+    public <T> T mutate(Long customerId, Function<? super CartState, ? extends T> mutation) {
+        Object[] result = new Object[1];
+        customerCarts.compute(customerId, (id, cartState) -> {
+            CartState target = cartState != null ? cartState : newCart(id);
+            target.touch(expiryWheel.currentTick());
+            CartChangeListener listener = changeListener;
+            boolean watched = listener != null && listener.isWatched(id);
+            target.setTrackChanges(watched);
+            long versionBefore = target.getVersion();
+            result[0] = mutation.apply(target);
+
+            // Carts that have been read keep their published snapshot current
+            if (target.getSnapshot() != null) {
+                target.publishSnapshot();
+            }
+
+            if (watched) {
+                List<CartChange> changes = target.drainPendingChanges();
+                if (!changes.isEmpty()) {
+                    listener.onChanges(id, target, changes);
+                }
+            } else if (listener != null && target.getVersion() != versionBefore && listener.isWatched(id)) {
+                // Subscribed while this mutation ran - its changes were not tracked
+                listener.onChanges(id, target,
+                        List.of(new CartChange.ItemsReplaced(List.copyOf(target.getItems()))));
+            }
+
+            // Sequence the entries while still holding the customer's lock, so
+            // journal order = apply order; the file write happens after the lock
+            List<CartCommand> applied = target.drainPendingCommands();
+            if (journal != null && !applied.isEmpty()) {
+                journal.append(id, target, applied);
+            }
+            return target;
+        });
+        writeJournal();
+        @SuppressWarnings("unchecked")
+        T typed = (T) result[0];
+        return typed;
+    }
+
+    /**
+     * Removes a customer's cart so that its lines can be merged into another one.
+     *
+     * A cart WITH items is not journaled as removed here: the MergeItems entry that
+     * carries those items records the release as well, so a crash in between can
+     * neither lose nor duplicate them. An empty cart has no such entry to follow.
+     * If the merge fails, restore() puts the lines back - nothing was journaled.
+     *
+     * @return the detached cart, or null if the customer had none
+     */
+    public CartState detach(Long customerId) {
+        CartState[] detached = new CartState[1];
+        customerCarts.computeIfPresent(customerId, (id, cartState) -> {
+            if (journal != null && cartState.getItems().isEmpty() && cartState.getJournalSequence() > 0) {
+                journal.appendExpired(id);
+            }
+            notifyRemoved(id);
+            detached[0] = cartState;
+            return null;
+        });
+        writeJournal();
+        return detached[0];
+    }
+
+    /**
+     * Hands lines and undo history back to a (guest) cart after a failed merge
+     * or after its merge was undone - see CartState.restoreLines(). Creates the
+     * cart if the customer has none.
+     *
+     * Nothing is journaled: the account cart's UndoLast entry replays this step
+     * (and a failed merge journaled nothing to begin with). The cart is marked
+     * as reflecting every entry so far, so a later snapshot does not re-apply it.
+     */
+    public void restore(Long customerId, List<CartItem> lines, List<CartAction> history) {
+        mutate(customerId, cartState -> {
+            cartState.restoreLines(lines, history);
+            cartState.updateMetadata();
+            if (journal != null) {
+                cartState.setJournalSequence(Math.max(cartState.getJournalSequence(), journal.lastSequence()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return the highest item id in the carts recovered from the journal
+     *         (lines and undo/redo history), 0 without persistence
+     */
+    public long highestRecoveredItemId() {
+        return highestRecoveredItemId;
+    }
+
+    // Tests drive the wheel by hand (it is only started by recoverCarts())
+    CartExpiryWheel expiryWheel() {
+        return expiryWheel;
+    }
+
+    public void setChangeListener(CartChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Expiry-wheel callback (ticker thread): drops the cart if it was not accessed
+     * for a full TTL, otherwise returns its next deadline. The check and the removal
+     * happen under the customer's lock, so a concurrent access always wins.
+     *
+     * A deadline whose token is not the current cart's incarnation was left behind
+     * by a cart that has since been detached or expired; the current cart has its
+     * own deadline, so this one is dropped rather than rescheduled.
+     */
+    private long expireIfIdle(long customerId, long token, long currentTick) {
+        long[] nextDeadline = {-1};
+        customerCarts.computeIfPresent(customerId, (id, cartState) -> {
+            if (cartState.getIncarnation() != token) {
+                return cartState;
+            }
+            long deadline = cartState.getLastAccessTick() + idleTtlTicks;
+            if (deadline > currentTick) {
+                nextDeadline[0] = deadline;
+                return cartState;
+            }
+            if (journal != null && cartState.getJournalSequence() > 0) {
+                journal.appendExpired(id);
+            }
+            notifyRemoved(id);
+            expiredCarts.increment();
+            return null;
+        });
+        writeJournal();
+        return nextDeadline[0];
+    }
+
+    // Call under the customer's lock, as the cart is removed
+    private void notifyRemoved(long customerId) {
+        CartChangeListener listener = changeListener;
+        if (listener != null && listener.isWatched(customerId)) {
+            listener.onRemoved(customerId);
+        }
+    }
+
+    /*
+     * Copies queued journal entries into the segment file - never called under a
+     * bin lock, so a segment roll only delays this caller, not the customers that
+     * share its ConcurrentHashMap bin.
+     */
+    private void writeJournal() {
+        if (journal != null) {
+            journal.writePending();
+        }
+    }
+
+    /**
+     * Visits every cart while holding that customer's lock (used for snapshots)
+     */
+    public void forEachCart(BiConsumer<Long, CartState> visitor) {
+        for (Long customerId : customerCarts.keySet()) {
+            customerCarts.computeIfPresent(customerId, (id, cartState) -> {
+                visitor.accept(id, cartState);
+                return cartState;
+            });
+        }
     }
 
-    // Clear all data for demo reset
+    // Clear all data for demo reset - journaled, so a restart does not bring the carts back
     public void clearAllCarts() {
-        customerCarts.clear();
+        for (Long customerId : customerCarts.keySet()) {
+            customerCarts.computeIfPresent(customerId, (id, cartState) -> {
+                if (journal != null && cartState.getJournalSequence() > 0) {
+                    journal.appendExpired(id);
+                }
+                notifyRemoved(id);
+                return null;
+            });
+        }
+        writeJournal();
     }
-}
\ No newline at end of file
+}
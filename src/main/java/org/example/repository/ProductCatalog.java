@@ -0,0 +1,88 @@
+package org.example.repository;
+
+import org.example.model.cart.Product;
+import org.springframework.stereotype.Component;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ProductCatalog - Shared, canonical Product instances (flyweight / interning)
+ *
+ * Every cart line references a Product. Built per request, the same product in
+ * 100k carts means 100k identical records, name strings and BigDecimals.
+ * intern() returns ONE canonical instance per (name, price) instead.
+ *
+ * RETENTION: the catalog only holds Products weakly. Once no cart line references
+ * a product any more, the GC may reclaim it and its entry is purged on a later
+ * intern() call - the catalog never keeps a product alive on its own.
+ *
+ * Thread-safe and lock-free on the hit path (one ConcurrentHashMap lookup).
+ */
+@Component
+public class ProductCatalog {
+
+    private record Key(String name, BigDecimal price) {}
+
+    /**
+     * Weak reference that remembers its key, so the entry can be removed once
+     * the product is collected
+     */
+    private static final class CanonicalProduct extends WeakReference<Product> {
+        final Key key;
+
+        CanonicalProduct(Key key, Product product, ReferenceQueue<Product> queue) {
+            super(product, queue);
+            this.key = key;
+        }
+    }
+
+    private final Map<Key, CanonicalProduct> canonical = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Product> collected = new ReferenceQueue<>();
+
+    /**
+     * @return the canonical Product for this name and price (prices are compared
+     *         with BigDecimal.equals, like Product itself, so 9.9 and 9.90 differ)
+     */
+    public Product intern(String name, BigDecimal price) {
+        purgeCollected();
+        Key key = new Key(name, price);
+
+        CanonicalProduct existing = canonical.get(key);
+        Product product = existing != null ? existing.get() : null;
+        if (product != null) {
+            return product;
+        }
+
+        Product[] result = new Product[1];
+        canonical.compute(key, (k, current) -> {
+            Product live = current != null ? current.get() : null;
+            if (live != null) {
+                result[0] = live; // another thread won the race
+                return current;
+            }
+            result[0] = new Product(name, price);
+            return new CanonicalProduct(k, result[0], collected);
+        });
+        return result[0];
+    }
+
+    /**
+     * @return number of distinct products currently tracked (including entries
+     *         whose product was collected but not yet purged)
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    private void purgeCollected() {
+        for (Object ref; (ref = collected.poll()) != null; ) {
+            CanonicalProduct stale = (CanonicalProduct) ref;
+            // Only remove the mapping if it was not replaced by a fresh product
+            canonical.remove(stale.key, stale);
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package org.example.repository.journal;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartState;
+import org.example.repository.ProductCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedCollection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * CartJournal - Durable write-behind log of cart changes with snapshot recovery
+ *
+ * WRITE PATH:
+ * - CartRepository appends the CartCommands applied by each mutate() call while
+ *   it still holds the customer's lock, so journal order matches apply order.
+ *   append() only assigns sequence numbers and encodes the entry into a pending
+ *   queue - no file I/O under the customer's (ConcurrentHashMap bin) lock.
+ * - Right after releasing that lock the caller runs writePending(), which copies
+ *   every queued entry, in sequence order, into a memory-mapped segment file
+ *   (default 64MB); whoever holds the write lock writes the others' entries too.
+ *   A full segment is forced to disk and a new one is "rolled" in.
+ * - Durability is a GROUP COMMIT: a background thread forces the newly written
+ *   range of the active segment every flush interval. A JVM crash loses nothing
+ *   (the pages already belong to the OS page cache); an OS crash or power loss
+ *   can lose at most the last flush interval.
+ *
+ * SNAPSHOTS:
+ * - Periodically, and on shutdown, every cart is written to a compacted snapshot
+ *   file. Each cart records the sequence of the last journal entry it reflects,
+ *   so carts can keep changing while the snapshot is taken.
+ * - Segments whose entries are all covered by the snapshot are then deleted,
+ *   which bounds replay time.
+ *
+ * RECOVERY (startup):
+ * - Load the newest snapshot, then replay newer journal entries, skipping any
+ *   entry a cart already reflects. Replay stops at the zero-filled tail of a
+ *   segment or at the first entry whose CRC32C does not match (torn write).
+ */
+public class CartJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x43415254; // "CART"
+    // 5: merges keep only where each guest line went, not the carts before and
+    // after; 4: product names as length-prefixed UTF-8; 3: merges keep the guest's
+    // lines and undo log; 2: undo/redo logs of CartActions; 1: history of added
+    // items (older versions still readable)
+    private static final int SNAPSHOT_VERSION = 5;
+
+    /**
+     * Iterates every cart, calling the visitor while holding that cart's lock
+     */
+    @FunctionalInterface
+    public interface CartSource {
+        void forEachCart(BiConsumer<Long, CartState> visitor);
+    }
+
+    /**
+     * Outcome of recover(), logged at startup
+     */
+    public record RecoveryResult(
+            int cartsFromSnapshot,
+            long entriesReplayed,
+            int cartsRecovered,
+            long lastSequence,
+            long highestItemId,
+            Duration elapsed
+    ) {}
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+
+    // Guards lastSequence, scratch and the pending queue - held for encoding only
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32C appendCrc = new CRC32C();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private volatile long lastSequence;
+    // Encoded entries not yet copied into a segment, in sequence order
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+
+    // Guards the active segment: copying entries and rolling segments
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Segment active;
+
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * An open, memory-mapped segment file
+     */
+    private static final class Segment {
+        final long firstSequence;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        volatile int writePosition;
+        volatile int flushedPosition;
+
+        Segment(long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    public CartJournal(Path directory, int segmentBytes, Duration flushInterval, Duration snapshotInterval) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    // ==================== Recovery ====================
+
+    /**
+     * Rebuilds carts from the newest snapshot plus the journal tail and opens a
+     * fresh segment for appends. Must be called once, before append().
+     *
+     * @param carts       map to fill (customerId → cart)
+     * @param cartFactory creates an empty cart for a customer
+     * @param products    catalog that recovered items share their Products with
+     */
+    public RecoveryResult recover(Map<Long, CartState> carts, LongFunction<CartState> cartFactory,
+                                  ProductCatalog products) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+
+        long snapshotSequence = 0;
+        int cartsFromSnapshot = 0;
+        Path snapshot = latestSnapshot();
+        if (snapshot != null) {
+            snapshotSequence = sequenceOf(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            cartsFromSnapshot = loadSnapshot(snapshot, carts, cartFactory, products);
+        }
+
+        long sequence = snapshotSequence;
+        long replayed = 0;
+        for (Path segment : segmentsInOrder()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                CRC32C crc = new CRC32C();
+                while (buffer.remaining() >= CartJournalCodec.HEADER_BYTES) {
+                    int entryStart = buffer.position();
+                    int length = buffer.getInt(entryStart);
+                    if (length < CartJournalCodec.HEADER_BYTES || length > buffer.remaining()) {
+                        break; // zero-filled tail or truncated entry
+                    }
+                    crc.reset();
+                    crc.update(buffer.slice(entryStart + 8, length - 8));
+                    if ((int) crc.getValue() != buffer.getInt(entryStart + 4)) {
+                        logger.warn("JOURNAL: Torn entry in {} at offset {} - ignoring rest of segment",
+                                segment.getFileName(), entryStart);
+                        break;
+                    }
+
+                    buffer.position(entryStart + 8);
+                    long entrySequence = buffer.getLong();
+                    long customerId = buffer.getLong();
+                    byte type = buffer.get();
+                    CartCommand command = type == CartJournalCodec.TYPE_EXPIRED
+                            ? null
+                            : CartJournalCodec.readPayload(buffer, type, products);
+                    buffer.position(entryStart + length);
+
+                    if (entrySequence <= snapshotSequence) {
+                        continue;
+                    }
+                    sequence = Math.max(sequence, entrySequence);
+                    if (command == null) {
+                        carts.computeIfPresent(customerId, (id, cartState) ->
+                                cartState.getJournalSequence() < entrySequence ? null : cartState);
+                        replayed++;
+                        continue;
+                    }
+                    CartState cartState = carts.computeIfAbsent(customerId, cartFactory::apply);
+                    if (entrySequence > cartState.getJournalSequence()) {
+                        if (command instanceof CartCommand.MergeItems merge) {
+                            // The guest's undo log travels with the merge (not journaled)
+                            CartState source = carts.get(merge.fromCustomerId());
+                            if (source != null) {
+                                command = new CartCommand.MergeItems(merge.fromCustomerId(), merge.items(),
+                                        List.copyOf(source.getActionHistory()));
+                            }
+                        }
+                        CartAction undone = command instanceof CartCommand.UndoLast
+                                && !cartState.getActionHistory().isEmpty()
+                                ? cartState.getActionHistory().getLast() : null;
+                        cartState.replay(command);
+                        cartState.setJournalSequence(entrySequence);
+                        replayed++;
+                        if (undone instanceof CartAction.Merged merged) {
+                            // Same step as CartService.undoLastAction(): the guest gets its lines back
+                            CartState guest = carts.computeIfAbsent(merged.fromCustomerId(), cartFactory::apply);
+                            if (guest.getJournalSequence() < entrySequence) {
+                                guest.restoreLines(merged.guestItems(), merged.guestHistory());
+                                guest.setJournalSequence(entrySequence);
+                            }
+                        }
+                    }
+                    if (command instanceof CartCommand.MergeItems merge) {
+                        // The merged-in cart was released in the same step
+                        carts.computeIfPresent(merge.fromCustomerId(), (id, source) ->
+                                source.getJournalSequence() < entrySequence ? null : source);
+                    }
+                }
+            }
+        }
+
+        carts.values().forEach(CartState::updateMetadata);
+
+        writeLock.lock();
+        try {
+            lastSequence = sequence;
+            active = openSegment(sequence + 1);
+        } finally {
+            writeLock.unlock();
+        }
+
+        return new RecoveryResult(cartsFromSnapshot, replayed, carts.size(), sequence,
+                highestItemId(carts.values()), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Highest item id a recovered cart can still bring back - its lines plus
+     * everything undo/redo can restore
+     */
+    private static long highestItemId(Collection<CartState> carts) {
+        long highest = 0;
+        for (CartState cartState : carts) {
+            highest = Math.max(highest, highestItemId(cartState.getItems()));
+            for (CartAction action : cartState.getActionHistory()) {
+                highest = Math.max(highest, highestItemId(action));
+            }
+            for (CartAction action : cartState.getRedoHistory()) {
+                highest = Math.max(highest, highestItemId(action));
+            }
+        }
+        return highest;
+    }
+
+    private static long highestItemId(CartAction action) {
+        return switch (action) {
+            case CartAction.Added added -> added.item().getId();
+            case CartAction.Removed removed -> removed.item().getId();
+            case CartAction.Cleared cleared -> highestItemId(cleared.items());
+            case CartAction.Merged merged -> {
+                // Every line the merge touched is in the cart or among the guest lines
+                long highest = highestItemId(merged.guestItems());
+                for (CartAction guestAction : merged.guestHistory()) {
+                    highest = Math.max(highest, highestItemId(guestAction));
+                }
+                yield highest;
+            }
+        };
+    }
+
+    private static long highestItemId(Iterable<CartItem> items) {
+        long highest = 0;
+        for (CartItem item : items) {
+            highest = Math.max(highest, item.getId());
+        }
+        return highest;
+    }
+
+    private int loadSnapshot(Path snapshot, Map<Long, CartState> carts,
+                             LongFunction<CartState> cartFactory,
+                             ProductCatalog products) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            int version;
+            if (in.readInt() != SNAPSHOT_MAGIC || (version = in.readInt()) < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Not a cart snapshot: " + snapshot);
+            }
+            in.readLong(); // snapshot sequence, also encoded in the file name
+
+            while (in.readBoolean()) {
+                long customerId = in.readLong();
+                CartState cartState = cartFactory.apply(customerId);
+                cartState.setJournalSequence(in.readLong());
+
+                int itemCount = in.readInt();
+                for (int i = 0; i < itemCount; i++) {
+                    cartState.getItems().addLast(CartJournalCodec.readItem(in, products, version));
+                }
+                if (version == 1) {
+                    int historyCount = in.readInt();
+                    for (int i = 0; i < historyCount; i++) {
+                        cartState.getActionHistory().addLast(
+                                new CartAction.Added(CartJournalCodec.readItem(in, products, version), false));
+                    }
+                } else {
+                    readActions(in, cartState.getActionHistory(), products, version);
+                    readActions(in, cartState.getRedoHistory(), products, version);
+                }
+
+                carts.put(customerId, cartState);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void readActions(DataInputStream in, SequencedCollection<CartAction> log,
+                                    ProductCatalog products, int version) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            CartAction action = CartJournalCodec.readAction(in, products, version);
+            if (action == null) {
+                // Nothing from here back can be undone (or redone) any more
+                log.clear();
+            } else {
+                log.addLast(action);
+            }
+        }
+    }
+
+    // ==================== Write path ====================
+
+    /**
+     * Starts the group-commit flusher and the periodic snapshot task
+     */
+    public void start(CartSource source) {
+        scheduler = Executors.newScheduledThreadPool(2,
+                Thread.ofPlatform().name("cart-journal-", 0).daemon().factory());
+
+        long flushMicros = flushInterval.toNanos() / 1000;
+        // Also writes anything a caller queued but has not written yet
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMicros, flushMicros, TimeUnit.MICROSECONDS);
+
+        long snapshotMillis = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> snapshotQuietly(source),
+                snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues commands applied to one cart. Called while holding that cart's lock;
+     * records the last assigned sequence on the cart. Call writePending() once
+     * the lock is released.
+     */
+    public void append(long customerId, CartState cartState, List<CartCommand> commands) {
+        appendLock.lock();
+        try {
+            long sequence = lastSequence;
+            for (CartCommand command : commands) {
+                enqueue(++sequence, customerId, CartJournalCodec.typeOf(command), command);
+            }
+            lastSequence = sequence;
+            cartState.setJournalSequence(sequence);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Queues a record that a cart was removed (idle expiry, demo reset), so recovery
+     * does not resurrect it. Called while holding that cart's lock; call
+     * writePending() once it is released.
+     */
+    public void appendExpired(long customerId) {
+        appendLock.lock();
+        try {
+            enqueue(++lastSequence, customerId, CartJournalCodec.TYPE_EXPIRED, null);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Encodes one entry onto the pending queue. Called under appendLock.
+    private void enqueue(long sequence, long customerId, byte type, CartCommand command) {
+        int length = encode(sequence, customerId, type, command);
+        pending.addLast(Arrays.copyOf(scratch.array(), length));
+    }
+
+    /**
+     * Copies every queued entry into the active segment, in sequence order.
+     * Call without holding any cart lock: a segment roll forces a file to disk.
+     * When it returns, every entry queued before the call has been written.
+     */
+    public void writePending() {
+        writeLock.lock();
+        try {
+            byte[] entry;
+            while ((entry = nextPending()) != null) {
+                try {
+                    write(entry);
+                } catch (RuntimeException e) {
+                    requeue(entry); // keep sequence order for the next attempt
+                    throw e;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private byte[] nextPending() {
+        appendLock.lock();
+        try {
+            return pending.pollFirst();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void requeue(byte[] entry) {
+        appendLock.lock();
+        try {
+            pending.addFirst(entry);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Copies one encoded entry into the active segment. Called under writeLock.
+     */
+    private void write(byte[] entry) {
+        try {
+            Segment segment = active;
+            if (segment.writePosition + entry.length > segmentBytes) {
+                segment = roll(ByteBuffer.wrap(entry).getLong(8));
+            }
+            segment.buffer.put(segment.writePosition, entry, 0, entry.length);
+            segment.writePosition += entry.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to cart journal", e);
+        }
+    }
+
+    private int encode(long sequence, long customerId, byte type, CartCommand command) {
+        while (true) {
+            try {
+                scratch.clear();
+                scratch.putInt(0);                // length, patched below
+                scratch.putInt(0);                // crc, patched below
+                scratch.putLong(sequence);
+                scratch.putLong(customerId);
+                scratch.put(type);
+                if (command != null) {
+                    CartJournalCodec.writePayload(scratch, command);
+                }
+
+                int length = scratch.position();
+                if (length > segmentBytes) {
+                    throw new IllegalArgumentException("Journal entry larger than a segment: " + length);
+                }
+                appendCrc.reset();
+                appendCrc.update(scratch.array(), 8, length - 8);
+                scratch.putInt(0, length);
+                scratch.putInt(4, (int) appendCrc.getValue());
+                return length;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Forces the full segment to disk and opens the next one. Called under writeLock.
+     */
+    private Segment roll(long firstSequence) throws IOException {
+        Segment previous = active;
+        previous.buffer.force(0, previous.writePosition);
+        previous.flushedPosition = previous.writePosition;
+        previous.channel.close();
+
+        Segment next = openSegment(firstSequence);
+        active = next;
+        return next;
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        // A leftover file with this name can only hold entries we never replayed
+        FileChannel channel = FileChannel.open(segmentPath(firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        return new Segment(firstSequence, channel, buffer);
+    }
+
+    /**
+     * Group commit: forces everything written since the previous flush
+     */
+    public void flush() {
+        Segment segment = active;
+        if (segment == null) {
+            return;
+        }
+        int written = segment.writePosition;
+        int flushed = segment.flushedPosition;
+        if (written > flushed) {
+            segment.buffer.force(flushed, written - flushed);
+            segment.flushedPosition = written;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            writePending();
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("JOURNAL: Flush failed", e);
+        }
+    }
+
+    // ==================== Snapshots ====================
+
+    /**
+     * Writes a compacted snapshot of every non-empty cart, then deletes the
+     * older snapshot and every segment it fully covers.
+     */
+    public void snapshot(CartSource source) throws IOException {
+        snapshotLock.lock();
+        try {
+            long start = System.nanoTime();
+            // Every entry up to here is applied to its cart by the time we lock that cart
+            long snapshotSequence = lastSequence;
+            Path temp = directory.resolve(SNAPSHOT_PREFIX + "in-progress.tmp");
+            int[] written = new int[1];
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(java.nio.channels.Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(snapshotSequence);
+
+                source.forEachCart((customerId, cartState) -> {
+                    if (cartState.isBlank()) {
+                        return;
+                    }
+                    try {
+                        writeCart(out, customerId, cartState);
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeBoolean(false);
+                out.flush();
+                channel.force(true);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Path snapshot = snapshotPath(snapshotSequence);
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            int deleted = deleteCoveredFiles(snapshot, snapshotSequence);
+
+            logger.info("JOURNAL: Snapshot of {} carts at sequence {} written in {} ms ({} old files removed)",
+                    written[0], snapshotSequence, (System.nanoTime() - start) / 1_000_000, deleted);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly(CartSource source) {
+        try {
+            snapshot(source);
+        } catch (IOException | RuntimeException e) {
+            logger.error("JOURNAL: Snapshot failed", e);
+        }
+    }
+
+    private static void writeCart(DataOutputStream out, long customerId, CartState cartState) throws IOException {
+        out.writeBoolean(true);
+        out.writeLong(customerId);
+        out.writeLong(cartState.getJournalSequence());
+        out.writeInt(cartState.getItems().size());
+        for (CartItem item : cartState.getItems()) {
+            CartJournalCodec.writeItem(out, item);
+        }
+        writeActions(out, cartState.getActionHistory());
+        writeActions(out, cartState.getRedoHistory());
+    }
+
+    private static void writeActions(DataOutputStream out, SequencedCollection<CartAction> log) throws IOException {
+        out.writeInt(log.size());
+        for (CartAction action : log) {
+            CartJournalCodec.writeAction(out, action);
+        }
+    }
+
+    private int deleteCoveredFiles(Path keepSnapshot, long snapshotSequence) throws IOException {
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> isFile(f, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)).toList()) {
+                if (!file.equals(keepSnapshot) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+
+        // Segment i holds sequences [first(i), first(i+1) - 1]; never touch the active one
+        List<Path> segments = segmentsInOrder();
+        long activeFirst = active.firstSequence;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            long first = sequenceOf(segments.get(i), SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            long nextFirst = sequenceOf(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            if (first != activeFirst && nextFirst - 1 <= snapshotSequence && Files.deleteIfExists(segments.get(i))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // ==================== Files ====================
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private List<Path> segmentsInOrder() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded sequence numbers sort correctly as strings
+            return files.filter(f -> isFile(f, SEGMENT_PREFIX, SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    private Path latestSnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> isFile(f, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)).sorted()
+                    .reduce((first, second) -> second).orElse(null);
+        }
+    }
+
+    private static boolean isFile(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return name.startsWith(prefix) && name.endsWith(suffix);
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        writeLock.lock();
+        try {
+            if (active != null) {
+                writePending();
+                flush();
+                active.channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("JOURNAL: Failed to close active segment", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
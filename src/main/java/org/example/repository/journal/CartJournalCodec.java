@@ -0,0 +1,381 @@
+package org.example.repository.journal;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.Product;
+import org.example.repository.ProductCatalog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of cart commands and cart items for the journal and snapshots.
+ *
+ * Journal entry layout (big-endian):
+ * <pre>
+ *   int  length      - total entry size in bytes, including this header
+ *   int  crc32c      - checksum of everything after this field
+ *   long sequence    - global, strictly increasing journal sequence
+ *   long customerId
+ *   byte type        - one of the TYPE_* constants
+ *   ...  payload     - type specific
+ * </pre>
+ * A zero length marks the unwritten (zero-filled) tail of a memory-mapped segment;
+ * a checksum mismatch marks a torn write and ends replay of that segment.
+ */
+final class CartJournalCodec {
+
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 1;
+
+    static final byte TYPE_ADD_LAST = 1;
+    static final byte TYPE_ADD_FIRST = 2;
+    static final byte TYPE_REMOVE = 3;
+    static final byte TYPE_UNDO = 4;
+    static final byte TYPE_CLEAR = 5;
+    // Whole cart removed by idle expiry - no payload, not a CartCommand
+    static final byte TYPE_EXPIRED = 6;
+    static final byte TYPE_REDO = 7;
+    // Payload: source customer id + item list; recovery also drops the source cart
+    // (the source's undo log is taken from the recovered source cart)
+    static final byte TYPE_MERGE = 8;
+
+    // Snapshot tags for undo/redo log entries
+    private static final byte ACTION_ADDED = 1;
+    private static final byte ACTION_REMOVED = 2;
+    private static final byte ACTION_CLEARED = 3;
+    private static final byte ACTION_MERGED = 4;
+
+    private CartJournalCodec() {}
+
+    // ==================== Commands ====================
+
+    static byte typeOf(CartCommand command) {
+        return switch (command) {
+            case CartCommand.AddItem addItem -> addItem.priority() ? TYPE_ADD_FIRST : TYPE_ADD_LAST;
+            case CartCommand.RemoveItem removeItem -> TYPE_REMOVE;
+            case CartCommand.UndoLast undoLast -> TYPE_UNDO;
+            case CartCommand.RedoLast redoLast -> TYPE_REDO;
+            case CartCommand.ClearCart clearCart -> TYPE_CLEAR;
+            case CartCommand.MergeItems mergeItems -> TYPE_MERGE;
+        };
+    }
+
+    static void writePayload(ByteBuffer out, CartCommand command) {
+        switch (command) {
+            case CartCommand.AddItem addItem -> writeItem(out, addItem.item());
+            case CartCommand.RemoveItem(var itemId) -> out.putLong(itemId);
+            case CartCommand.UndoLast undoLast -> { }
+            case CartCommand.RedoLast redoLast -> { }
+            case CartCommand.ClearCart clearCart -> { }
+            case CartCommand.MergeItems(long fromCustomerId, List<CartItem> items, var history) -> {
+                out.putLong(fromCustomerId);
+                out.putInt(items.size());
+                items.forEach(item -> writeItem(out, item));
+            }
+        }
+    }
+
+    static CartCommand readPayload(ByteBuffer in, byte type, ProductCatalog products) {
+        return switch (type) {
+            case TYPE_ADD_LAST -> new CartCommand.AddItem(readItem(in, products), false);
+            case TYPE_ADD_FIRST -> new CartCommand.AddItem(readItem(in, products), true);
+            case TYPE_REMOVE -> new CartCommand.RemoveItem(in.getLong());
+            case TYPE_UNDO -> new CartCommand.UndoLast();
+            case TYPE_REDO -> new CartCommand.RedoLast();
+            case TYPE_CLEAR -> new CartCommand.ClearCart();
+            case TYPE_MERGE -> {
+                long fromCustomerId = in.getLong();
+                int count = in.getInt();
+                List<CartItem> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(readItem(in, products));
+                }
+                yield new CartCommand.MergeItems(fromCustomerId, items);
+            }
+            default -> throw new IllegalStateException("Unknown journal entry type: " + type);
+        };
+    }
+
+    // ==================== Items (journal, ByteBuffer) ====================
+
+    static void writeItem(ByteBuffer out, CartItem item) {
+        out.putLong(item.getId());
+        writeString(out, item.getProduct().name());
+        writeDecimal(out, item.getProduct().price());
+        out.putInt(item.getQuantity());
+        writeDecimal(out, item.getUnitPrice());
+    }
+
+    static CartItem readItem(ByteBuffer in, ProductCatalog products) {
+        long id = in.getLong();
+        String name = readString(in);
+        BigDecimal productPrice = readDecimal(in);
+        int quantity = in.getInt();
+        BigDecimal unitPrice = readDecimal(in);
+        return newItem(id, name, productPrice, quantity, unitPrice, products);
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(ByteBuffer out, BigDecimal value) {
+        if (value == null) {
+            out.put((byte) -1);
+            return;
+        }
+        byte[] unscaled = unscaledBytes(value);
+        out.put((byte) unscaled.length);
+        out.put(unscaled);
+        out.putInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int length = in.get();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+
+    private static byte[] unscaledBytes(BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount too large to journal: " + value);
+        }
+        return unscaled;
+    }
+
+    // ==================== Items (snapshots, streams) ====================
+
+    static void writeItem(DataOutput out, CartItem item) throws IOException {
+        out.writeLong(item.getId());
+        writeString(out, item.getProduct().name());
+        writeDecimal(out, item.getProduct().price());
+        out.writeInt(item.getQuantity());
+        writeDecimal(out, item.getUnitPrice());
+    }
+
+    /**
+     * @param snapshotVersion format version of the snapshot being read
+     */
+    static CartItem readItem(DataInput in, ProductCatalog products, int snapshotVersion) throws IOException {
+        long id = in.readLong();
+        String name;
+        if (snapshotVersion >= 4) {
+            name = readString(in);
+        } else {
+            name = in.readBoolean() ? in.readUTF() : null; // modified UTF-8, max 64KB
+        }
+        BigDecimal productPrice = readDecimal(in);
+        int quantity = in.readInt();
+        BigDecimal unitPrice = readDecimal(in);
+        return newItem(id, name, productPrice, quantity, unitPrice, products);
+    }
+
+    /**
+     * Recovered carts repeat the same few catalog products millions of times -
+     * share the canonical Product instance (and its price) instead.
+     */
+    private static CartItem newItem(long id, String name, BigDecimal productPrice, int quantity,
+                                    BigDecimal unitPrice, ProductCatalog products) {
+        Product product = products.intern(name, productPrice);
+        BigDecimal price = product.price() != null && product.price().equals(unitPrice) ? product.price() : unitPrice;
+        return new CartItem(id, product, quantity, price);
+    }
+
+    static void writeAction(DataOutput out, CartAction action) throws IOException {
+        switch (action) {
+            case CartAction.Added(CartItem item, boolean priority) -> {
+                out.writeByte(ACTION_ADDED);
+                writeItem(out, item);
+                out.writeBoolean(priority);
+            }
+            case CartAction.Removed(CartItem item, Long predecessorId) -> {
+                out.writeByte(ACTION_REMOVED);
+                writeItem(out, item);
+                out.writeBoolean(predecessorId != null);
+                if (predecessorId != null) {
+                    out.writeLong(predecessorId);
+                }
+            }
+            case CartAction.Cleared cleared -> {
+                out.writeByte(ACTION_CLEARED);
+                writeItems(out, cleared.items());
+            }
+            case CartAction.Merged merged -> {
+                out.writeByte(ACTION_MERGED);
+                out.writeLong(merged.fromCustomerId());
+                out.writeInt(merged.itemCount());
+                writeItems(out, merged.guestItems());
+                for (long lineId : merged.lineIds()) {
+                    out.writeLong(lineId);
+                }
+                out.writeInt(merged.guestHistory().size());
+                for (CartAction guestAction : merged.guestHistory()) {
+                    writeAction(out, guestAction);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param snapshotVersion format version of the snapshot being read (2 or later)
+     * @return the action, or null for a merge from a version 2 snapshot - it did
+     *         not keep the guest's lines, so neither it nor anything before it
+     *         can be undone
+     */
+    static CartAction readAction(DataInput in, ProductCatalog products, int snapshotVersion) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case ACTION_ADDED -> new CartAction.Added(readItem(in, products, snapshotVersion), in.readBoolean());
+            case ACTION_REMOVED -> {
+                CartItem item = readItem(in, products, snapshotVersion);
+                yield new CartAction.Removed(item, in.readBoolean() ? in.readLong() : null);
+            }
+            case ACTION_CLEARED -> new CartAction.Cleared(readItems(in, products, snapshotVersion));
+            case ACTION_MERGED -> {
+                long fromCustomerId = in.readLong();
+                if (snapshotVersion < 5) {
+                    yield readLegacyMerge(in, fromCustomerId, products, snapshotVersion);
+                }
+                int itemCount = in.readInt();
+                List<CartItem> guestItems = readItems(in, products, snapshotVersion);
+                long[] lineIds = new long[guestItems.size()];
+                for (int i = 0; i < lineIds.length; i++) {
+                    lineIds[i] = in.readLong();
+                }
+                yield new CartAction.Merged(fromCustomerId, guestItems, lineIds,
+                        readGuestHistory(in, products, snapshotVersion), itemCount);
+            }
+            default -> throw new IOException("Unknown cart action tag: " + tag);
+        };
+    }
+
+    /*
+     * Versions 2-4 stored the whole cart before and after the merge (version 2
+     * without the guest's lines). A guest line went into the first line of its
+     * product in the merged cart - an existing line or the one the merge appended.
+     */
+    private static CartAction.Merged readLegacyMerge(DataInput in, long fromCustomerId, ProductCatalog products,
+                                                     int snapshotVersion) throws IOException {
+        readItems(in, products, snapshotVersion); // before
+        List<CartItem> after = readItems(in, products, snapshotVersion);
+        if (snapshotVersion < 3) {
+            return null;
+        }
+        List<CartItem> guestItems = readItems(in, products, snapshotVersion);
+        Map<Product, Long> firstLine = new HashMap<>();
+        for (CartItem line : after) {
+            firstLine.putIfAbsent(line.getProduct(), line.getId());
+        }
+        long[] lineIds = new long[guestItems.size()];
+        for (int i = 0; i < lineIds.length; i++) {
+            lineIds[i] = firstLine.get(guestItems.get(i).getProduct());
+        }
+        return new CartAction.Merged(fromCustomerId, guestItems, lineIds,
+                readGuestHistory(in, products, snapshotVersion), after.size());
+    }
+
+    private static List<CartAction> readGuestHistory(DataInput in, ProductCatalog products,
+                                                     int snapshotVersion) throws IOException {
+        int historyCount = in.readInt();
+        List<CartAction> guestHistory = new ArrayList<>(historyCount);
+        for (int i = 0; i < historyCount; i++) {
+            CartAction guestAction = readAction(in, products, snapshotVersion);
+            if (guestAction == null) {
+                guestHistory.clear();
+            } else {
+                guestHistory.add(guestAction);
+            }
+        }
+        return List.copyOf(guestHistory);
+    }
+
+    private static void writeItems(DataOutput out, List<CartItem> items) throws IOException {
+        out.writeInt(items.size());
+        for (CartItem item : items) {
+            writeItem(out, item);
+        }
+    }
+
+    private static List<CartItem> readItems(DataInput in, ProductCatalog products,
+                                            int snapshotVersion) throws IOException {
+        int count = in.readInt();
+        CartItem[] items = new CartItem[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = readItem(in, products, snapshotVersion);
+        }
+        return List.of(items);
+    }
+
+    // Same layout as the journal: int length (-1 for null) + UTF-8 bytes, no 64KB limit
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(-1);
+            return;
+        }
+        byte[] unscaled = unscaledBytes(value);
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        int length = in.readByte();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.readInt());
+    }
+}
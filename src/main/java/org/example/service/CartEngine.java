@@ -0,0 +1,55 @@
+package org.example.service;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.CartState;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * CartEngine - How CartService runs a read-modify-write against one cart
+ *
+ * Two modes, chosen by org.features.sequenced-collections.engine:
+ * - sync (default): runs on the caller's thread under the customer's
+ *   ConcurrentHashMap bin lock (CartRepository.mutate()).
+ * - sharded: customers are hashed to N shards; each shard has one writer thread
+ *   that owns its carts and drains a bounded command queue. The caller (a virtual
+ *   thread) parks until its command completes.
+ *
+ * Either way an operation is atomic for its cart. Operations must not call back
+ * into the engine - in sharded mode that would deadlock the shard.
+ *
+ * Reads (snapshot()) bypass both modes: they return the cart's published
+ * CartSnapshot without taking a lock or queueing behind writers.
+ */
+public interface CartEngine {
+
+    <T> T execute(Long customerId, Function<? super CartState, ? extends T> operation);
+
+    /**
+     * Removes the customer's cart after any operations already queued for it
+     * (see CartRepository.detach())
+     *
+     * @return the removed cart, or null if there was none
+     */
+    CartState detach(Long customerId);
+
+    /**
+     * Gives lines and undo history back to a customer's cart, after any operations
+     * already queued for it (see CartRepository.restore())
+     */
+    void restore(Long customerId, List<CartItem> lines, List<CartAction> history);
+
+    /**
+     * Lock-free read of the customer's cart (see CartRepository.snapshot())
+     */
+    CartSnapshot snapshot(Long customerId);
+
+    /**
+     * @return the highest cart item id recovered at startup, 0 if none
+     *         (see CartRepository.highestRecoveredItemId())
+     */
+    long highestRecoveredItemId();
+}
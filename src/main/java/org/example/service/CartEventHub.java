@@ -0,0 +1,305 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.example.dto.cart.CartChangeEvent;
+import org.example.model.cart.CartChange;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.CartState;
+import org.example.repository.CartChangeListener;
+import org.example.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CartEventHub - Fans cart changes out to Server-Sent Event subscribers
+ *
+ * HOW IT WORKS:
+ * - CartRepository calls onChanges() inside the customer's lock; the hub only
+ *   builds an immutable CartChangeEvent and queues it for each subscriber.
+ * - Each subscriber owns a lock-free queue. Whoever queues into an idle
+ *   subscriber starts ONE drain task on a virtual thread, which sends until the
+ *   queue is empty and then ends - an idle subscriber holds no thread at all,
+ *   and a slow browser never blocks a cart mutation.
+ * - A subscriber that falls more than stream-buffer events behind is dropped;
+ *   the browser's EventSource reconnects and receives a fresh snapshot. The
+ *   stream is completed by a sender thread, never under the customer's lock.
+ * - Subscribing takes no lock and never creates a cart: the subscriber is
+ *   registered first and holds back changes, then the initial state is read
+ *   from CartEngine.snapshot() and the held-back changes it already contains
+ *   are dropped - so no change can slip in between.
+ * - A removed cart (merged into another one, expired) is pushed as an empty cart.
+ */
+@Service
+public class CartEventHub implements CartChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartEventHub.class);
+
+    private static final String EVENT_NAME = "cart";
+    private static final Duration HEARTBEAT = Duration.ofSeconds(20);
+
+    private final CartEngine cartEngine;
+    private final ObjectMapper compactMapper;
+    private final Duration streamTimeout;
+    private final int streamBuffer;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cart-stream-heartbeat").daemon().factory());
+
+    public CartEventHub(CartRepository cartRepository,
+                        CartEngine cartEngine,
+                        @Value("${org.features.sequenced-collections.stream-timeout:30m}") Duration streamTimeout,
+                        @Value("${org.features.sequenced-collections.stream-buffer:256}") int streamBuffer,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry) {
+        this.cartEngine = cartEngine;
+        // The REST API pretty-prints; stream events go out on one line each
+        this.compactMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+        this.streamTimeout = streamTimeout;
+        this.streamBuffer = streamBuffer;
+
+        Gauge.builder("cart.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open cart event streams")
+                .register(meterRegistry);
+
+        // Comments keep proxies from closing quiet streams and reveal dead clients
+        long period = HEARTBEAT.toMillis();
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, period, period, TimeUnit.MILLISECONDS);
+        cartRepository.setChangeListener(this);
+    }
+
+    /**
+     * Opens a stream for a customer; the first event is the full cart
+     */
+    public SseEmitter subscribe(Long customerId) {
+        return subscribe(customerId, new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    SseEmitter subscribe(Long customerId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(customerId, emitter);
+
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        // Watched from here on: changes are tracked and held back by the subscriber
+        subscribers.computeIfAbsent(customerId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        subscriber.start(CartChangeEvent.snapshot(cartEngine.snapshot(customerId)));
+
+        logger.info("SERVICE: Customer {} subscribed to cart events ({} open streams)",
+                customerId, subscriberCount.get());
+        return emitter;
+    }
+
+    @Override
+    public boolean isWatched(long customerId) {
+        return subscribers.containsKey(customerId);
+    }
+
+    @Override
+    public void onChanges(long customerId, CartState cartState, List<CartChange> changes) {
+        Set<Subscriber> watching = subscribers.get(customerId);
+        if (watching == null) {
+            return;
+        }
+        Outgoing event = new Outgoing(CartChangeEvent.of(cartState, changes));
+        for (Subscriber subscriber : watching) {
+            subscriber.offer(event);
+        }
+    }
+
+    @Override
+    public void onRemoved(long customerId) {
+        Set<Subscriber> watching = subscribers.get(customerId);
+        if (watching == null) {
+            return;
+        }
+        Outgoing event = new Outgoing(CartChangeEvent.snapshot(CartSnapshot.EMPTY));
+        for (Subscriber subscriber : watching) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.offer(null)));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdown();
+    }
+
+    /**
+     * An event shared by all subscribers of a cart, serialized at most once
+     */
+    private final class Outgoing {
+        final CartChangeEvent event;
+        private volatile String json;
+
+        Outgoing(CartChangeEvent event) {
+            this.event = event;
+        }
+
+        String json() throws JsonProcessingException {
+            String result = json;
+            if (result == null) {
+                // Benign race: two senders may both serialize, both get equal strings
+                result = compactMapper.writeValueAsString(event);
+                json = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One open stream: a queue plus at most one running drain task
+     */
+    private final class Subscriber {
+        private static final Object HEARTBEAT_COMMENT = new Object();
+
+        final Long customerId;
+        final SseEmitter emitter;
+        final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Changes offered before start(); guarded by this, null once started
+        private List<Outgoing> heldBack = new ArrayList<>();
+        private volatile boolean started;
+
+        Subscriber(Long customerId, SseEmitter emitter) {
+            this.customerId = customerId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues the initial state, then the held-back changes it does not contain yet
+         */
+        void start(CartChangeEvent initial) {
+            synchronized (this) {
+                // Everything up to the last change already in the initial state is in it
+                int newer = 0;
+                for (int i = 0; i < heldBack.size(); i++) {
+                    CartChangeEvent event = heldBack.get(i).event;
+                    if (event.incarnation() == initial.incarnation() && event.version() <= initial.version()) {
+                        newer = i + 1;
+                    }
+                }
+                enqueue(new Outgoing(initial));
+                for (Outgoing event : heldBack.subList(newer, heldBack.size())) {
+                    enqueue(event);
+                }
+                heldBack = null;
+                started = true;
+            }
+        }
+
+        /**
+         * @param event the event, or null for a heartbeat comment
+         */
+        void offer(Outgoing event) {
+            if (!started) {
+                synchronized (this) {
+                    if (!started) {
+                        if (event != null) {
+                            heldBack.add(event);
+                        }
+                        return;
+                    }
+                }
+            }
+            enqueue(event);
+        }
+
+        private void enqueue(Outgoing event) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > streamBuffer) {
+                // Usually called under the customer's lock - complete from a sender thread
+                logger.warn("SERVICE: Cart event stream for customer {} fell behind - closing it", customerId);
+                close();
+                senders.execute(emitter::complete);
+                return;
+            }
+            queue.add(event != null ? event : HEARTBEAT_COMMENT);
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                for (Object next; (next = queue.poll()) != null; ) {
+                    queued.decrementAndGet();
+                    if (!send(next)) {
+                        return;
+                    }
+                }
+                draining.set(false);
+                // An offer() may have queued after our last poll but seen draining == true
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private boolean send(Object next) {
+            try {
+                if (next == HEARTBEAT_COMMENT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    Outgoing outgoing = (Outgoing) next;
+                    emitter.send(SseEmitter.event()
+                            .name(EVENT_NAME)
+                            .id(Long.toString(outgoing.event.version()))
+                            .data(outgoing.json(), MediaType.TEXT_PLAIN));
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the container reports completion as well
+                close();
+                return false;
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.computeIfPresent(customerId, (id, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+            subscriberCount.decrementAndGet();
+            queue.clear();
+        }
+    }
+}
@@ -10,26 +10,43 @@
  * - removeLast() for undo/LIFO behavior
  *
  * Design Pattern: Service Layer pattern separating business logic from controllers
+ *
+ * Concurrency: every read-modify-write goes through CartEngine.execute(), either
+ * under the customer's lock (sync) or on the customer's single-writer shard
+ * (sharded), so operations on the same cart are atomic.
+ * Changes are expressed as CartCommands applied via CartState.apply(), which is
+ * what lets the repository journal them durably.
  */
 package org.example.service;
 
+import org.example.dto.cart.CartBatchRequest;
 import org.example.dto.cart.CartItemRequest;
 import org.example.model.cart.*;
-import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
 import org.springframework.stereotype.Service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 @Service
 public class CartService {
 
     private static final Logger logger = LoggerFactory.getLogger(CartService.class);
 
-    private final CartRepository cartRepository;
+    private final CartEngine cartEngine;
+    private final IdGenerator idGenerator;
+    private final ProductCatalog productCatalog;
 
-    public CartService(CartRepository cartRepository) {
-        this.cartRepository = cartRepository;
+    public CartService(CartEngine cartEngine, IdGenerator idGenerator, ProductCatalog productCatalog) {
+        this.cartEngine = cartEngine;
+        this.productCatalog = productCatalog;
+        this.idGenerator = idGenerator;
+        // Ids issued ahead of the clock before a restart must not come back
+        idGenerator.advancePast(cartEngine.highestRecoveredItemId());
     }
 
     /*
@@ -54,29 +71,19 @@ public class CartService {
         logger.info("SERVICE: Adding item '{}' to cart for customer {}",
                 request.getProductName(), customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-        // ✅ Log collection size before operation for debugging
-
-        int sizeBefore = cartState.getItems().size();
-
-        CartItem item = new CartItem(
-                CartItem.generateId(),
-                new Product(request.getProductName(), request.getPrice()),
-                request.getQuantity(),
-                request.getPrice()
-        );
-
-        // JAVA 21 API: addLast() - Explicitly add to END of collection
-        cartState.getItems().addLast(item);
-
-        // Track in chronological history for undo functionality
-        cartState.getActionHistory().addLast(item);
+        CartItem item = newCartItem(request);
 
-        cartState.updateMetadata();
-        cartRepository.saveCartState(customerId, cartState);
+        // Whole read-modify-write runs atomically for this customer
+        // ✅ Log collection size before/after operation for debugging
+        int sizeAfter = cartEngine.execute(customerId, cartState -> {
+            // JAVA 21 API: addLast() - see CartState.apply()
+            cartState.apply(new CartCommand.AddItem(item, false));
+            cartState.updateMetadata();
+            return cartState.getItems().size();
+        });
 
         logger.info("SERVICE: Item added successfully. Cart size: {} -> {}",
-                sizeBefore, cartState.getItems().size());
+                sizeAfter - 1, sizeAfter);
     }
 
     /*
@@ -95,46 +102,40 @@ public class CartService {
         logger.info("SERVICE: Adding PRIORITY item '{}' for customer {}",
                 request.getProductName(), customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-        CartItem item = new CartItem(
-                CartItem.generateId(),
-                new Product(request.getProductName(), request.getPrice()),
-                request.getQuantity(),
-                request.getPrice()
-        );
-
-        // JAVA 21 API: addFirst() - Insert at FRONT of collection (position 0)
-        cartState.getItems().addFirst(item);
+        CartItem item = newCartItem(request);
 
-        // Still track chronologically in history (not at front)
-        cartState.getActionHistory().addLast(item);
+        int sizeAfter = cartEngine.execute(customerId, cartState -> {
+            // JAVA 21 API: addFirst() - see CartState.apply()
+            cartState.apply(new CartCommand.AddItem(item, true));
+            cartState.updateMetadata();
+            return cartState.getItems().size();
+        });
 
-        cartState.updateMetadata();
-        cartRepository.saveCartState(customerId, cartState);
-        int sizeBefore = cartState.getItems().size();
         logger.info("SERVICE: Priority item added to FRONT. Cart size: {} -> {}",
-                sizeBefore, cartState.getItems().size());
+                sizeAfter - 1, sizeAfter);
     }
 
     /*
      * REMOVE SPECIFIC ITEM - Remove by ID
      *
-     * Removes a specific item from cart using standard removeIf().
+     * Removes a specific item from cart using IndexedCartItems.removeById().
      * This is NOT a Java 21 feature - included for completeness.
      *
-     * Note: Could use removeFirst()/removeLast() if removing by position,
-     * but this removes by ID which requires removeIf()
+     * Note: Could use removeFirst()/removeLast() if removing by position.
+     * Removing by ID is a hash lookup + unlink, not a removeIf() scan.
      */
     public void removeItem(Long customerId, Long itemId) {
         logger.info("SERVICE: Removing item ID {} for customer {}", itemId, customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-
-        boolean removed = cartState.getItems().removeIf(item -> item.getId().equals(itemId));
+        boolean removed = cartEngine.execute(customerId, cartState -> {
+            boolean found = cartState.apply(new CartCommand.RemoveItem(itemId));
+            if (found) {
+                cartState.updateMetadata();
+            }
+            return found;
+        });
 
         if (removed) {
-            cartState.updateMetadata();
-            cartRepository.saveCartState(customerId, cartState);
             logger.info("SERVICE: Item {} removed successfully", itemId);
         } else {
             logger.warn("SERVICE: Item {} not found in cart", itemId);
@@ -142,7 +143,7 @@ public class CartService {
     }
 
     /*
-     * UNDO LAST ACTION - Implements Undo Functionality
+     * UNDO LAST ACTION - Implements Multi-Level Undo
      *
      * Uses Java 21 getLast() + removeLast() for stack-like LIFO behavior.
      *
@@ -153,32 +154,63 @@ public class CartService {
      * - Shows stack pattern: Last In, First Out (LIFO)
      *
      * Pattern: Action History as Stack
-     * - addLast() when adding items (push)
+     * - addLast() when recording an add / remove / clear (push)
      * - getLast() to see what to undo (peek)
-     * - removeLast() to undo (pop)
+     * - removeLast() to undo (pop) - the action moves to the redo stack
+     *
+     * Undoing a merge gives the guest cart its lines and history back.
      */
     public void undoLastAction(Long customerId) {
         logger.info("SERVICE: Undoing last action for customer {}", customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-
-        if (!cartState.getActionHistory().isEmpty()) {
+        CartAction undone = cartEngine.execute(customerId, cartState -> {
+            if (cartState.getActionHistory().isEmpty()) {
+                return null;
+            }
 
             // JAVA 21 API: getLast() - Peek at most recent action (non-destructive)
-            CartItem lastAdded = cartState.getActionHistory().getLast();
-            String itemName = lastAdded.getProduct().name();
+            CartAction lastAction = cartState.getActionHistory().getLast();
 
-            // JAVA 21 API: removeLast() - Remove most recent action from history (destructive)
-            cartState.getActionHistory().removeLast();
+            // JAVA 21 API: removeLast() - pops it inside CartState.apply()
+            cartState.apply(new CartCommand.UndoLast());
+            cartState.updateMetadata();
+            return lastAction;
+        });
 
-            cartState.getItems().removeIf(item -> item.getId().equals(lastAdded.getId()));
+        if (undone instanceof CartAction.Merged merged) {
+            restoreGuest(merged);
+        }
+        if (undone != null) {
+            logger.info("SERVICE: Undo successful - reverted {}", undone.describe());
+        } else {
+            logger.warn("SERVICE: Cannot undo - no actions in history");
+        }
+    }
 
+    /*
+     * REDO - Re-apply the Most Recently Undone Action
+     *
+     * Mirror image of undo: getLast() / removeLast() on the redo stack.
+     * Any new add / remove / clear empties the redo stack.
+     */
+    public void redoLastAction(Long customerId) {
+        logger.info("SERVICE: Redoing last undone action for customer {}", customerId);
+
+        CartAction redone = cartEngine.execute(customerId, cartState -> {
+            if (cartState.getRedoHistory().isEmpty()) {
+                return null;
+            }
+
+            CartAction lastUndone = cartState.getRedoHistory().getLast();
+            cartState.apply(new CartCommand.RedoLast());
             cartState.updateMetadata();
-            cartRepository.saveCartState(customerId, cartState);
+            return lastUndone;
+        });
 
-            logger.info("SERVICE: Undo successful - removed '{}'", itemName);
+        if (redone != null) {
+            logger.info("SERVICE: Redo successful - re-applied {}", redone.describe());
         } else {
-            logger.warn("SERVICE: Cannot undo - no actions in history");
+            logger.warn("SERVICE: Cannot redo - nothing has been undone");
         }
     }
 
@@ -191,32 +223,200 @@ public class CartService {
     public void clearCart(Long customerId) {
         logger.info("SERVICE: Clearing cart for customer {}", customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-        int itemCount = cartState.getItems().size();
+        int itemCount = cartEngine.execute(customerId, cartState -> {
+            int count = cartState.getItems().size();
+            cartState.apply(new CartCommand.ClearCart());
+            cartState.updateMetadata();
+            return count;
+        });
+
+        logger.info("SERVICE: Cart cleared - removed {} items", itemCount);
+    }
 
-        cartState.getItems().clear();
-        cartState.getActionHistory().clear();
-        cartState.updateMetadata();
+    /*
+     * APPLY BATCH - Many Cart Operations in One Round Trip
+     *
+     * Applies an ordered list of add / addFirst / remove / undo / redo / clear operations
+     * exactly as if they had been sent one by one, but:
+     * - New items (and their ids) are built up front, outside the lock
+     * - The customer's cart is locked ONCE for the whole batch
+     * - Metadata (getFirst()/getLast()) is recomputed ONCE at the end
+     *
+     * Use Case: bulk-import carts and UIs that queue several clicks
+     */
+    public BatchResult applyBatch(Long customerId, List<CartBatchRequest.Operation> operations) {
+        logger.info("SERVICE: Applying batch of {} operations for customer {}",
+                operations.size(), customerId);
+
+        // Validate and build items before taking the cart lock
+        List<CartItem> newItems = new ArrayList<>(operations.size());
+        for (CartBatchRequest.Operation operation : operations) {
+            if (operation.getType() == null) {
+                throw new IllegalArgumentException("Batch operation type is required");
+            }
+            switch (operation.getType()) {
+                case ADD_LAST, ADD_FIRST -> {
+                    if (operation.getItem() == null) {
+                        throw new IllegalArgumentException(operation.getType() + " requires an item");
+                    }
+                    newItems.add(newCartItem(operation.getItem()));
+                }
+                case REMOVE -> {
+                    if (operation.getItemId() == null) {
+                        throw new IllegalArgumentException("REMOVE requires an itemId");
+                    }
+                }
+                case UNDO, REDO, CLEAR -> { }
+            }
+        }
 
-        cartRepository.saveCartState(customerId, cartState);
+        List<CartAction.Merged> undoneMerges = new ArrayList<>(0);
+        BatchResult result = cartEngine.execute(customerId, cartState -> {
+            Iterator<CartItem> itemsToAdd = newItems.iterator();
+            int added = 0;
+            int removed = 0;
+
+            for (CartBatchRequest.Operation operation : operations) {
+                int sizeBefore = cartState.getItems().size();
+                if (operation.getType() == CartBatchRequest.OperationType.UNDO
+                        && !cartState.getActionHistory().isEmpty()
+                        && cartState.getActionHistory().getLast() instanceof CartAction.Merged merged) {
+                    undoneMerges.add(merged);
+                }
+                cartState.apply(switch (operation.getType()) {
+                    case ADD_LAST -> new CartCommand.AddItem(itemsToAdd.next(), false);
+                    case ADD_FIRST -> new CartCommand.AddItem(itemsToAdd.next(), true);
+                    case REMOVE -> new CartCommand.RemoveItem(operation.getItemId());
+                    case UNDO -> new CartCommand.UndoLast();
+                    case REDO -> new CartCommand.RedoLast();
+                    case CLEAR -> new CartCommand.ClearCart();
+                });
+                int delta = cartState.getItems().size() - sizeBefore;
+                if (delta > 0) {
+                    added += delta;
+                } else {
+                    removed -= delta;
+                }
+            }
 
-        logger.info("SERVICE: Cart cleared - removed {} items", itemCount);
+            cartState.updateMetadata();
+            return new BatchResult(operations.size(), added, removed, cartState.getItems().size());
+        });
+        undoneMerges.forEach(this::restoreGuest);
+
+        logger.info("SERVICE: Batch applied - {} added, {} removed, cart size {}",
+                result.itemsAdded(), result.itemsRemoved(), result.cartSize());
+        return result;
+    }
+
+    /*
+     * MERGE CARTS - Guest Cart Joins the Account Cart on Login
+     *
+     * Instead of replaying every guest line as its own addlastitem call:
+     * 1. Detach the guest cart (released - the guest id starts over empty)
+     * 2. Fold ALL its lines into the account cart in ONE locked update:
+     *    same product → quantities summed, new product → appended with addLast()
+     * 3. The merge is a single undo step and a single journal entry; it carries
+     *    the guest's undo log, and undoing it hands lines and log back to the guest
+     *
+     * If step 2 fails (e.g. a summed quantity overflows) the guest lines are put
+     * back before the exception propagates - a detached guest cart is never lost.
+     *
+     * Linear in the size of both carts - see CartState.mergedWith().
+     */
+    public MergeResult mergeCarts(Long fromCustomerId, Long toCustomerId) {
+        logger.info("SERVICE: Merging cart of customer {} into cart of customer {}",
+                fromCustomerId, toCustomerId);
+        if (fromCustomerId.equals(toCustomerId)) {
+            throw new IllegalArgumentException("Cannot merge a cart into itself");
+        }
+
+        CartState guest = cartEngine.detach(fromCustomerId);
+        // Detached: no other thread can reach the guest cart any more
+        List<CartItem> guestItems = guest != null ? List.copyOf(guest.getItems()) : List.of();
+        List<CartAction> guestHistory = guest != null ? List.copyOf(guest.getActionHistory()) : List.of();
+
+        MergeResult result;
+        try {
+            result = cartEngine.execute(toCustomerId, cartState -> {
+                int sizeBefore = cartState.getItems().size();
+                cartState.apply(new CartCommand.MergeItems(fromCustomerId, guestItems, guestHistory));
+                cartState.updateMetadata();
+                int sizeAfter = cartState.getItems().size();
+                return new MergeResult(guestItems.size(), sizeAfter - sizeBefore,
+                        guestItems.size() - (sizeAfter - sizeBefore), sizeAfter);
+            });
+        } catch (RuntimeException e) {
+            if (!guestItems.isEmpty()) {
+                cartEngine.restore(fromCustomerId, guestItems, guestHistory);
+                logger.warn("SERVICE: Merge into cart of customer {} failed - guest cart {} restored",
+                        toCustomerId, fromCustomerId);
+            }
+            throw e;
+        }
+
+        logger.info("SERVICE: Merge complete - {} lines merged ({} new, {} combined), cart size {}",
+                result.linesMerged(), result.linesAdded(), result.linesCombined(), result.cartSize());
+        return result;
+    }
+
+    // An undone merge returns the guest's lines and undo log to the guest cart
+    private void restoreGuest(CartAction.Merged merged) {
+        cartEngine.restore(merged.fromCustomerId(), merged.guestItems(), merged.guestHistory());
+        logger.info("SERVICE: Merge undone - {} lines returned to cart of customer {}",
+                merged.guestItems().size(), merged.fromCustomerId());
     }
 
     /*
      * GET CART STATE - Retrieve Current Cart
      *
-     * Simple getter with metadata refresh.
      * Called by controller for UI updates after operations.
      *
-     * Note: Metadata update internally uses getFirst() and getLast() (Java 21 APIs)
+     * ❌ MISTAKE: returning the live CartState - Jackson serializes it AFTER the
+     *    lock is released, so a concurrent add can throw
+     *    ConcurrentModificationException or produce a half-updated cart
+     * ✅ FIX: return the immutable CartSnapshot the writer published - lock-free,
+     *    never copies the cart, never waits for a writer
+     *
+     * Note: snapshot metadata uses getFirst() and getLast() (Java 21 APIs)
      */
-    public CartState getCartState(Long customerId) {
+    public CartSnapshot getCartState(Long customerId) {
         logger.debug("SERVICE: Fetching cart state for customer {}", customerId);
 
-        CartState cartState = cartRepository.getCartState(customerId);
-        cartState.updateMetadata();
+        return cartEngine.snapshot(customerId);
+    }
 
-        return cartState;
+    // Lines reference the catalog's canonical Product (and its price) instead
+    // of a fresh copy per line
+    private CartItem newCartItem(CartItemRequest request) {
+        Product product = productCatalog.intern(request.getProductName(), request.getPrice());
+        return new CartItem(
+                idGenerator.nextId(),
+                product,
+                request.getQuantity(),
+                product.price()
+        );
     }
+
+    /**
+     * Summary of an applyBatch() call
+     */
+    public record BatchResult(
+            int operationsApplied,
+            int itemsAdded,
+            int itemsRemoved,
+            int cartSize
+    ) {}
+
+    /**
+     * Summary of a mergeCarts() call
+     *
+     * @param linesCombined guest lines whose quantity went into an existing line
+     */
+    public record MergeResult(
+            int linesMerged,
+            int linesAdded,
+            int linesCombined,
+            int cartSize
+    ) {}
 }
\ No newline at end of file
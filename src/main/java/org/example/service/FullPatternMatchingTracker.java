@@ -0,0 +1,222 @@
+package org.example.service;
+
+
+import org.example.dto.payment.PatternMatchingStep;
+import org.example.dto.payment.PatternMatchingStep.GuardCondition;
+import org.example.model.payment.CustomerType;
+import org.example.service.routing.PaymentRoute;
+import org.example.service.velocity.VelocityCheck;
+import org.example.service.velocity.VelocityLimits;
+import org.example.service.velocity.VelocityWindow;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper class to track Java 21 pattern matching execution steps.
+ * Keeps the PaymentService clean by encapsulating all tracking logic.
+ *
+ * This class records:
+ * - Type checks (which payment type matched)
+ * - Record destructuring (which fields were extracted)
+ * - Guard evaluations of routing rules (which conditions passed/failed)
+ * - The velocity guard (which per-window limits were broken)
+ *
+ * Used for TracingLevel.FULL - every call builds its step right away.
+ */
+public final class FullPatternMatchingTracker implements PatternMatchingTracker {
+
+    private final List<PatternMatchingStep> steps = new ArrayList<>();
+    private int stepCounter = 1;
+
+    /**
+     * Record a type check step
+     * Called when pattern matching identifies the payment type
+     */
+    @Override
+    public void recordTypeCheck(String paymentType) {
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "TYPE_CHECK",
+                true,
+                "Payment is " + paymentType
+        ));
+    }
+
+    /**
+     * Record destructuring for CreditCard
+     * Shows which fields were extracted from the record
+     */
+    @Override
+    public void recordDestructuringCreditCard(String type, BigDecimal amount, String expiry) {
+        String fields = String.format("type=%s, amount=$%s, expiry=%s", type, amount, expiry);
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "DESTRUCTURING",
+                true,
+                "Extracted: " + fields
+        ));
+    }
+
+    /**
+     * Record destructuring for PayPal
+     */
+    @Override
+    public void recordDestructuringPayPal(String email, BigDecimal amount) {
+        String maskedEmail = maskEmail(email);
+        String fields = String.format("email=%s, amount=$%s", maskedEmail, amount);
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "DESTRUCTURING",
+                true,
+                "Extracted: " + fields
+        ));
+    }
+
+    /**
+     * Record destructuring for BankTransfer
+     */
+    @Override
+    public void recordDestructuringBankTransfer(String bankName, BigDecimal amount) {
+        String fields = String.format("bank=%s, amount=$%s", bankName, amount);
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "DESTRUCTURING",
+                true,
+                "Extracted: " + fields
+        ));
+    }
+
+    /**
+     * Record the guard of a routing rule (the table's equivalent of a `when` clause)
+     * Only the conditions the rule sets are shown, e.g. "amount > 1000 && international"
+     */
+    @Override
+    public void recordRouteGuard(int caseNumber, PaymentRoute route, BigDecimal amount,
+                                 boolean isInternational, CustomerType customerType, boolean guardPassed) {
+        List<GuardCondition> conditions = new ArrayList<>();
+
+        if (route.amountAbove() != null) {
+            boolean amountCheck = amount.compareTo(route.amountAbove()) > 0;
+            conditions.add(new GuardCondition(
+                    "amount > " + route.amountAbove(),
+                    amountCheck,
+                    String.format("$%s %s $%s", amount, amountCheck ? ">" : "≤", route.amountAbove())
+            ));
+        }
+        if (route.amountAtMost() != null) {
+            boolean amountCheck = amount.compareTo(route.amountAtMost()) <= 0;
+            conditions.add(new GuardCondition(
+                    "amount ≤ " + route.amountAtMost(),
+                    amountCheck,
+                    String.format("$%s %s $%s", amount, amountCheck ? "≤" : ">", route.amountAtMost())
+            ));
+        }
+        if (route.international() != null) {
+            conditions.add(new GuardCondition(
+                    route.international() ? "international" : "!international",
+                    route.international() == isInternational,
+                    isInternational ? "TRUE" : "FALSE"
+            ));
+        }
+        if (!route.customerTypes().isEmpty()) {
+            conditions.add(new GuardCondition(
+                    route.customerTypeCondition(),
+                    route.customerTypes().contains(customerType),
+                    customerType.name()
+            ));
+        }
+
+        String message = guardPassed
+                ? "Guard PASSED → Executing this case"
+                : "Guard FAILED → Moving to next case";
+
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "GUARD_EVALUATION",
+                guardPassed,
+                message,
+                caseNumber,
+                route.guardExpression(),
+                conditions
+        ));
+    }
+
+    /**
+     * Record the velocity guard - one condition per configured limit.
+     * Shown as case 0: it runs before the routing rules, like a first
+     * `case Payment p when velocityExceeded(p)`.
+     */
+    @Override
+    public void recordVelocityGuard(VelocityCheck check) {
+        List<GuardCondition> conditions = new ArrayList<>();
+        VelocityLimits limits = check.getLimits();
+
+        for (VelocityWindow window : VelocityWindow.values()) {
+            long maxPayments = limits.maxPayments(window);
+            if (maxPayments > 0) {
+                long payments = check.payments(window);
+                conditions.add(new GuardCondition(
+                        "payments(" + window.getLabel() + ") > " + maxPayments,
+                        payments > maxPayments,
+                        payments + " payments"
+                ));
+            }
+            if (limits.maxCents(window) > 0) {
+                BigDecimal amount = check.amount(window);
+                conditions.add(new GuardCondition(
+                        "amount(" + window.getLabel() + ") > $" + limits.maxAmount(window),
+                        amount.compareTo(limits.maxAmount(window)) > 0,
+                        "$" + amount
+                ));
+            }
+        }
+
+        boolean exceeded = check.isExceeded();
+        String message = exceeded
+                ? "Guard PASSED → Velocity limit exceeded: " + check.getExceeded()
+                : "Guard FAILED → Moving to routing rules";
+
+        steps.add(new PatternMatchingStep(
+                stepCounter++,
+                "GUARD_EVALUATION",
+                exceeded,
+                message,
+                0,
+                "velocityExceeded(customer " + check.getCustomerId() + ")",
+                conditions
+        ));
+    }
+
+    /**
+     * Get all recorded steps (returns a copy to prevent external modification)
+     */
+    @Override
+    public List<PatternMatchingStep> getSteps() {
+        return new ArrayList<>(steps);
+    }
+
+    /**
+     * Check if any steps have been recorded
+     */
+    @Override
+    public boolean hasSteps() {
+        return !steps.isEmpty();
+    }
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    /**
+     * Mask email for privacy in logs
+     */
+    private String maskEmail(String email) {
+        if (email == null || !email.contains("@")) {
+            return "***@***.com";
+        }
+        String[] parts = email.split("@");
+        return "***@" + parts[1];
+    }
+}
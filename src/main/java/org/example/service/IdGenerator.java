@@ -0,0 +1,25 @@
+package org.example.service;
+
+/**
+ * Source of unique 64-bit identifiers.
+ *
+ * Pluggable so that cart items (and anything else needing ids) can switch
+ * strategies - e.g. a database sequence - without touching the services.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    /**
+     * @return a new id, never returned before by this generator
+     */
+    long nextId();
+
+    /**
+     * Makes every later id greater than the given one - called at startup with the
+     * highest id recovered from storage, so a restart never reissues an id.
+     * Generators that cannot repeat ids across restarts (e.g. a database sequence)
+     * keep the default no-op.
+     */
+    default void advancePast(long id) {
+    }
+}
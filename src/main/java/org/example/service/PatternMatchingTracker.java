@@ -1,200 +1,77 @@
 package org.example.service;
 
-
 import org.example.dto.payment.PatternMatchingStep;
-import org.example.dto.payment.PatternMatchingStep.GuardCondition;
+import org.example.model.payment.CustomerType;
+import org.example.service.routing.PaymentRoute;
+import org.example.service.velocity.VelocityCheck;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Helper class to track Java 21 pattern matching execution steps.
- * Keeps the PaymentService clean by encapsulating all tracking logic.
+ * Records the Java 21 pattern matching execution steps of one payment.
+ *
+ * One implementation per TracingLevel:
+ * - OFF:     PatternMatchingTracker.OFF - every call is a no-op, allocates nothing
+ * - SAMPLED: SampledPatternMatchingTracker - records raw arguments into a reused
+ *            buffer, builds the steps only in getSteps()
+ * - FULL:    FullPatternMatchingTracker - builds each step as it happens
  *
- * This class records:
- * - Type checks (which payment type matched)
- * - Record destructuring (which fields were extracted)
- * - Guard evaluations (which conditions passed/failed)
+ * getSteps() ends the trace: call it once, when the response is built.
  */
-public class PatternMatchingTracker {
-
-    private final List<PatternMatchingStep> steps = new ArrayList<>();
-    private int stepCounter = 1;
-
-    /**
-     * Record a type check step
-     * Called when pattern matching identifies the payment type
-     */
-    public void recordTypeCheck(String paymentType) {
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "TYPE_CHECK",
-                true,
-                "Payment is " + paymentType
-        ));
-    }
+public sealed interface PatternMatchingTracker
+        permits FullPatternMatchingTracker, SampledPatternMatchingTracker, PatternMatchingTracker.Off {
 
     /**
-     * Record destructuring for CreditCard
-     * Shows which fields were extracted from the record
+     * Shared tracker for TracingLevel.OFF
      */
-    public void recordDestructuringCreditCard(String type, BigDecimal amount, String expiry) {
-        String fields = String.format("type=%s, amount=$%s, expiry=%s", type, amount, expiry);
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "DESTRUCTURING",
-                true,
-                "Extracted: " + fields
-        ));
-    }
+    PatternMatchingTracker OFF = Off.INSTANCE;
 
-    /**
-     * Record destructuring for PayPal
-     */
-    public void recordDestructuringPayPal(String email, BigDecimal amount) {
-        String maskedEmail = maskEmail(email);
-        String fields = String.format("email=%s, amount=$%s", maskedEmail, amount);
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "DESTRUCTURING",
-                true,
-                "Extracted: " + fields
-        ));
-    }
+    void recordTypeCheck(String paymentType);
 
-    /**
-     * Record destructuring for BankTransfer
-     */
-    public void recordDestructuringBankTransfer(String bankName, BigDecimal amount) {
-        String fields = String.format("bank=%s, amount=$%s", bankName, amount);
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "DESTRUCTURING",
-                true,
-                "Extracted: " + fields
-        ));
-    }
+    void recordDestructuringCreditCard(String type, BigDecimal amount, String expiry);
 
-    /**
-     * Record guard evaluation with TWO conditions (amount + international)
-     * Used for: when amount > 1000 && international
-     */
-    public void recordGuardEvaluation(int caseNumber, BigDecimal amount, BigDecimal threshold,
-                                      boolean isInternational, boolean guardPassed) {
-        List<GuardCondition> conditions = new ArrayList<>();
+    void recordDestructuringPayPal(String email, BigDecimal amount);
 
-        // First condition: amount check
-        boolean amountCheck = amount.compareTo(threshold) > 0;
-        conditions.add(new GuardCondition(
-                "amount > " + threshold,
-                amountCheck,
-                String.format("$%s %s $%s", amount, amountCheck ? ">" : "≤", threshold)
-        ));
-
-        // Second condition: international check
-        conditions.add(new GuardCondition(
-                "international",
-                isInternational,
-                isInternational ? "TRUE" : "FALSE"
-        ));
-
-        String expression = String.format("amount > %s && international", threshold);
-        String message = guardPassed
-                ? "Guard PASSED → Executing this case"
-                : "Guard FAILED → Moving to next case";
-
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "GUARD_EVALUATION",
-                guardPassed,
-                message,
-                caseNumber,
-                expression,
-                conditions
-        ));
-    }
+    void recordDestructuringBankTransfer(String bankName, BigDecimal amount);
 
     /**
-     * Record guard evaluation with ONE condition (amount only)
-     * Used for: when amount > threshold
+     * Guard of a routing rule, evaluated against this payment
+     *
+     * @param caseNumber the rule's position among the rules for its payment type
      */
-    public void recordGuardEvaluationAmountOnly(int caseNumber, BigDecimal amount, BigDecimal threshold) {
-        List<GuardCondition> conditions = new ArrayList<>();
-
-        boolean amountCheck = amount.compareTo(threshold) > 0;
-        conditions.add(new GuardCondition(
-                "amount > " + threshold,
-                amountCheck,
-                String.format("$%s %s $%s", amount, amountCheck ? ">" : "≤", threshold)
-        ));
-
-        String expression = String.format("amount > %s", threshold);
-        String message = amountCheck
-                ? "Guard PASSED → Executing this case"
-                : "Guard FAILED → Moving to next case";
-
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "GUARD_EVALUATION",
-                amountCheck,
-                message,
-                caseNumber,
-                expression,
-                conditions
-        ));
-    }
+    void recordRouteGuard(int caseNumber, PaymentRoute route, BigDecimal amount,
+                          boolean isInternational, CustomerType customerType, boolean guardPassed);
 
     /**
-     * Record guard evaluation with ONE condition (international only)
-     * Used for: when international
+     * Velocity guard, evaluated before the routing rules (fraud detection on)
      */
-    public void recordGuardEvaluationInternationalOnly(int caseNumber, boolean isInternational) {
-        List<GuardCondition> conditions = new ArrayList<>();
+    void recordVelocityGuard(VelocityCheck check);
 
-        conditions.add(new GuardCondition(
-                "international",
-                isInternational,
-                isInternational ? "TRUE" : "FALSE"
-        ));
+    List<PatternMatchingStep> getSteps();
 
-        String expression = "international";
-        String message = isInternational
-                ? "Guard PASSED → Executing this case"
-                : "Guard FAILED → Moving to next case";
-
-        steps.add(new PatternMatchingStep(
-                stepCounter++,
-                "GUARD_EVALUATION",
-                isInternational,
-                message,
-                caseNumber,
-                expression,
-                conditions
-        ));
-    }
+    boolean hasSteps();
 
     /**
-     * Get all recorded steps (returns a copy to prevent external modification)
+     * @return false when record*() calls are ignored - callers can skip
+     *         work that only produces tracing input
      */
-    public List<PatternMatchingStep> getSteps() {
-        return new ArrayList<>(steps);
-    }
-
-    /**
-     * Check if any steps have been recorded
-     */
-    public boolean hasSteps() {
-        return !steps.isEmpty();
-    }
+    boolean isRecording();
 
     /**
-     * Mask email for privacy in logs
+     * Tracing switched off - stateless, so one instance serves every thread
      */
-    private String maskEmail(String email) {
-        if (email == null || !email.contains("@")) {
-            return "***@***.com";
-        }
-        String[] parts = email.split("@");
-        return "***@" + parts[1];
+    enum Off implements PatternMatchingTracker {
+        INSTANCE;
+
+        @Override public void recordTypeCheck(String paymentType) { }
+        @Override public void recordDestructuringCreditCard(String type, BigDecimal amount, String expiry) { }
+        @Override public void recordDestructuringPayPal(String email, BigDecimal amount) { }
+        @Override public void recordDestructuringBankTransfer(String bankName, BigDecimal amount) { }
+        @Override public void recordRouteGuard(int caseNumber, PaymentRoute route, BigDecimal amount,
+                                               boolean isInternational, CustomerType customerType, boolean guardPassed) { }
+        @Override public void recordVelocityGuard(VelocityCheck check) { }
+        @Override public List<PatternMatchingStep> getSteps() { return List.of(); }
+        @Override public boolean hasSteps() { return false; }
+        @Override public boolean isRecording() { return false; }
     }
 }
@@ -0,0 +1,301 @@
+package org.example.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import org.example.dto.payment.PaymentRequest;
+import org.example.dto.payment.PaymentResponse;
+import org.example.model.payment.TracingLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * BATCH PAYMENTS - Merchant uploads of many PaymentRequests in one HTTP request
+ *
+ * Input is read as a stream (a JSON array or NDJSON - one request per line),
+ * never as a whole document, so an upload of any size uses constant memory.
+ *
+ * HOW IT FLOWS:
+ * - The caller's thread parses one item at a time and starts it on its own
+ *   virtual thread (processPayment is plain blocking code - no rewrite needed)
+ * - A writer thread takes the items IN INPUT ORDER, waits for each one and
+ *   writes its line of NDJSON as soon as it is done
+ * - A Semaphore bounds items that are parsed but not yet written to
+ *   max-concurrency, so a slow client or a slow item stops the parser
+ *   instead of piling up results in memory
+ *
+ * 💡 FAILURE ISOLATION: one bad item (unknown payment method, missing field,
+ *    negative amount...) becomes an "error" line for that index:
+ *    - ISOLATE   (default) every other item is still processed
+ *    - FAIL_FAST the first failure stops reading; items already started are
+ *                still written, then the summary reports the abort
+ *    Input that is not JSON at all ends the batch either way.
+ *
+ * Output: one line per item, then one summary line
+ *   {"index":0,"response":{...PaymentResponse...}}
+ *   {"index":1,"error":"Unknown payment method: cash"}
+ *   {"summary":{"received":2,"succeeded":1,"failed":1,"aborted":false,...}}
+ */
+@Service
+public class PaymentBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentBatchService.class);
+
+    public enum FailureMode {
+        ISOLATE,
+        FAIL_FAST;
+
+        public static FailureMode parse(String value) {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    /**
+     * One output line per input item - exactly one of response / error is set
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ItemResult(long index, PaymentResponse response, String error) {
+
+        boolean failed() {
+            return error != null;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BatchSummary(long received, long succeeded, long failed, boolean aborted,
+                               String abortReason, long elapsedMillis) { }
+
+    private record Summary(BatchSummary summary) { }
+
+    /**
+     * What the writer saw; stopReason is set when it told the parser to stop
+     */
+    private record Counts(long succeeded, long failed, String stopReason) { }
+
+    // Marks the end of the input for the writer
+    private static final Future<ItemResult> END = CompletableFuture.completedFuture(null);
+
+    private final PaymentService paymentService;
+    private final ObjectMapper compactMapper;
+    private final ObjectReader requestReader;
+    private final int maxConcurrency;
+    private final FailureMode defaultFailureMode;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PaymentBatchService(PaymentService paymentService,
+                               ObjectMapper objectMapper,
+                               @Value("${org.features.record-patterns.batch.max-concurrency:256}") int maxConcurrency,
+                               @Value("${org.features.record-patterns.batch.failure-mode:isolate}") String failureMode) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("batch.max-concurrency must be positive: " + maxConcurrency);
+        }
+        this.paymentService = paymentService;
+        // The REST API pretty-prints; NDJSON needs one line per value
+        this.compactMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+        this.requestReader = objectMapper.readerFor(PaymentRequest.class);
+        this.maxConcurrency = maxConcurrency;
+        this.defaultFailureMode = FailureMode.parse(failureMode);
+    }
+
+    /**
+     * Processes every PaymentRequest read from in and writes NDJSON results to out
+     *
+     * @param tracing     for items that do not choose one (null = OFF - batches rarely want steps)
+     * @param failureMode null = configured default
+     */
+    public BatchSummary processBatch(InputStream in, OutputStream out,
+                                     TracingLevel tracing, FailureMode failureMode) throws IOException {
+        long started = System.nanoTime();
+        TracingLevel itemTracing = tracing != null ? tracing : TracingLevel.OFF;
+        FailureMode mode = failureMode != null ? failureMode : defaultFailureMode;
+
+        Semaphore window = new Semaphore(maxConcurrency);
+        BlockingQueue<Future<ItemResult>> pending = new LinkedBlockingQueue<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        Future<Counts> writer = workers.submit(() -> writeInOrder(pending, window, out, mode, stop));
+
+        long received = 0;
+        String abortReason = null;
+        try (MappingIterator<PaymentRequest> items = requestReader.readValues(in)) {
+            while (!stop.get() && items.hasNextValue()) {
+                window.acquire();
+                long index = received;
+                try {
+                    PaymentRequest request = items.nextValue();
+                    pending.put(workers.submit(() -> process(index, request, itemTracing)));
+                } catch (DatabindException e) {
+                    // Valid JSON that is not a PaymentRequest - only this item fails
+                    pending.put(CompletableFuture.completedFuture(
+                            new ItemResult(index, null, "Invalid payment request: " + e.getOriginalMessage())));
+                }
+                received++;
+            }
+        } catch (IOException e) {
+            logger.warn("SERVICE: Batch input unreadable after {} items: {}", received, e.getMessage());
+            abortReason = "Malformed batch input after item " + received + ": " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortReason = "Interrupted";
+        } finally {
+            pending.add(END);
+        }
+
+        Counts counts = awaitWriter(writer);
+        if (abortReason == null) {
+            abortReason = counts.stopReason();
+        }
+        BatchSummary summary = new BatchSummary(received, counts.succeeded(), counts.failed(),
+                abortReason != null, abortReason, (System.nanoTime() - started) / 1_000_000);
+        try {
+            out.write(line(new Summary(summary)));
+            out.flush();
+        } catch (IOException e) {
+            logger.debug("SERVICE: Batch summary not delivered: {}", e.getMessage());
+        }
+
+        logger.info("SERVICE: Payment batch done - {} received, {} succeeded, {} failed{} in {} ms",
+                summary.received(), summary.succeeded(), summary.failed(),
+                summary.aborted() ? " (aborted)" : "", summary.elapsedMillis());
+        return summary;
+    }
+
+    private ItemResult process(long index, PaymentRequest request, TracingLevel defaultTracing) {
+        try {
+            if (request.getCustomerType() == null) {
+                throw new IllegalArgumentException("customerType is required");
+            }
+            TracingLevel tracing = request.getTracing() != null ? request.getTracing() : defaultTracing;
+            PaymentResponse response = paymentService.processPayment(
+                    request.toPayment(), request.getCustomerType(), request.isInternational(), tracing);
+            return new ItemResult(index, response, null);
+        } catch (RuntimeException e) {
+            logger.debug("SERVICE: Batch item {} failed: {}", index, e.getMessage());
+            return new ItemResult(index, null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Runs on its own virtual thread: writes results in input order, freeing one
+     * window slot per line written (and the whole window when it exits)
+     */
+    private Counts writeInOrder(BlockingQueue<Future<ItemResult>> pending, Semaphore window,
+                                OutputStream out, FailureMode mode, AtomicBoolean stop)
+            throws InterruptedException {
+        long succeeded = 0;
+        long failed = 0;
+        String stopReason = null;
+        boolean clientGone = false;
+        try {
+            while (true) {
+                Future<ItemResult> next = pending.take();
+                if (next == END) {
+                    return new Counts(succeeded, failed, stopReason);
+                }
+                ItemResult result;
+                try {
+                    result = next.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch items handle their own failures", e.getCause());
+                }
+
+                byte[] line;
+                try {
+                    line = line(result);
+                } catch (IOException e) {
+                    result = new ItemResult(result.index(), null, "Result not serializable: " + e.getMessage());
+                    line = lineOrEmpty(result);
+                }
+                if (result.failed()) {
+                    failed++;
+                    if (mode == FailureMode.FAIL_FAST && stopReason == null) {
+                        stopReason = "Stopped at first failure (FAIL_FAST), item " + result.index();
+                        stop.set(true);
+                    }
+                } else {
+                    succeeded++;
+                }
+
+                if (!clientGone) {
+                    try {
+                        out.write(line);
+                        // Flush whenever the next result is not ready yet - the client sees
+                        // each line promptly without paying a flush per line on a fast run
+                        Future<ItemResult> following = pending.peek();
+                        if (following == null || !following.isDone()) {
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // Keep consuming so the parser never waits on a full window
+                        logger.warn("SERVICE: Batch client disconnected: {}", e.getMessage());
+                        clientGone = true;
+                        stopReason = "Client disconnected";
+                        stop.set(true);
+                    }
+                }
+                window.release();
+            }
+        } finally {
+            // Also when the writer dies: the parser must never block on a window
+            // nobody frees any more - it sees stop and ends the batch
+            stop.set(true);
+            window.release(maxConcurrency);
+        }
+    }
+
+    private Counts awaitWriter(Future<Counts> writer) throws IOException {
+        try {
+            return writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing batch results");
+        } catch (ExecutionException e) {
+            throw new IOException("Batch writer failed", e.getCause());
+        }
+    }
+
+    // Serialized before writing, so a value that cannot be serialized never leaves half a line
+    private byte[] line(Object value) throws IOException {
+        byte[] json = compactMapper.writeValueAsBytes(value);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private byte[] lineOrEmpty(ItemResult result) {
+        try {
+            return line(result);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
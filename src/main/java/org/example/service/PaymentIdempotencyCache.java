@@ -0,0 +1,199 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.dto.payment.PaymentResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for payments: a client retrying a payment with the
+ * same key gets the FIRST response back (same transaction id) instead of the
+ * payment being processed again.
+ *
+ * HOW IT WORKS:
+ * - Entries are keyed by (customerId, Idempotency-Key) and hold a
+ *   CompletableFuture of the PaymentResponse
+ * - The first request for a key installs the future with putIfAbsent and
+ *   processes the payment; every other request for that key gets the same
+ *   future:
+ *     done      → HIT       (the stored response is replayed)
+ *     not done  → COALESCED (waits for the in-flight payment - it never runs twice)
+ * - A payment that throws is not remembered - the retry processes it again
+ * - Reusing a key for a different payment (method, amount, customer type,
+ *   international) is rejected rather than answered with the wrong response
+ *
+ * 💡 BOUNDED + EXPIRING: once its payment succeeds, an entry also goes into a
+ *    FIFO queue. Since every entry lives for the same TTL, the queue head is
+ *    (about) the next to expire - each insert pops expired heads, heads whose
+ *    key was already removed or replaced, and the oldest entries when the
+ *    cache is over max-entries. No background thread, no scan.
+ *    - In-flight payments are not queued, so they are never evicted (a retry
+ *      would miss them and charge twice); the cache can exceed max-entries by
+ *      the number of in-flight payments
+ *    - Failed payments are never queued either, so failing or retried traffic
+ *      cannot grow the queue past max-entries
+ *
+ * Metrics (Micrometer):
+ *   payment.idempotency.requests{result=hit|miss|coalesced}
+ *   payment.idempotency.entries
+ */
+public class PaymentIdempotencyCache {
+
+    public enum Outcome {
+        MISS,
+        HIT,
+        COALESCED
+    }
+
+    public record Result(PaymentResponse response, Outcome outcome) { }
+
+    private record Key(Long customerId, String idempotencyKey) { }
+
+    private record Entry(Key key, String fingerprint, CompletableFuture<PaymentResponse> response, long createdNanos) { }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    // One evicting thread at a time - the others skip instead of waiting
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    /**
+     * @param nanoClock System::nanoTime - injectable for tests
+     */
+    public PaymentIdempotencyCache(int maxEntries, Duration ttl, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("idempotency.max-entries must be positive: " + maxEntries);
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("idempotency.ttl must be positive: " + ttl);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        Gauge.builder("payment.idempotency.entries", entries, Map::size)
+                .description("Idempotency keys currently remembered")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("payment.idempotency.requests")
+                .tag("result", result)
+                .description("Payments sent with an Idempotency-Key: hit = stored response replayed, "
+                        + "miss = processed, coalesced = waited for the in-flight payment")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs payment once per (customerId, idempotencyKey) within the TTL
+     *
+     * @param fingerprint what the payment was - a different one under the same key is rejected
+     * @throws IllegalArgumentException if the key was already used for a different payment
+     */
+    public Result execute(Long customerId, String idempotencyKey, String fingerprint,
+                          Supplier<PaymentResponse> payment) {
+        Key key = new Key(customerId, idempotencyKey);
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Entry existing = entries.get(key);
+            if (existing != null && existing.response().isDone() && isExpired(existing, now)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (existing == null) {
+                Entry created = new Entry(key, fingerprint, new CompletableFuture<>(), now);
+                existing = entries.putIfAbsent(key, created);
+                if (existing == null) {
+                    misses.increment();
+                    return new Result(run(created, payment), Outcome.MISS);
+                }
+            }
+
+            if (!Objects.equals(existing.fingerprint(), fingerprint)) {
+                throw new IllegalArgumentException(
+                        "Idempotency-Key '" + idempotencyKey + "' was already used for a different payment");
+            }
+            CompletableFuture<PaymentResponse> response = existing.response();
+            if (response.isDone() && !response.isCompletedExceptionally()) {
+                hits.increment();
+                return new Result(response.join(), Outcome.HIT);
+            }
+            coalesced.increment();
+            try {
+                return new Result(response.join(), Outcome.COALESCED);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+    }
+
+    private PaymentResponse run(Entry entry, Supplier<PaymentResponse> payment) {
+        try {
+            PaymentResponse response = payment.get();
+            entry.response().complete(response);
+            // Only now can it be evicted without a retry running the payment again
+            insertionOrder.add(entry);
+            evict(nanoClock.getAsLong());
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Waiters see the failure; later retries start over
+            entries.remove(entry.key(), entry);
+            entry.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evict(long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry oldest;
+            while ((oldest = insertionOrder.peek()) != null
+                    && (entries.get(oldest.key()) != oldest || isExpired(oldest, now)
+                        || entries.size() > maxEntries)) {
+                insertionOrder.poll();
+                // No-op when the key was already replaced or removed
+                entries.remove(oldest.key(), oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdNanos() >= ttlNanos;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entries waiting in the eviction queue
+     */
+    int queued() {
+        return insertionOrder.size();
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event committed once per PaymentService.processPayment call
+ *
+ * Replaces the dozen INFO lines a payment used to log. The event's duration
+ * is the payment's latency; the fields say which rule decided it and why.
+ *
+ * 💡 Cost model: while no recording is running, shouldCommit() is false and
+ *    none of the fields are filled - the JIT removes the event allocation,
+ *    so the payment path pays (almost) nothing. Strings are only built for
+ *    events that are actually written.
+ *
+ * RECORD AND READ:
+ *   java -XX:StartFlightRecording:filename=payments.jfr -jar app.jar
+ *   jfr print --events org.example.PaymentProcessed payments.jfr
+ *   jfr summary payments.jfr        (or open the file in JDK Mission Control)
+ */
+@Name("org.example.PaymentProcessed")
+@Label("Payment Processed")
+@Category({"Java 21 Showcase", "Payments"})
+@Description("Outcome and latency of one payment routed through PaymentService")
+@StackTrace(false)
+public class PaymentProcessedEvent extends Event {
+
+    @Label("Payment Type")
+    String paymentType;
+
+    @Label("Customer Type")
+    String customerType;
+
+    @Label("International")
+    boolean international;
+
+    @Label("Amount")
+    double amount;
+
+    @Label("Amount Band")
+    @Description("Band of the routing table cell the amount fell into, e.g. (1000, ∞)")
+    String amountBand;
+
+    @Label("Matched Case")
+    @Description("Position of the deciding rule among the rules for this payment type")
+    int caseNumber;
+
+    @Label("Guards Failed")
+    @Description("Rules tried and rejected before the deciding one")
+    int guardsFailed;
+
+    @Label("Guard")
+    @Description("Guard of the deciding rule, empty for a catch-all rule")
+    String guard;
+
+    @Label("Status")
+    String status;
+
+    @Label("Requires Verification")
+    boolean requiresVerification;
+
+    @Label("Tracing Level")
+    String tracing;
+}
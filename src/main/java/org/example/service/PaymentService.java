@@ -3,250 +3,257 @@ package org.example.service;
 
 import org.example.dto.payment.PaymentResponse;
 import org.example.model.payment.*;
+import org.example.service.routing.PaymentRoute;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.routing.PaymentRoutingTable;
+import org.example.service.velocity.PaymentVelocityEngine;
+import org.example.service.velocity.VelocityCheck;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class PaymentService {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
-    private static final BigDecimal HIGH_VALUE = new BigDecimal("1000");
-    private static final BigDecimal VERY_HIGH_VALUE = new BigDecimal("5000");
+
+    private final PaymentRouter paymentRouter;
+    private final TransactionIdGenerator transactionIds;
+    // null when org.features.record-patterns.fraud-detection is off
+    private final PaymentVelocityEngine velocityEngine;
+    private final TracingLevel defaultTracing;
+    private final int sampleRate;
+    private final SampledPatternMatchingTracker.Pool sampledTrackers =
+            new SampledPatternMatchingTracker.Pool(2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * @param tracing    TracingLevel used when a request does not choose one
+     * @param sampleRate with SAMPLED tracing, 1 in sampleRate payments is traced
+     */
+    public PaymentService(
+            PaymentRouter paymentRouter,
+            TransactionIdGenerator transactionIds,
+            ObjectProvider<PaymentVelocityEngine> velocityEngine,
+            @Value("${org.features.record-patterns.tracing:full}") String tracing,
+            @Value("${org.features.record-patterns.tracing-sample-rate:100}") int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("tracing-sample-rate must be positive: " + sampleRate);
+        }
+        this.paymentRouter = paymentRouter;
+        this.transactionIds = transactionIds;
+        this.velocityEngine = velocityEngine.getIfAvailable();
+        this.defaultTracing = TracingLevel.parse(tracing);
+        this.sampleRate = sampleRate;
+        logger.info("SERVICE: Pattern matching tracing {} (sample rate 1/{}), velocity checks {}",
+                defaultTracing, sampleRate, this.velocityEngine != null ? "on" : "off");
+    }
 
     /**
      * Main Java 21 pattern matching demonstration with real-time execution tracking
      */
     public PaymentResponse processPayment(Payment payment, CustomerType customerType, boolean isInternational) {
-        logger.info("=== PAYMENT PROCESSING START ===");
-        logger.info("Payment Type: {}", payment.getClass().getSimpleName());
-        logger.info("Amount: ${}", payment.getAmount());
-        logger.info("Customer: {} ({})", customerType.getDisplayName(), customerType.getPriority());
-        logger.info("International: {}", isInternational);
-        logger.info("Starting Java 21 pattern matching...");
+        return processPayment(payment, customerType, isInternational, defaultTracing);
+    }
 
-        // Create tracker to record execution steps
-        PatternMatchingTracker tracker = new PatternMatchingTracker();
+    /**
+     * Same as above with an explicit TracingLevel (null = configured default)
+     */
+    public PaymentResponse processPayment(Payment payment, CustomerType customerType, boolean isInternational,
+                                          TracingLevel tracing) {
+        // Latency and outcome go to JFR; the step-by-step log below is opt-in (DEBUG)
+        PaymentProcessedEvent event = new PaymentProcessedEvent();
+        event.begin();
+        boolean verbose = logger.isDebugEnabled();
+        if (verbose) {
+            logger.debug("=== PAYMENT PROCESSING START ===");
+            logger.debug("Payment Type: {}", payment.getClass().getSimpleName());
+            logger.debug("Amount: ${}", payment.getAmount());
+            logger.debug("Customer: {} ({})", customerType.getDisplayName(), customerType.getPriority());
+            logger.debug("International: {}", isInternational);
+            logger.debug("Starting Java 21 pattern matching...");
+        }
+
+        // Create tracker to record execution steps (a no-op one when tracing is off)
+        TracingLevel tracingLevel = tracing != null ? tracing : defaultTracing;
+        PatternMatchingTracker tracker = trackerFor(tracingLevel);
 
         // Java 21 Pattern Matching with Sealed Interface
-        PaymentResponse response = switch (payment) {
+        // The switch dispatches on the type and destructures the record; the
+        // guards that pick the outcome live in the routing table (PaymentRouter)
+        PaymentKind kind = switch (payment) {
 
             // ═══════════════════════════════════════════════════════════════════
-            // CASE 1: High-value international credit card
+            // CreditCard
             // ═══════════════════════════════════════════════════════════════════
-            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId)
-                    when amount.compareTo(HIGH_VALUE) > 0 && isInternational -> {
-
-                logger.info("✓ PATTERN MATCHED: CreditCard with high-value + international guards");
-                logger.info("✓ DESTRUCTURED: type={}, amount=${}", type, amount);
-                logger.info("✓ GUARD CONDITIONS: amount > 1000 AND international = true");
+            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId) -> {
+                if (verbose) {
+                    logger.debug("✓ PATTERN MATCHED: CreditCard");
+                    logger.debug("✓ DESTRUCTURED: type={}, amount=${}", type, amount);
+                }
 
-                // Track execution steps
                 tracker.recordTypeCheck("CreditCard");
                 tracker.recordDestructuringCreditCard(type, amount, expiry);
-                tracker.recordGuardEvaluation(1, amount, HIGH_VALUE, isInternational, true);
-
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.REQUIRES_VERIFICATION,
-                        amount,
-                        "Credit Card",
-                        "High-value international transaction requires verification"
-                );
-                resp.setRequiresAdditionalVerification(true);
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
+                yield PaymentKind.CREDIT_CARD;
             }
 
             // ═══════════════════════════════════════════════════════════════════
-            // CASE 2: High-value domestic credit card
+            // PayPal
             // ═══════════════════════════════════════════════════════════════════
-            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId)
-                    when amount.compareTo(HIGH_VALUE) > 0 -> {
-
-                logger.info("✓ PATTERN MATCHED: CreditCard with high-value guard");
-                logger.info("✓ DESTRUCTURED: type={}, amount=${}", type, amount);
-                logger.info("✓ GUARD CONDITION: amount > 1000");
-
-                // Track execution - if we're here, Case 1 guard must have failed
-                if (!tracker.hasSteps()) {
-                    tracker.recordTypeCheck("CreditCard");
-                    tracker.recordDestructuringCreditCard(type, amount, expiry);
-                    // Case 1 guard failed (international was false)
-                    tracker.recordGuardEvaluation(1, amount, HIGH_VALUE, isInternational, false);
-                }
-
-                // Case 2 guard evaluation (this one passed)
-                tracker.recordGuardEvaluationAmountOnly(2, amount, HIGH_VALUE);
-
-                String message = customerType == CustomerType.VIP
-                        ? "VIP high-value transaction with express processing"
-                        : "High-value transaction with enhanced verification";
-
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.SUCCESS,
-                        amount,
-                        "Credit Card",
-                        message
-                );
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
-            }
-
-            // ═══════════════════════════════════════════════════════════════════
-            // CASE 3: Standard credit card (no guards)
-            // ═══════════════════════════════════════════════════════════════════
-            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId) -> {
-                logger.info("✓ PATTERN MATCHED: CreditCard - standard processing");
-                logger.info("✓ DESTRUCTURED: type={}, amount=${}", type, amount);
-
-                // Track execution - if no steps yet, this is first case checked
-                if (!tracker.hasSteps()) {
-                    tracker.recordTypeCheck("CreditCard");
-                    tracker.recordDestructuringCreditCard(type, amount, expiry);
+            case PayPal(var email, var accountId, var amount, var customerId) -> {
+                if (verbose) {
+                    logger.debug("✓ PATTERN MATCHED: PayPal");
+                    logger.debug("✓ DESTRUCTURED: email={}, amount=${}", maskEmail(email), amount);
                 }
-                // Note: If we reached here after Case 2, guards already tracked
 
-                String message = isInternational
-                        ? "International credit card processed"
-                        : "Credit card processed successfully";
-
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.SUCCESS,
-                        amount,
-                        "Credit Card",
-                        message
-                );
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
-            }
-
-            // ═══════════════════════════════════════════════════════════════════
-            // CASE 4: International PayPal
-            // ═══════════════════════════════════════════════════════════════════
-            case PayPal(var email, var accountId, var amount, var customerId) when isInternational -> {
-                logger.info("✓ PATTERN MATCHED: PayPal with international guard");
-                logger.info("✓ DESTRUCTURED: email={}, amount=${}", maskEmail(email), amount);
-                logger.info("✓ GUARD CONDITION: international = true");
-
-                // Track execution steps
                 tracker.recordTypeCheck("PayPal");
                 tracker.recordDestructuringPayPal(email, amount);
-                tracker.recordGuardEvaluationInternationalOnly(1, isInternational);
-
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.SUCCESS,
-                        amount,
-                        "PayPal",
-                        "International PayPal with currency conversion"
-                );
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
+                yield PaymentKind.PAYPAL;
             }
 
             // ═══════════════════════════════════════════════════════════════════
-            // CASE 5: Standard PayPal (no guards)
+            // BankTransfer
             // ═══════════════════════════════════════════════════════════════════
-            case PayPal(var email, var accountId, var amount, var customerId) -> {
-                logger.info("✓ PATTERN MATCHED: PayPal - standard processing");
-                logger.info("✓ DESTRUCTURED: email={}, amount=${}", maskEmail(email), amount);
-
-                // Track execution
-                if (!tracker.hasSteps()) {
-                    tracker.recordTypeCheck("PayPal");
-                    tracker.recordDestructuringPayPal(email, amount);
+            case BankTransfer(var routing, var account, var bankName, var amount, var customerId) -> {
+                if (verbose) {
+                    logger.debug("✓ PATTERN MATCHED: BankTransfer");
+                    logger.debug("✓ DESTRUCTURED: bank={}, amount=${}", bankName, amount);
                 }
-                // If we reached here from Case 4, international guard failed
-                // (but we don't track failed guards for non-international standard processing)
-
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.SUCCESS,
-                        amount,
-                        "PayPal",
-                        "PayPal processed successfully"
-                );
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
-            }
-
-            // ═══════════════════════════════════════════════════════════════════
-            // CASE 6: Very high-value bank transfer
-            // ═══════════════════════════════════════════════════════════════════
-            case BankTransfer(var routing, var account, var bankName, var amount, var customerId)
-                    when amount.compareTo(VERY_HIGH_VALUE) > 0 -> {
-
-                logger.info("✓ PATTERN MATCHED: BankTransfer with very-high-value guard");
-                logger.info("✓ DESTRUCTURED: bank={}, amount=${}", bankName, amount);
-                logger.info("✓ GUARD CONDITION: amount > 5000");
 
-                // Track execution steps
                 tracker.recordTypeCheck("BankTransfer");
                 tracker.recordDestructuringBankTransfer(bankName, amount);
-                tracker.recordGuardEvaluationAmountOnly(1, amount, VERY_HIGH_VALUE);
-
-                String message = isInternational
-                        ? "Very high-value international transfer (5-7 business days)"
-                        : "Very high-value transfer (3-5 business days)";
+                yield PaymentKind.BANK_TRANSFER;
+            }
+        };
 
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.PENDING,
-                        amount,
-                        "Bank Transfer",
-                        message
-                );
-                resp.setRequiresAdditionalVerification(true);
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
+        // Read the table once - a concurrent reload cannot change it mid-payment
+        PaymentRoutingTable routes = paymentRouter.current();
+        BigDecimal amount = payment.getAmount();
+        // Guards compare whole cents as longs; BigDecimal only for unusual amounts
+        long amountCents = Money.toCents(amount);
+
+        // Fraud detection: the velocity guard comes first, like a leading
+        // `case Payment p when velocityExceeded(p)` ahead of the routing rules
+        VelocityCheck velocity = null;
+        if (velocityEngine != null && payment.getCustomerId() != null) {
+            velocity = velocityEngine.record(payment.getCustomerId(), velocityCents(amount, amountCents));
+            tracker.recordVelocityGuard(velocity);
+        }
+
+        PaymentRoute route;
+        if (velocity != null && velocity.isExceeded()) {
+            route = velocityRoute(kind, velocity);
+            logger.debug("✓ VELOCITY GUARD: {}", velocity.getExceeded());
+        } else {
+            route = routes.route(kind, amount, amountCents, isInternational, customerType);
+            logger.debug("✓ ROUTE MATCHED: {}", route);
+            if (tracker.isRecording()) {
+                traceGuards(tracker, routes, kind, amount, isInternational, customerType);
             }
+        }
+
+        PaymentResponse response = createResponse(
+                transactionIds.nextTransactionId(),
+                route.status(),
+                amount,
+                kind.getDisplayName(),
+                route.message()
+        );
+        response.setRequiresAdditionalVerification(route.requiresVerification());
+        response.setPatternMatchingSteps(tracker.getSteps());
+
+        if (verbose) {
+            logger.debug("✓ PATTERN MATCHING COMPLETE");
+            logger.debug("✓ Transaction ID: {}", response.getTransactionId());
+            logger.debug("✓ Status: {}", response.getStatus());
+            logger.debug("✓ Validation: {}", response.getValidationMessage());
+            logger.debug("✓ Tracked {} execution steps", response.getPatternMatchingSteps().size());
+            logger.debug("================================");
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, routes, route, kind, amount, isInternational, customerType, tracingLevel);
+            event.commit();
+        }
+        return response;
+    }
 
-            // ═══════════════════════════════════════════════════════════════════
-            // CASE 7: Standard bank transfer (no guards)
-            // ═══════════════════════════════════════════════════════════════════
-            case BankTransfer(var routing, var account, var bankName, var amount, var customerId) -> {
-                logger.info("✓ PATTERN MATCHED: BankTransfer - standard processing");
-                logger.info("✓ DESTRUCTURED: bank={}, amount=${}", bankName, amount);
+    public TracingLevel getDefaultTracing() {
+        return defaultTracing;
+    }
 
-                // Track execution
-                if (!tracker.hasSteps()) {
-                    tracker.recordTypeCheck("BankTransfer");
-                    tracker.recordDestructuringBankTransfer(bankName, amount);
-                }
-                // If we reached here from Case 6, amount guard already tracked
+    // Private helper methods
 
-                String message = isInternational
-                        ? "International bank transfer (2-3 business days)"
-                        : "Bank transfer initiated (1-2 business days)";
+    // Outcome of a payment held by the velocity guard - only built when a limit is broken
+    private static PaymentRoute velocityRoute(PaymentKind kind, VelocityCheck velocity) {
+        return new PaymentRoute(kind, null, null, null, null,
+                PaymentResponse.PaymentStatus.REQUIRES_VERIFICATION, true,
+                "Velocity limit exceeded: " + velocity.getExceeded() + " - verification required");
+    }
 
-                PaymentResponse resp = createResponse(
-                        generateTransactionId(),
-                        PaymentResponse.PaymentStatus.PENDING,
-                        amount,
-                        "Bank Transfer",
-                        message
-                );
-                resp.setPatternMatchingSteps(tracker.getSteps());
-                yield resp;
-            }
-        };
+    // Amounts without an exact cents form are rounded up, so they can only count for more
+    private static long velocityCents(BigDecimal amount, long amountCents) {
+        if (amountCents != Money.NOT_CENTS) {
+            return amountCents;
+        }
+        long rounded = Money.toCents(amount.setScale(2, RoundingMode.CEILING));
+        return rounded != Money.NOT_CENTS ? rounded : Long.MAX_VALUE;
+    }
 
-        logger.info("✓ PATTERN MATCHING COMPLETE");
-        logger.info("✓ Transaction ID: {}", response.getTransactionId());
-        logger.info("✓ Status: {}", response.getStatus());
-        logger.info("✓ Validation: {}", response.getValidationMessage());
-        logger.info("✓ Tracked {} execution steps", response.getPatternMatchingSteps().size());
-        logger.info("================================");
+    // Only runs while a JFR recording wants the event
+    private static void describe(PaymentProcessedEvent event, PaymentRoutingTable routes, PaymentRoute route,
+                                 PaymentKind kind, BigDecimal amount, boolean isInternational,
+                                 CustomerType customerType, TracingLevel tracing) {
+        // First match wins: every row ahead of the deciding one was rejected.
+        // Case 0 is the velocity guard - it decided before any row was tried
+        int caseNumber = routes.caseNumberOf(route);
+        event.paymentType = kind.getPatternName();
+        event.customerType = customerType.name();
+        event.international = isInternational;
+        event.amount = amount.doubleValue();
+        event.amountBand = routes.describeBand(kind, amount, isInternational, customerType);
+        event.caseNumber = caseNumber;
+        event.guardsFailed = Math.max(0, caseNumber - 1);
+        event.guard = caseNumber == 0 ? "velocityExceeded" : route.guardExpression();
+        event.status = route.status().name();
+        event.requiresVerification = route.requiresVerification();
+        event.tracing = tracing.name();
+    }
 
-        return response;
+    /**
+     * Tracing only: replays the rules for this payment type in order, the way a
+     * guarded switch would try its cases. route() already knows the answer from
+     * the compiled table - this just explains it, so untraced payments skip it.
+     */
+    private void traceGuards(PatternMatchingTracker tracker, PaymentRoutingTable routes, PaymentKind kind,
+                             BigDecimal amount, boolean isInternational, CustomerType customerType) {
+        int caseNumber = 0;
+        for (PaymentRoute candidate : routes.routesFor(kind)) {
+            caseNumber++;
+            boolean passed = candidate.matches(amount, isInternational, customerType);
+            if (candidate.hasGuard()) {
+                tracker.recordRouteGuard(caseNumber, candidate, amount, isInternational, customerType, passed);
+            }
+            if (passed) {
+                return;
+            }
+        }
     }
 
-    // Private helper methods - unchanged
+    private PatternMatchingTracker trackerFor(TracingLevel tracing) {
+        return switch (tracing) {
+            case OFF -> PatternMatchingTracker.OFF;
+            case FULL -> new FullPatternMatchingTracker();
+            case SAMPLED -> ThreadLocalRandom.current().nextInt(sampleRate) == 0
+                    ? sampledTrackers.acquire()
+                    : PatternMatchingTracker.OFF;
+        };
+    }
 
     private PaymentResponse createResponse(String transactionId, PaymentResponse.PaymentStatus status,
                                            BigDecimal amount, String paymentMethod, String validationMessage) {
@@ -255,10 +262,6 @@ public class PaymentService {
         return response;
     }
 
-    private String generateTransactionId() {
-        return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-    }
-
     private String maskEmail(String email) {
         if (email == null || !email.contains("@")) return "***@***.com";
         String[] parts = email.split("@");
@@ -0,0 +1,141 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.model.cart.RecentlyViewedIds;
+import org.example.repository.CartExpiryWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * RECENTLY VIEWED PRODUCTS - Production version of the SequencedSet demo
+ *
+ * OnlineShoppingSessionDemo shows the idea with a single-threaded LinkedHashSet.
+ * Here every customer gets a bounded RecentlyViewedIds:
+ * - addLast() on a view: new ids go to the end, repeat views MOVE to the end
+ * - Oldest view is evicted in O(1) once max-recently-viewed is reached
+ * - Product ids stay primitive longs - no boxing, no per-view allocation
+ *
+ * 💡 Concurrency: like CartRepository, each customer's set is only touched
+ *    inside ConcurrentHashMap.compute(), which locks just that customer's bin.
+ *    Two tabs viewing products at once never lose a view, and different
+ *    customers never wait on each other.
+ *
+ * 💡 Idle customers are forgotten after recently-viewed-idle-ttl (default: the
+ *    cart idle TTL), found by the same timing wheel that expires idle carts -
+ *    so the map only holds customers who are actually browsing.
+ */
+@Service
+public class RecentlyViewedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentlyViewedService.class);
+    private static final long[] NONE = new long[0];
+
+    private final Map<Long, RecentlyViewedIds> recentlyViewed = new ConcurrentHashMap<>();
+    private final int maxRecentlyViewed;
+
+    // Customers whose views have not been touched for idleTtlTicks are dropped
+    private final CartExpiryWheel expiryWheel;
+    private final long idleTtlTicks;
+
+    public RecentlyViewedService(
+            @Value("${org.features.sequenced-collections.max-recently-viewed:20}") int maxRecentlyViewed,
+            @Value("${org.features.sequenced-collections.recently-viewed-idle-ttl:${org.features.sequenced-collections.cart-idle-ttl:30m}}") Duration idleTtl,
+            @Value("${org.features.sequenced-collections.cart-expiry-tick:1s}") Duration expiryTick) {
+        if (maxRecentlyViewed <= 0) {
+            throw new IllegalArgumentException("max-recently-viewed must be positive: " + maxRecentlyViewed);
+        }
+        this.maxRecentlyViewed = maxRecentlyViewed;
+        this.expiryWheel = new CartExpiryWheel(expiryTick, 512, "recently-viewed-expiry", this::expireIfIdle);
+        this.idleTtlTicks = expiryWheel.ticksFor(idleTtl);
+    }
+
+    @PostConstruct
+    void startExpiry() {
+        expiryWheel.start();
+    }
+
+    @PreDestroy
+    void stopExpiry() {
+        expiryWheel.close();
+    }
+
+    /**
+     * Records that the customer viewed a product
+     *
+     * @return the customer's views, most recent first
+     */
+    public long[] recordView(long customerId, long productId) {
+        logger.debug("SERVICE: Customer {} viewed product {}", customerId, productId);
+
+        // Snapshot taken under the same lock as the update
+        long[][] snapshot = new long[1][];
+        boolean[] created = new boolean[1];
+        long now = expiryWheel.currentTick();
+        recentlyViewed.compute(customerId, (id, views) -> {
+            if (views == null) {
+                views = new RecentlyViewedIds(maxRecentlyViewed);
+                created[0] = true;
+            }
+            // JAVA 21 SEMANTICS: addLast() moves a repeat view to the end
+            views.addLast(productId);
+            views.touch(now);
+            snapshot[0] = views.toArrayMostRecentFirst();
+            return views;
+        });
+        if (created[0]) {
+            expiryWheel.schedule(customerId, 0, now + idleTtlTicks);
+        }
+        return snapshot[0];
+    }
+
+    /**
+     * The customer's recently viewed product ids, most recent first
+     */
+    public long[] getRecentlyViewed(long customerId) {
+        long[][] snapshot = {NONE};
+        recentlyViewed.computeIfPresent(customerId, (id, views) -> {
+            views.touch(expiryWheel.currentTick());
+            snapshot[0] = views.toArrayMostRecentFirst();
+            return views;
+        });
+        return snapshot[0];
+    }
+
+    public void clear(long customerId) {
+        logger.info("SERVICE: Clearing recently viewed products for customer {}", customerId);
+        recentlyViewed.remove(customerId);
+    }
+
+    public int getMaxRecentlyViewed() {
+        return maxRecentlyViewed;
+    }
+
+    /**
+     * Customers currently remembered
+     */
+    int trackedCustomers() {
+        return recentlyViewed.size();
+    }
+
+    // Runs on the expiry wheel's ticker: drop the customer, or report the next deadline
+    private long expireIfIdle(long customerId, long token, long currentTick) {
+        long[] nextDeadline = {-1};
+        recentlyViewed.computeIfPresent(customerId, (id, views) -> {
+            long deadline = views.getLastAccessTick() + idleTtlTicks;
+            if (deadline > currentTick) {
+                nextDeadline[0] = deadline;
+                return views;
+            }
+            logger.debug("SERVICE: Forgetting recently viewed products of idle customer {}", id);
+            return null;
+        });
+        return nextDeadline[0];
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.service;
+
+import org.example.dto.payment.PatternMatchingStep;
+import org.example.model.payment.CustomerType;
+import org.example.service.routing.PaymentRoute;
+import org.example.service.velocity.VelocityCheck;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * PatternMatchingTracker for TracingLevel.SAMPLED
+ *
+ * The record*() calls only copy their arguments (references and primitives)
+ * into preallocated arrays - no step objects, no strings, no list growth.
+ * getSteps() replays them through a FullPatternMatchingTracker, so the
+ * response shows exactly what FULL tracing would, and then hands this
+ * tracker back to its Pool for the next sampled payment.
+ *
+ * 💡 WHY A POOL INSTEAD OF A ThreadLocal?
+ *    Requests run on virtual threads (spring.threads.virtual.enabled), and a
+ *    virtual thread lives for one request only - a ThreadLocal buffer would be
+ *    allocated again for every payment. The Pool keeps a few trackers in slots
+ *    picked by thread id, so concurrent payments rarely meet on one slot.
+ */
+public final class SampledPatternMatchingTracker implements PatternMatchingTracker {
+
+    // Type check + destructuring + one guard per rule tried; further steps are dropped
+    static final int MAX_STEPS = 16;
+
+    private static final byte TYPE_CHECK = 0;
+    private static final byte DESTRUCTURING_CREDIT_CARD = 1;
+    private static final byte DESTRUCTURING_PAYPAL = 2;
+    private static final byte DESTRUCTURING_BANK_TRANSFER = 3;
+    private static final byte ROUTE_GUARD = 4;
+    private static final byte VELOCITY_GUARD = 5;
+
+    private final Pool pool;
+    private final int slot;
+
+    // One entry per recorded step, argument order as in the record*() call
+    private final byte[] kinds = new byte[MAX_STEPS];
+    private final int[] caseNumbers = new int[MAX_STEPS];
+    private final boolean[] internationals = new boolean[MAX_STEPS];
+    private final boolean[] guardsPassed = new boolean[MAX_STEPS];
+    private final Object[] firstArgs = new Object[MAX_STEPS];
+    private final Object[] secondArgs = new Object[MAX_STEPS];
+    private final Object[] thirdArgs = new Object[MAX_STEPS];
+    private int count;
+
+    private SampledPatternMatchingTracker(Pool pool, int slot) {
+        this.pool = pool;
+        this.slot = slot;
+    }
+
+    @Override
+    public void recordTypeCheck(String paymentType) {
+        record(TYPE_CHECK, 0, paymentType, null, null, false, false);
+    }
+
+    @Override
+    public void recordDestructuringCreditCard(String type, BigDecimal amount, String expiry) {
+        record(DESTRUCTURING_CREDIT_CARD, 0, type, amount, expiry, false, false);
+    }
+
+    @Override
+    public void recordDestructuringPayPal(String email, BigDecimal amount) {
+        record(DESTRUCTURING_PAYPAL, 0, email, amount, null, false, false);
+    }
+
+    @Override
+    public void recordDestructuringBankTransfer(String bankName, BigDecimal amount) {
+        record(DESTRUCTURING_BANK_TRANSFER, 0, bankName, amount, null, false, false);
+    }
+
+    @Override
+    public void recordRouteGuard(int caseNumber, PaymentRoute route, BigDecimal amount,
+                                 boolean isInternational, CustomerType customerType, boolean guardPassed) {
+        record(ROUTE_GUARD, caseNumber, route, amount, customerType, isInternational, guardPassed);
+    }
+
+    @Override
+    public void recordVelocityGuard(VelocityCheck check) {
+        record(VELOCITY_GUARD, 0, check, null, null, false, check.isExceeded());
+    }
+
+    private void record(byte kind, int caseNumber, Object first, Object second, Object third,
+                        boolean international, boolean guardPassed) {
+        if (count == MAX_STEPS) {
+            return;
+        }
+        kinds[count] = kind;
+        caseNumbers[count] = caseNumber;
+        firstArgs[count] = first;
+        secondArgs[count] = second;
+        thirdArgs[count] = third;
+        internationals[count] = international;
+        guardsPassed[count] = guardPassed;
+        count++;
+    }
+
+    /**
+     * Builds the recorded steps and returns this tracker to its pool -
+     * the tracker must not be used after this call.
+     */
+    @Override
+    public List<PatternMatchingStep> getSteps() {
+        FullPatternMatchingTracker steps = new FullPatternMatchingTracker();
+        for (int i = 0; i < count; i++) {
+            switch (kinds[i]) {
+                case TYPE_CHECK -> steps.recordTypeCheck((String) firstArgs[i]);
+                case DESTRUCTURING_CREDIT_CARD -> steps.recordDestructuringCreditCard(
+                        (String) firstArgs[i], (BigDecimal) secondArgs[i], (String) thirdArgs[i]);
+                case DESTRUCTURING_PAYPAL -> steps.recordDestructuringPayPal(
+                        (String) firstArgs[i], (BigDecimal) secondArgs[i]);
+                case DESTRUCTURING_BANK_TRANSFER -> steps.recordDestructuringBankTransfer(
+                        (String) firstArgs[i], (BigDecimal) secondArgs[i]);
+                case ROUTE_GUARD -> steps.recordRouteGuard(caseNumbers[i], (PaymentRoute) firstArgs[i],
+                        (BigDecimal) secondArgs[i], internationals[i], (CustomerType) thirdArgs[i], guardsPassed[i]);
+                case VELOCITY_GUARD -> steps.recordVelocityGuard((VelocityCheck) firstArgs[i]);
+                default -> throw new IllegalStateException("Unknown step kind: " + kinds[i]);
+            }
+        }
+        reset();
+        pool.release(this);
+        return steps.getSteps();
+    }
+
+    @Override
+    public boolean hasSteps() {
+        return count > 0;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    private void reset() {
+        // Drop references so a pooled tracker does not keep old payments reachable
+        Arrays.fill(firstArgs, 0, count, null);
+        Arrays.fill(secondArgs, 0, count, null);
+        Arrays.fill(thirdArgs, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Preallocated trackers, striped by thread id
+     *
+     * acquire() takes the tracker out of its slot, so no two payments share one;
+     * if the slot is empty (another payment holds it) a new tracker is created
+     * and later returned to that slot if it is free again.
+     */
+    static final class Pool {
+        private final AtomicReferenceArray<SampledPatternMatchingTracker> slots;
+        private final int mask;
+
+        Pool(int stripes) {
+            int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                slots.set(i, new SampledPatternMatchingTracker(this, i));
+            }
+        }
+
+        SampledPatternMatchingTracker acquire() {
+            int slot = (int) Thread.currentThread().threadId() & mask;
+            SampledPatternMatchingTracker tracker = slots.getAndSet(slot, null);
+            return tracker != null ? tracker : new SampledPatternMatchingTracker(this, slot);
+        }
+
+        void release(SampledPatternMatchingTracker tracker) {
+            slots.compareAndSet(tracker.slot, null, tracker);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.service;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.CartState;
+import org.example.repository.CartRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * ShardedCartEngine - Single-writer shards, one thread per shard
+ *
+ * HOW IT WORKS:
+ * - shard = hash(customerId) % shards, so a customer always lands on the same shard
+ * - Callers enqueue a command into the shard's bounded queue and park on a
+ *   CompletableFuture. A full queue blocks the caller (backpressure) instead of
+ *   growing without bound.
+ * - The shard's writer thread is the only thread that runs commands for its
+ *   customers, so commands never wait for each other's locks - a hot customer
+ *   only delays the customers that share its shard.
+ *
+ * Commands still go through CartRepository.mutate(); that bin lock is now
+ * uncontended (only the expiry ticker and snapshots touch it besides the writer),
+ * and journaling keeps working unchanged.
+ *
+ * Callers block while waiting, so run request handling on virtual threads
+ * (spring.threads.virtual.enabled=true) - a parked virtual thread costs no carrier.
+ */
+public class ShardedCartEngine implements CartEngine, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedCartEngine.class);
+
+    private record Command<T>(Function<CartRepository, ? extends T> task,
+                              CompletableFuture<T> result) {
+
+        void run(CartRepository cartRepository) {
+            try {
+                result.complete(task.apply(cartRepository));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final CartRepository cartRepository;
+    private final List<BlockingQueue<Command<?>>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+
+    /**
+     * @param shards        number of writer threads (typically one per core)
+     * @param queueCapacity pending commands per shard before callers block
+     */
+    public ShardedCartEngine(CartRepository cartRepository, int shards, int queueCapacity) {
+        if (shards < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("shards and queueCapacity must be positive");
+        }
+        this.cartRepository = cartRepository;
+        for (int shard = 0; shard < shards; shard++) {
+            BlockingQueue<Command<?>> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            writers.add(Thread.ofPlatform()
+                    .name("cart-shard-" + shard)
+                    .daemon()
+                    .start(() -> drain(queue)));
+        }
+        logger.info("SERVICE: Sharded cart engine started with {} shards (queue capacity {})",
+                shards, queueCapacity);
+    }
+
+    @Override
+    public <T> T execute(Long customerId, Function<? super CartState, ? extends T> operation) {
+        return submit(customerId, repository -> repository.mutate(customerId, operation));
+    }
+
+    @Override
+    public CartState detach(Long customerId) {
+        // Queued on the customer's shard, so it runs after their pending commands
+        return submit(customerId, repository -> repository.detach(customerId));
+    }
+
+    @Override
+    public void restore(Long customerId, List<CartItem> lines, List<CartAction> history) {
+        submit(customerId, repository -> {
+            repository.restore(customerId, lines, history);
+            return null;
+        });
+    }
+
+    @Override
+    public CartSnapshot snapshot(Long customerId) {
+        // Reads never queue behind the shard's writer
+        return cartRepository.snapshot(customerId);
+    }
+
+    @Override
+    public long highestRecoveredItemId() {
+        return cartRepository.highestRecoveredItemId();
+    }
+
+    private <T> T submit(Long customerId, Function<CartRepository, ? extends T> task) {
+        Command<T> command = new Command<>(task, new CompletableFuture<>());
+        try {
+            queues.get(shardOf(customerId)).put(command);
+            return command.result().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for cart shard");
+        } catch (CompletionException e) {
+            // Rethrow what the operation threw, e.g. IllegalArgumentException for bad input
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private int shardOf(Long customerId) {
+        long h = customerId * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads sequential ids
+        return (int) ((h >>> 32) % queues.size());
+    }
+
+    private void drain(BlockingQueue<Command<?>> queue) {
+        List<Command<?>> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Command<?> command : batch) {
+                    command.run(cartRepository);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close(): fail whatever is still queued
+            batch.forEach(command -> command.result().cancel(false));
+            queue.forEach(command -> command.result().cancel(false));
+        }
+    }
+
+    @Override
+    public void close() {
+        writers.forEach(Thread::interrupt);
+    }
+}
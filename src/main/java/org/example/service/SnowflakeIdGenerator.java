@@ -0,0 +1,114 @@
+package org.example.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style 64-bit id generator: time-ordered, node-aware and lock-free.
+ *
+ * Bit layout (most significant first):
+ * <pre>
+ *   0 | 41 bits: millis since EPOCH | 10 bits: node id | 12 bits: sequence
+ * </pre>
+ * 41 bits of milliseconds last ~69 years from EPOCH, 10 node bits allow 1024
+ * instances, and 12 sequence bits give 4096 ids per millisecond per node.
+ *
+ * How it stays lock-free and collision-free:
+ * - Timestamp and sequence are packed into ONE AtomicLong ("state") as
+ *   (millis << 12 | sequence), so a single incrementAndGet() hands out a unique
+ *   (millis, sequence) pair - no CAS retry loop on the hot path.
+ * - A sequence overflow simply carries into the millisecond field. Under bursts
+ *   above 4096 ids/ms the embedded time runs slightly ahead of the wall clock
+ *   instead of spinning until the next millisecond.
+ * - When the wall clock is ahead of the state, the state is CAS-advanced to it.
+ *   The clock moving backwards is harmless - the state never decreases.
+ * Every id is therefore strictly greater than every id previously issued by the
+ * same generator, and ids from different nodes differ in the node bits.
+ *
+ * Across a restart the state starts from the wall clock again, which can be
+ * BEHIND ids issued during a burst just before shutdown. advancePast() seeds
+ * the state from the highest recovered id so those ids are not handed out twice.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /** Custom epoch (2024-01-01T00:00:00Z) - keeps the 41-bit timestamp small */
+    public static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    private final AtomicLong state;
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock wall clock in epoch millis - injectable for tests
+     */
+    public SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+        this.state = new AtomicLong(elapsedMillis() << SEQUENCE_BITS);
+    }
+
+    @Override
+    public long nextId() {
+        long next = state.incrementAndGet();
+
+        // Resynchronize with the wall clock when it has moved past our state
+        long clockState = elapsedMillis() << SEQUENCE_BITS;
+        if (clockState > next) {
+            long current;
+            while ((current = state.get()) < clockState) {
+                if (state.compareAndSet(current, clockState)) {
+                    break;
+                }
+            }
+        }
+        return compose(next);
+    }
+
+    /**
+     * Moves the state up to the (millis, sequence) of id, so the next id is greater
+     * than it whatever node issued it. Never moves the state backwards.
+     */
+    @Override
+    public void advancePast(long id) {
+        long packedState = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        state.accumulateAndGet(packedState, Math::max);
+    }
+
+    /**
+     * @return the epoch millisecond embedded in an id generated by this class
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * @return the node id embedded in an id generated by this class
+     */
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    private long compose(long packedState) {
+        long millis = packedState >>> SEQUENCE_BITS;
+        long sequence = packedState & SEQUENCE_MASK;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    private long elapsedMillis() {
+        return clock.getAsLong() - EPOCH_MILLIS;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.service;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.CartState;
+import org.example.repository.CartRepository;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs each operation on the calling thread under the customer's bin lock
+ */
+public class SyncCartEngine implements CartEngine {
+
+    private final CartRepository cartRepository;
+
+    public SyncCartEngine(CartRepository cartRepository) {
+        this.cartRepository = cartRepository;
+    }
+
+    @Override
+    public <T> T execute(Long customerId, Function<? super CartState, ? extends T> operation) {
+        return cartRepository.mutate(customerId, operation);
+    }
+
+    @Override
+    public CartState detach(Long customerId) {
+        return cartRepository.detach(customerId);
+    }
+
+    @Override
+    public void restore(Long customerId, List<CartItem> lines, List<CartAction> history) {
+        cartRepository.restore(customerId, lines, history);
+    }
+
+    @Override
+    public CartSnapshot snapshot(Long customerId) {
+        return cartRepository.snapshot(customerId);
+    }
+
+    @Override
+    public long highestRecoveredItemId() {
+        return cartRepository.highestRecoveredItemId();
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service.routing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.example.dto.payment.PaymentResponse.PaymentStatus;
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.PaymentKind;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One row of the payment routing table (payment-routes.json)
+ *
+ * The guard is the AND of every condition that is set; an unset (null/empty)
+ * condition matches everything. Rows are tried in file order and the first
+ * matching row for the payment's type decides - exactly like the cases of a
+ * guarded switch.
+ *
+ * @param paymentType          which Payment record this row applies to
+ * @param amountAbove          guard: amount > amountAbove
+ * @param amountAtMost         guard: amount <= amountAtMost
+ * @param international        guard: international == this value
+ * @param customerTypes        guard: customer type is one of these
+ * @param status               outcome status
+ * @param requiresVerification outcome flag copied to the response
+ * @param message              outcome validation message
+ */
+public record PaymentRoute(
+        PaymentKind paymentType,
+        BigDecimal amountAbove,
+        BigDecimal amountAtMost,
+        Boolean international,
+        Set<CustomerType> customerTypes,
+        PaymentStatus status,
+        boolean requiresVerification,
+        String message
+) {
+
+    public PaymentRoute {
+        if (paymentType == null || status == null || message == null) {
+            throw new IllegalArgumentException("paymentType, status and message are required: " + message);
+        }
+        if (amountAbove != null && amountAtMost != null && amountAbove.compareTo(amountAtMost) >= 0) {
+            throw new IllegalArgumentException("Empty amount band (" + amountAbove + ", " + amountAtMost + "]");
+        }
+        // EnumSet keeps the types in declaration order, so guard expressions are stable
+        customerTypes = customerTypes == null || customerTypes.isEmpty()
+                ? Set.of()
+                : Collections.unmodifiableSet(EnumSet.copyOf(customerTypes));
+    }
+
+    public boolean matches(BigDecimal amount, boolean isInternational, CustomerType customerType) {
+        return (amountAbove == null || amount.compareTo(amountAbove) > 0)
+                && (amountAtMost == null || amount.compareTo(amountAtMost) <= 0)
+                && (international == null || international == isInternational)
+                && (customerTypes.isEmpty() || customerTypes.contains(customerType));
+    }
+
+    /**
+     * @return false for a catch-all row (the equivalent of a case without `when`)
+     */
+    @JsonIgnore
+    public boolean hasGuard() {
+        return amountAbove != null || amountAtMost != null || international != null || !customerTypes.isEmpty();
+    }
+
+    /**
+     * The guard as it would read in a `when` clause, e.g. "amount > 1000 && international"
+     */
+    @JsonIgnore
+    public String guardExpression() {
+        List<String> conditions = new ArrayList<>();
+        if (amountAbove != null) conditions.add("amount > " + amountAbove);
+        if (amountAtMost != null) conditions.add("amount ≤ " + amountAtMost);
+        if (international != null) conditions.add(international ? "international" : "!international");
+        if (!customerTypes.isEmpty()) conditions.add(customerTypeCondition());
+        return String.join(" && ", conditions);
+    }
+
+    @JsonIgnore
+    public String customerTypeCondition() {
+        return customerTypes.size() == 1
+                ? "customerType == " + customerTypes.iterator().next()
+                : "customerType in " + customerTypes;
+    }
+}
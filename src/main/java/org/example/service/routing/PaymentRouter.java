@@ -0,0 +1,87 @@
+package org.example.service.routing;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * PaymentRouter - Holds the live PaymentRoutingTable and swaps it at runtime
+ *
+ * Rules come from org.features.record-patterns.routes (default
+ * classpath:payment-routes.json; use file:... for a table you edit in place)
+ * or from PUT /api/payment/routes (only with routes.admin-enabled=true).
+ *
+ * 💡 Swapping is one volatile write of a fully compiled, immutable table:
+ *    a payment in flight keeps the table it read, the next one sees the new
+ *    one, and no payment ever sees half a table. A table that fails to
+ *    compile is rejected and the old one stays live.
+ */
+@Service
+public class PaymentRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentRouter.class);
+    private static final TypeReference<List<PaymentRoute>> ROUTE_LIST = new TypeReference<>() {};
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final String location;
+    private volatile PaymentRoutingTable table;
+
+    public PaymentRouter(ResourceLoader resourceLoader, ObjectMapper objectMapper,
+                         @Value("${org.features.record-patterns.routes:classpath:payment-routes.json}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.location = location;
+        this.table = compile(read(), "startup");
+    }
+
+    public PaymentRoutingTable current() {
+        return table;
+    }
+
+    /**
+     * Re-reads the configured location and swaps the table in
+     */
+    public synchronized PaymentRoutingTable reload() {
+        table = compile(read(), "reload");
+        return table;
+    }
+
+    /**
+     * Swaps in the given rows
+     */
+    public synchronized PaymentRoutingTable replace(List<PaymentRoute> routes) {
+        table = compile(routes, "replace");
+        return table;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    private PaymentRoutingTable compile(List<PaymentRoute> routes, String reason) {
+        PaymentRoutingTable compiled = PaymentRoutingTable.compile(routes);
+        logger.info("SERVICE: Payment routing table {} - {} rules compiled into {} bands",
+                reason, compiled.getRoutes().size(), compiled.getBandCount());
+        return compiled;
+    }
+
+    private List<PaymentRoute> read() {
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream in = resource.getInputStream()) {
+            return objectMapper.readValue(in, ROUTE_LIST);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read payment routes from " + location, e);
+        }
+    }
+}
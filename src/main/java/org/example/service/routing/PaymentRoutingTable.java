@@ -0,0 +1,239 @@
+package org.example.service.routing;
+
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.Money;
+import org.example.model.payment.PaymentKind;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * PaymentRoutingTable - PaymentRoute rows compiled into a flat decision structure
+ *
+ * HOW IT IS COMPILED (once, when the rules are loaded):
+ * - Every (payment type, international, customer type) combination gets a cell:
+ *   3 × 2 × 3 = 18 cells in one array
+ * - Inside a cell the amount thresholds of the rows that can apply there split
+ *   the amounts into bands; each band stores the row that wins for it under
+ *   first-match order
+ *
+ * So route() never walks the rows: it computes the cell index and compares the
+ * amount with (usually) one or two thresholds - no allocation, no guard evaluation.
+ *
+ * 💡 LONG-CENTS FAST PATH: each cell also keeps its thresholds in cents, so an
+ *    amount given in cents (see Money.toCents) is placed with long
+ *    comparisons. A cell with a threshold that is not whole cents, or an
+ *    amount that is not, goes through the BigDecimal bounds instead - the
+ *    answer is the same either way.
+ *
+ * 💡 Compiling also VALIDATES: a table that leaves any combination of type,
+ *    flag, customer type and amount without a row is rejected, the same way
+ *    the compiler rejects a non-exhaustive switch over a sealed type.
+ *
+ * Instances are immutable; PaymentRouter swaps whole tables.
+ */
+public final class PaymentRoutingTable {
+
+    private static final PaymentKind[] KINDS = PaymentKind.values();
+    private static final CustomerType[] CUSTOMER_TYPES = CustomerType.values();
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    /**
+     * One (payment type, international, customer type) combination
+     *
+     * @param bounds      ascending band upper bounds (inclusive), one fewer than outcomes
+     * @param centBounds  the same bounds in cents, or null if one is not whole cents
+     * @param outcomes    the winning route of each band
+     */
+    private record Cell(BigDecimal[] bounds, long[] centBounds, PaymentRoute[] outcomes) { }
+
+    private final List<PaymentRoute> routes;
+    private final List<List<PaymentRoute>> routesByKind;
+    private final Cell[] cells;
+
+    private PaymentRoutingTable(List<PaymentRoute> routes, List<List<PaymentRoute>> routesByKind, Cell[] cells) {
+        this.routes = routes;
+        this.routesByKind = routesByKind;
+        this.cells = cells;
+    }
+
+    /**
+     * @throws IllegalArgumentException if some payment would match no row
+     */
+    public static PaymentRoutingTable compile(List<PaymentRoute> routes) {
+        List<PaymentRoute> rows = List.copyOf(routes);
+        List<List<PaymentRoute>> byKind = new ArrayList<>();
+        for (PaymentKind kind : KINDS) {
+            byKind.add(rows.stream().filter(route -> route.paymentType() == kind).toList());
+        }
+
+        Cell[] cells = new Cell[KINDS.length * 2 * CUSTOMER_TYPES.length];
+        for (PaymentKind kind : KINDS) {
+            for (boolean international : new boolean[] {false, true}) {
+                for (CustomerType customerType : CUSTOMER_TYPES) {
+                    cells[cellOf(kind, international, customerType)] =
+                            compileCell(byKind.get(kind.ordinal()), kind, international, customerType);
+                }
+            }
+        }
+        return new PaymentRoutingTable(rows, List.copyOf(byKind), cells);
+    }
+
+    private static Cell compileCell(List<PaymentRoute> kindRoutes, PaymentKind kind, boolean international,
+                                    CustomerType customerType) {
+        List<PaymentRoute> candidates = kindRoutes.stream()
+                .filter(route -> route.international() == null || route.international() == international)
+                .filter(route -> route.customerTypes().isEmpty() || route.customerTypes().contains(customerType))
+                .toList();
+
+        // TreeSet compares with compareTo, so 1000 and 1000.00 are one threshold
+        TreeSet<BigDecimal> thresholds = new TreeSet<>();
+        for (PaymentRoute route : candidates) {
+            if (route.amountAbove() != null) thresholds.add(route.amountAbove());
+            if (route.amountAtMost() != null) thresholds.add(route.amountAtMost());
+        }
+        BigDecimal[] points = thresholds.toArray(BigDecimal[]::new);
+
+        // Band i holds amounts in (points[i-1], points[i]]; the last band is open-ended
+        List<BigDecimal> cellBounds = new ArrayList<>();
+        List<PaymentRoute> cellOutcomes = new ArrayList<>();
+        for (int band = 0; band <= points.length; band++) {
+            PaymentRoute winner = null;
+            for (PaymentRoute route : candidates) {
+                if (coversBand(route, points, band)) {
+                    winner = route;
+                    break;
+                }
+            }
+            if (winner == null) {
+                throw new IllegalArgumentException(String.format(
+                        "No route for %s, international=%s, customerType=%s, amount in %s",
+                        kind, international, customerType, describeBand(points, band)));
+            }
+            // Neighbouring bands with the same winner collapse into one
+            if (!cellOutcomes.isEmpty() && cellOutcomes.getLast() == winner) {
+                cellBounds.removeLast();
+            } else {
+                cellOutcomes.add(winner);
+            }
+            if (band < points.length) {
+                cellBounds.add(points[band]);
+            }
+        }
+        BigDecimal[] bounds = cellBounds.toArray(BigDecimal[]::new);
+        return new Cell(bounds, centBoundsOf(bounds), cellOutcomes.toArray(PaymentRoute[]::new));
+    }
+
+    private static long[] centBoundsOf(BigDecimal[] bounds) {
+        long[] centBounds = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            centBounds[i] = Money.thresholdToCents(bounds[i]);
+            if (centBounds[i] == Money.NOT_CENTS) {
+                return null;
+            }
+        }
+        return centBounds;
+    }
+
+    private static boolean coversBand(PaymentRoute route, BigDecimal[] points, int band) {
+        // Every threshold is one of the points, so a whole band is either in or out
+        boolean aboveLower = route.amountAbove() == null
+                || band > Arrays.binarySearch(points, route.amountAbove());
+        boolean belowUpper = route.amountAtMost() == null
+                || band <= Arrays.binarySearch(points, route.amountAtMost());
+        return aboveLower && belowUpper;
+    }
+
+    private static String describeBand(BigDecimal[] points, int band) {
+        String lower = band == 0 ? "(-∞" : "(" + points[band - 1];
+        String upper = band == points.length ? "∞)" : points[band] + "]";
+        return lower + ", " + upper;
+    }
+
+    private static int cellOf(PaymentKind kind, boolean international, CustomerType customerType) {
+        return (kind.ordinal() * 2 + (international ? 1 : 0)) * CUSTOMER_TYPES.length + customerType.ordinal();
+    }
+
+    /**
+     * The row that decides this payment - same answer as trying the rows in order
+     */
+    public PaymentRoute route(PaymentKind kind, BigDecimal amount, boolean international, CustomerType customerType) {
+        return route(kind, amount, Money.toCents(amount), international, customerType);
+    }
+
+    /**
+     * Same as above with the amount already converted by Money.toCents (NOT_CENTS allowed)
+     */
+    public PaymentRoute route(PaymentKind kind, BigDecimal amount, long amountCents, boolean international,
+                              CustomerType customerType) {
+        Cell cell = cells[cellOf(kind, international, customerType)];
+        long[] centBounds = cell.centBounds();
+        if (amountCents != Money.NOT_CENTS && centBounds != null) {
+            int band;
+            if (centBounds.length <= LINEAR_SCAN_LIMIT) {
+                band = 0;
+                while (band < centBounds.length && amountCents > centBounds[band]) {
+                    band++;
+                }
+            } else {
+                band = Arrays.binarySearch(centBounds, amountCents);
+                band = band >= 0 ? band : -band - 1;
+            }
+            return cell.outcomes()[band];
+        }
+        BigDecimal[] cellBounds = cell.bounds();
+        int band;
+        if (cellBounds.length <= LINEAR_SCAN_LIMIT) {
+            // Typical cells have 0-2 thresholds: a scan beats binarySearch's Comparable calls
+            band = 0;
+            while (band < cellBounds.length && amount.compareTo(cellBounds[band]) > 0) {
+                band++;
+            }
+        } else {
+            band = Arrays.binarySearch(cellBounds, amount);
+            band = band >= 0 ? band : -band - 1;
+        }
+        return cell.outcomes()[band];
+    }
+
+    /**
+     * The amount band route() used for this payment, e.g. "(1000, ∞)" - for
+     * diagnostics, so it is recomputed rather than tracked on every lookup
+     */
+    public String describeBand(PaymentKind kind, BigDecimal amount, boolean international, CustomerType customerType) {
+        BigDecimal[] cellBounds = cells[cellOf(kind, international, customerType)].bounds();
+        int band = 0;
+        while (band < cellBounds.length && amount.compareTo(cellBounds[band]) > 0) {
+            band++;
+        }
+        return describeBand(cellBounds, band);
+    }
+
+    /**
+     * Position of a row among the rows for its payment type (1-based, the "case number")
+     */
+    public int caseNumberOf(PaymentRoute route) {
+        return routesFor(route.paymentType()).indexOf(route) + 1;
+    }
+
+    /**
+     * Rows for one payment type in match order (their position is the case number)
+     */
+    public List<PaymentRoute> routesFor(PaymentKind kind) {
+        return routesByKind.get(kind.ordinal());
+    }
+
+    public List<PaymentRoute> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Number of amount bands over all cells - the size of the compiled table
+     */
+    public int getBandCount() {
+        return Arrays.stream(cells).mapToInt(cell -> cell.outcomes().length).sum();
+    }
+}
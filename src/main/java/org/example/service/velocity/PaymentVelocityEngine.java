@@ -0,0 +1,234 @@
+package org.example.service.velocity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-customer payment velocity: how many payments, and how much money, a
+ * customer sent in the last minute, hour and day.
+ *
+ * MEMORY LAYOUT - one AtomicLongArray, sized once:
+ * <pre>
+ *   slot = [ owner | lastSeen | 1m buckets | 1h buckets | 24h buckets ]
+ *   bucket = [ count word | amount word ]     word = 16-bit epoch tag | 48-bit value
+ * </pre>
+ * 24 buckets per slot → 50 longs (400 bytes); 65,536 slots ≈ 26 MB, whether
+ * there are a thousand customers or ten million.
+ *
+ * HOW IT WORKS:
+ * - A customer lives in one of TWO candidate slots picked by hashing the id.
+ *   An unknown customer takes the candidate that was idle longest, so the
+ *   slots hold the most recently active customers and quiet ones age out
+ * - A bucket word carries the epoch it counts for (time / bucket length).
+ *   Adding to a word left over from an older epoch restarts it at this
+ *   epoch in the same CAS - buckets never need a sweeper
+ * - Reading a window sums the buckets whose tag is one of its epochs
+ *
+ * 💡 O(1) AND LOCK-FREE: a payment costs a fixed 2 slot probes, 6 CAS
+ *    and 48 reads - no locks, no allocation in the counters, no
+ *    per-customer objects. Concurrent payments of one customer just retry
+ *    their CAS.
+ *
+ * 💡 BOUNDED MEANS APPROXIMATE: a customer pushed out of its slot starts
+ *    again from zero, and a payment racing with its slot changing hands can
+ *    be lost or counted once for the other customer. With enough slots for
+ *    the customers active in a day this is rare.
+ */
+public final class PaymentVelocityEngine {
+
+    private static final VelocityWindow[] WINDOWS = VelocityWindow.values();
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int OWNER = 0;
+    private static final int LAST_SEEN = 1;
+    private static final int HEADER = 2;
+
+    private static final int TAG_SHIFT = 48;
+    private static final long TAG_MASK = 0xFFFF;
+    private static final long VALUE_MASK = (1L << TAG_SHIFT) - 1;
+    private static final long MAX_IDLE_MILLIS = Duration.ofHours(24).toMillis();
+
+    // Offset of each window's first bucket inside a slot
+    private static final int[] WINDOW_OFFSETS = new int[WINDOWS.length];
+    private static final int SLOT_SIZE;
+
+    static {
+        int offset = HEADER;
+        for (VelocityWindow window : WINDOWS) {
+            WINDOW_OFFSETS[window.ordinal()] = offset;
+            offset += 2 * window.buckets();
+        }
+        SLOT_SIZE = offset;
+    }
+
+    private final AtomicLongArray slots;
+    private final int slotMask;
+    private final VelocityLimits limits;
+    private final LongSupplier clock;
+    private final Counter evictions;
+    private final Counter flagged;
+
+    /**
+     * @param slotCount customers tracked at once, rounded up to a power of two
+     * @param clock     epoch millis - injectable for tests
+     */
+    public PaymentVelocityEngine(int slotCount, VelocityLimits limits, MeterRegistry meterRegistry, LongSupplier clock) {
+        if (slotCount < 2 || slotCount > (1 << 24)) {
+            throw new IllegalArgumentException("velocity.slots must be between 2 and 2^24: " + slotCount);
+        }
+        int capacity = Integer.highestOneBit(slotCount - 1) << 1;
+        this.slots = new AtomicLongArray(capacity * SLOT_SIZE);
+        for (int slot = 0; slot < capacity; slot++) {
+            slots.set(slot * SLOT_SIZE + OWNER, EMPTY);
+        }
+        this.slotMask = capacity - 1;
+        this.limits = limits;
+        this.clock = clock;
+        this.evictions = Counter.builder("payment.velocity.evictions")
+                .description("Customers pushed out of their velocity slot by another customer")
+                .register(meterRegistry);
+        this.flagged = Counter.builder("payment.velocity.flagged")
+                .description("Payments over a velocity limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts one payment and returns the customer's totals including it
+     *
+     * @param amountCents the amount in cents (negative values are counted as 0)
+     */
+    public VelocityCheck record(long customerId, long amountCents) {
+        if (customerId == EMPTY) {
+            throw new IllegalArgumentException("Reserved customer id: " + customerId);
+        }
+        long now = clock.getAsLong();
+        int base = slotFor(customerId, now) * SLOT_SIZE;
+
+        long[] payments = new long[WINDOWS.length];
+        long[] cents = new long[WINDOWS.length];
+        for (VelocityWindow window : WINDOWS) {
+            long epoch = now / window.bucketMillis();
+            int bucket = base + WINDOW_OFFSETS[window.ordinal()] + 2 * (int) (epoch % window.buckets());
+            add(bucket, epoch, window.buckets(), 1);
+            add(bucket + 1, epoch, window.buckets(), Math.max(0, amountCents));
+            payments[window.ordinal()] = sum(base, window, epoch, 0);
+            cents[window.ordinal()] = sum(base, window, epoch, 1);
+        }
+
+        VelocityCheck check = new VelocityCheck(customerId, payments, cents, limits);
+        if (check.isExceeded()) {
+            flagged.increment();
+        }
+        return check;
+    }
+
+    /**
+     * The slot holding this customer - claimed if the customer has none
+     */
+    private int slotFor(long customerId, long now) {
+        long hash = mix(customerId);
+        int first = (int) hash & slotMask;
+        int second = (int) (hash >>> 32) & slotMask;
+        if (second == first) {
+            second = first ^ 1;
+        }
+
+        while (true) {
+            long firstOwner = slots.get(first * SLOT_SIZE + OWNER);
+            long secondOwner = slots.get(second * SLOT_SIZE + OWNER);
+            if (firstOwner == customerId || secondOwner == customerId) {
+                int slot = firstOwner == customerId ? first : second;
+                // Idle for longer than the longest window: every bucket is stale, and 16-bit
+                // tags that old could wrap around to look current
+                if (now - slots.get(slot * SLOT_SIZE + LAST_SEEN) > MAX_IDLE_MILLIS) {
+                    clear(slot * SLOT_SIZE);
+                }
+                slots.lazySet(slot * SLOT_SIZE + LAST_SEEN, now);
+                return slot;
+            }
+
+            // Take an empty candidate, else the one idle longer
+            int victim;
+            long victimOwner;
+            if (firstOwner == EMPTY || (secondOwner != EMPTY
+                    && slots.get(first * SLOT_SIZE + LAST_SEEN) <= slots.get(second * SLOT_SIZE + LAST_SEEN))) {
+                victim = first;
+                victimOwner = firstOwner;
+            } else {
+                victim = second;
+                victimOwner = secondOwner;
+            }
+            int base = victim * SLOT_SIZE;
+            if (slots.compareAndSet(base + OWNER, victimOwner, customerId)) {
+                if (victimOwner != EMPTY) {
+                    evictions.increment();
+                }
+                clear(base);
+                slots.lazySet(base + LAST_SEEN, now);
+                return victim;
+            }
+            // Someone else claimed it (maybe for this customer) - look again
+        }
+    }
+
+    private void clear(int base) {
+        for (int i = base + HEADER; i < base + SLOT_SIZE; i++) {
+            slots.set(i, 0);
+        }
+    }
+
+    private void add(int index, long epoch, int buckets, long delta) {
+        long capped = Math.min(VALUE_MASK, delta);
+        long tag = epoch & TAG_MASK;
+        // The epoch that shares this ring position one lap later
+        long nextLapTag = (epoch + buckets) & TAG_MASK;
+        while (true) {
+            long current = slots.get(index);
+            long currentTag = current >>> TAG_SHIFT;
+            long next;
+            if (currentTag == tag || (currentTag == nextLapTag && (current & VALUE_MASK) != 0)) {
+                // Same epoch, or a thread with a later clock already moved the bucket on - add to it
+                next = (currentTag << TAG_SHIFT) | Math.min(VALUE_MASK, (current & VALUE_MASK) + capped);
+            } else {
+                // Empty, or left over from an expired epoch - restart it at ours
+                next = (tag << TAG_SHIFT) | capped;
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private long sum(int base, VelocityWindow window, long epoch, int word) {
+        int buckets = window.buckets();
+        int first = base + WINDOW_OFFSETS[window.ordinal()] + word;
+        long total = 0;
+        for (long e = epoch - buckets + 1; e <= epoch; e++) {
+            long value = slots.get(first + 2 * (int) (e % buckets));
+            if (value >>> TAG_SHIFT == (e & TAG_MASK)) {
+                total += value & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+
+    // SplitMix64 finalizer - sequential customer ids spread over all slots
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public VelocityLimits getLimits() {
+        return limits;
+    }
+
+    public int getSlotCount() {
+        return slotMask + 1;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.service.velocity;
+
+import java.math.BigDecimal;
+
+/**
+ * One customer's activity per window, including the payment just recorded,
+ * checked against the limits
+ */
+public final class VelocityCheck {
+
+    private final long customerId;
+    private final long[] payments;
+    private final long[] cents;
+    private final VelocityLimits limits;
+    private final String exceeded;
+
+    VelocityCheck(long customerId, long[] payments, long[] cents, VelocityLimits limits) {
+        this.customerId = customerId;
+        this.payments = payments;
+        this.cents = cents;
+        this.limits = limits;
+        this.exceeded = firstExceeded();
+    }
+
+    private String firstExceeded() {
+        for (VelocityWindow window : VelocityWindow.values()) {
+            long maxPayments = limits.maxPayments(window);
+            if (maxPayments > 0 && payments(window) > maxPayments) {
+                return payments(window) + " payments in " + window.getLabel() + " (limit " + maxPayments + ")";
+            }
+            long maxCents = limits.maxCents(window);
+            if (maxCents > 0 && cents[window.ordinal()] > maxCents) {
+                return "$" + amount(window) + " in " + window.getLabel() + " (limit $" + limits.maxAmount(window) + ")";
+            }
+        }
+        return null;
+    }
+
+    public long getCustomerId() {
+        return customerId;
+    }
+
+    public long payments(VelocityWindow window) {
+        return payments[window.ordinal()];
+    }
+
+    public BigDecimal amount(VelocityWindow window) {
+        return BigDecimal.valueOf(cents[window.ordinal()], 2);
+    }
+
+    public VelocityLimits getLimits() {
+        return limits;
+    }
+
+    public boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    /**
+     * @return the first limit broken, e.g. "11 payments in 1m (limit 10)", or null
+     */
+    public String getExceeded() {
+        return exceeded;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.service.velocity;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Per-window limits, indexed by VelocityWindow (1m, 1h, 24h); 0 = no limit
+ *
+ * Configured as comma-separated lists in window order:
+ *   org.features.record-patterns.velocity.max-payments=10,60,200
+ *   org.features.record-patterns.velocity.max-amount=5000,20000,50000
+ */
+public final class VelocityLimits {
+
+    private static final VelocityWindow[] WINDOWS = VelocityWindow.values();
+
+    private final long[] maxPayments;
+    private final long[] maxCents;
+
+    private VelocityLimits(long[] maxPayments, long[] maxCents) {
+        this.maxPayments = maxPayments;
+        this.maxCents = maxCents;
+    }
+
+    /**
+     * @param maxPayments e.g. "10,60,200"
+     * @param maxAmount   in dollars, e.g. "5000,20000,50000"
+     * @throws IllegalArgumentException unless each list has one non-negative value per window
+     */
+    public static VelocityLimits parse(String maxPayments, String maxAmount) {
+        long[] payments = parseList("max-payments", maxPayments);
+        long[] amounts = parseList("max-amount", maxAmount);
+        long[] cents = new long[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            cents[i] = Math.multiplyExact(amounts[i], 100);
+        }
+        return new VelocityLimits(payments, cents);
+    }
+
+    private static long[] parseList(String name, String value) {
+        long[] limits = Arrays.stream(value.split(","))
+                .map(String::trim)
+                .mapToLong(Long::parseLong)
+                .toArray();
+        if (limits.length != WINDOWS.length || Arrays.stream(limits).anyMatch(limit -> limit < 0)) {
+            throw new IllegalArgumentException(
+                    "velocity." + name + " needs " + WINDOWS.length + " non-negative values (1m,1h,24h): " + value);
+        }
+        return limits;
+    }
+
+    public long maxPayments(VelocityWindow window) {
+        return maxPayments[window.ordinal()];
+    }
+
+    public long maxCents(VelocityWindow window) {
+        return maxCents[window.ordinal()];
+    }
+
+    public BigDecimal maxAmount(VelocityWindow window) {
+        return BigDecimal.valueOf(maxCents(window), 2);
+    }
+}
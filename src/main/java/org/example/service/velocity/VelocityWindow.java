@@ -0,0 +1,38 @@
+package org.example.service.velocity;
+
+import java.time.Duration;
+
+/**
+ * Sliding windows tracked per customer
+ *
+ * Each window is a ring of equal buckets; the bucket being filled is part of
+ * the window, so a window really covers between (buckets - 1) and buckets
+ * bucket lengths - e.g. the last 50-60 s for ONE_MINUTE.
+ */
+public enum VelocityWindow {
+    ONE_MINUTE("1m", Duration.ofMinutes(1), 6),
+    ONE_HOUR("1h", Duration.ofHours(1), 6),
+    ONE_DAY("24h", Duration.ofHours(24), 12);
+
+    private final String label;
+    private final long bucketMillis;
+    private final int buckets;
+
+    VelocityWindow(String label, Duration length, int buckets) {
+        this.label = label;
+        this.bucketMillis = length.toMillis() / buckets;
+        this.buckets = buckets;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    int buckets() {
+        return buckets;
+    }
+}
@@ -263,8 +263,9 @@ async function apiCall(method, endpoint, body = null, userAction) {
 
         updateFlowLog(logId, result);
 
-        // Fetch updated cart state after operations
-        if (endpoint.includes('/cart/')) {
+        // Fetch updated cart state after operations (not needed while the
+        // event stream is connected - the change arrives as a "cart" event)
+        if (endpoint.includes('/cart/') && !cartStream.connected) {
             const cartResponse = await fetch(`${DEMO_CONFIG.baseUrl}/api/cart/${DEMO_CONFIG.customerId}`);
             if (cartResponse.ok) {
                 const cartState = await cartResponse.json();
@@ -397,6 +398,62 @@ function showNotification(message, type = 'info') {
     }, 4000);
 }
 
+/* ================================
+   LIVE CART UPDATES (SERVER-SENT EVENTS)
+   ================================ */
+
+const cartStream = {
+    source: null,
+    connected: false,
+    items: []
+};
+
+// Apply one incremental change to the local copy of the cart
+function applyCartChange(change) {
+    switch (change.type) {
+        case 'ITEMS_REPLACED':
+            cartStream.items = change.items.slice();
+            break;
+        case 'ITEM_ADDED': {
+            const after = change.afterItemId === null
+                ? -1
+                : cartStream.items.findIndex(item => item.id === change.afterItemId);
+            cartStream.items.splice(after + 1, 0, change.item);
+            break;
+        }
+        case 'ITEM_REMOVED':
+            cartStream.items = cartStream.items.filter(item => item.id !== change.itemId);
+            break;
+    }
+}
+
+function connectCartStream() {
+    if (!window.EventSource) {
+        return; // fall back to fetching after every action
+    }
+
+    const source = new EventSource(`${DEMO_CONFIG.baseUrl}/api/cart/${DEMO_CONFIG.customerId}/stream`);
+    cartStream.source = source;
+
+    source.addEventListener('cart', (message) => {
+        const event = JSON.parse(message.data);
+        event.changes.forEach(applyCartChange);
+        cartStream.connected = true;
+
+        updateCartUI({
+            items: cartStream.items,
+            actionHistory: { length: event.undoDepth },
+            oldestItem: event.oldestItem,
+            newestItem: event.newestItem
+        });
+    });
+
+    // EventSource reconnects by itself; the first event after that is a full snapshot
+    source.onerror = () => {
+        cartStream.connected = false;
+    };
+}
+
 /* ================================
    DEMO INITIALIZATION
    ================================ */
@@ -420,8 +477,9 @@ async function loadInitialCartState() {
 function initializeShoppingCartDemo() {
     console.log('🚀 Shopping Cart Demo Initializing...');
 
-    // Load initial cart state from backend
+    // Load initial cart state from backend, then follow changes live
     loadInitialCartState();
+    connectCartStream();
 
     console.log('✅ Shopping Cart Demo Ready');
     console.log('🔧 Backend URL:', DEMO_CONFIG.baseUrl);
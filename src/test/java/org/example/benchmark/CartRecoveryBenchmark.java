@@ -0,0 +1,96 @@
+package org.example.benchmark;
+
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartState;
+import org.example.model.cart.Product;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start recovery time of the cart journal.
+ *
+ * Builds N carts (3 items each), writes a snapshot, appends a journal tail of
+ * N / 10 further changes, then times CartJournal.recover() into an empty map.
+ *
+ * RUN THIS:
+ * =========
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx4g --enable-preview -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      org.example.benchmark.CartRecoveryBenchmark 1000000
+ */
+public class CartRecoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int cartCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("cart-recovery-");
+        Product[] catalog = {
+                new Product("Laptop", new BigDecimal("999.99")),
+                new Product("Mouse", new BigDecimal("19.50")),
+                new Product("Keyboard", new BigDecimal("79.00")),
+        };
+
+        ProductCatalog products = new ProductCatalog();
+        try {
+            Map<Long, CartState> carts = new ConcurrentHashMap<>();
+            CartJournal journal = new CartJournal(directory, 64 << 20, Duration.ofMillis(10), Duration.ofHours(1));
+            journal.recover(carts, id -> new CartState(), products);
+
+            long itemId = 1;
+            long start = System.nanoTime();
+            for (long customerId = 0; customerId < cartCount; customerId++) {
+                for (Product product : catalog) {
+                    append(journal, carts, customerId,
+                            new CartCommand.AddItem(new CartItem(itemId++, product, 1, product.price()), false));
+                }
+            }
+            System.out.printf("Journaled %,d entries in %d ms%n", 3L * cartCount, millisSince(start));
+
+            start = System.nanoTime();
+            journal.snapshot(visitor -> carts.forEach(visitor));
+            System.out.printf("Snapshot of %,d carts in %d ms%n", cartCount, millisSince(start));
+
+            int tail = cartCount / 10;
+            for (long customerId = 0; customerId < tail; customerId++) {
+                append(journal, carts, customerId, new CartCommand.UndoLast());
+            }
+            journal.close();
+
+            Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+            CartJournal reopened = new CartJournal(directory, 64 << 20, Duration.ofMillis(10), Duration.ofHours(1));
+            CartJournal.RecoveryResult result = reopened.recover(recovered, id -> new CartState(), products);
+            reopened.close();
+
+            System.out.printf("Recovered %,d carts (%,d from snapshot, %,d entries replayed) in %d ms%n",
+                    result.cartsRecovered(), result.cartsFromSnapshot(), result.entriesReplayed(),
+                    result.elapsed().toMillis());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void append(CartJournal journal, Map<Long, CartState> carts, Long customerId, CartCommand command) {
+        carts.compute(customerId, (id, cartState) -> {
+            CartState target = cartState != null ? cartState : new CartState();
+            target.apply(command);
+            journal.append(id, target, target.drainPendingCommands());
+            return target;
+        });
+        journal.writePending();
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
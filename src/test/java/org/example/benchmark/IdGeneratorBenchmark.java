@@ -0,0 +1,45 @@
+package org.example.benchmark;
+
+import org.example.service.IdGenerator;
+import org.example.service.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark: cart item id generation throughput under contention.
+ *
+ * Compares:
+ * - legacy:    System.currentTimeMillis() + new Random().nextInt(1000)
+ *              (the original CartItem.generateId() - allocates, and collides)
+ * - snowflake: SnowflakeIdGenerator.nextId() shared by all threads
+ *
+ * RUN THIS:
+ * =========
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      org.openjdk.jmh.Main IdGeneratorBenchmark -t 32
+ *
+ * "-t" sets the thread count; scores are ops/sec summed over all threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    private final IdGenerator snowflake = new SnowflakeIdGenerator(1);
+
+    @Benchmark
+    public long legacy() {
+        return System.currentTimeMillis() + new Random().nextInt(1000);
+    }
+
+    @Benchmark
+    public long snowflake() {
+        return snowflake.nextId();
+    }
+}
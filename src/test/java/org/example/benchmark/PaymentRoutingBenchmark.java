@@ -0,0 +1,128 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.model.payment.BankTransfer;
+import org.example.model.payment.CreditCard;
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.Money;
+import org.example.model.payment.PayPal;
+import org.example.model.payment.Payment;
+import org.example.model.payment.PaymentKind;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.routing.PaymentRoutingTable;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark: deciding a payment's outcome.
+ *
+ * Compares:
+ * - sealedSwitch:  the guarded switch PaymentService used before routing rules
+ *                  (thresholds and guards fixed at compile time)
+ * - compiledTable: PaymentKind.of() + PaymentRoutingTable.route() over the
+ *                  default payment-routes.json (amount converted with
+ *                  Money.toCents, thresholds compared as longs)
+ * - compiledTableBigDecimal: the same lookup forced onto the BigDecimal
+ *                  thresholds (BigDecimal.compareTo per threshold)
+ *
+ * Both only decide - no tracing, logging or response building - over a mix of
+ * payment types, amounts, flags and customer types.
+ *
+ * RUN THIS:
+ * =========
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      org.openjdk.jmh.Main PaymentRoutingBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@State(Scope.Thread)
+public class PaymentRoutingBenchmark {
+
+    private static final BigDecimal HIGH_VALUE = new BigDecimal("1000");
+    private static final BigDecimal VERY_HIGH_VALUE = new BigDecimal("5000");
+    private static final int PAYMENTS = 1024;
+
+    private final Payment[] payments = new Payment[PAYMENTS];
+    private final CustomerType[] customerTypes = new CustomerType[PAYMENTS];
+    private final boolean[] internationals = new boolean[PAYMENTS];
+    private PaymentRoutingTable table;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        table = new PaymentRouter(new DefaultResourceLoader(), new ObjectMapper(),
+                "classpath:payment-routes.json").current();
+        Random random = new Random(42);
+        for (int i = 0; i < PAYMENTS; i++) {
+            payments[i] = randomPayment(random);
+            customerTypes[i] = CustomerType.values()[random.nextInt(CustomerType.values().length)];
+            internationals[i] = random.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    public String sealedSwitch() {
+        int i = next++ & (PAYMENTS - 1);
+        return sealedSwitch(payments[i], customerTypes[i], internationals[i]);
+    }
+
+    @Benchmark
+    public String compiledTable() {
+        int i = next++ & (PAYMENTS - 1);
+        Payment payment = payments[i];
+        return table.route(PaymentKind.of(payment), payment.getAmount(), internationals[i], customerTypes[i]).message();
+    }
+
+    @Benchmark
+    public String compiledTableBigDecimal() {
+        int i = next++ & (PAYMENTS - 1);
+        Payment payment = payments[i];
+        return table.route(PaymentKind.of(payment), payment.getAmount(), Money.NOT_CENTS,
+                internationals[i], customerTypes[i]).message();
+    }
+
+    /**
+     * The decision logic of the original PaymentService switch, reduced to its outcome
+     */
+    public static String sealedSwitch(Payment payment, CustomerType customerType, boolean isInternational) {
+        return switch (payment) {
+            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId)
+                    when amount.compareTo(HIGH_VALUE) > 0 && isInternational ->
+                    "High-value international transaction requires verification";
+            case CreditCard(var number, var type, var cvv, var expiry, var amount, var customerId)
+                    when amount.compareTo(HIGH_VALUE) > 0 -> customerType == CustomerType.VIP
+                    ? "VIP high-value transaction with express processing"
+                    : "High-value transaction with enhanced verification";
+            case CreditCard c -> isInternational
+                    ? "International credit card processed"
+                    : "Credit card processed successfully";
+            case PayPal p when isInternational -> "International PayPal with currency conversion";
+            case PayPal p -> "PayPal processed successfully";
+            case BankTransfer(var routing, var account, var bankName, var amount, var customerId)
+                    when amount.compareTo(VERY_HIGH_VALUE) > 0 -> isInternational
+                    ? "Very high-value international transfer (5-7 business days)"
+                    : "Very high-value transfer (3-5 business days)";
+            case BankTransfer b -> isInternational
+                    ? "International bank transfer (2-3 business days)"
+                    : "Bank transfer initiated (1-2 business days)";
+        };
+    }
+
+    public static Payment randomPayment(Random random) {
+        // Cents amounts up to $10,000 - both sides of every threshold
+        BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(1_000_000), 2);
+        return switch (random.nextInt(3)) {
+            case 0 -> new CreditCard("4532", "Visa", "123", "12/25", amount, 1L);
+            case 1 -> new PayPal("demo@example.com", "PP-1", amount, 1L);
+            default -> new BankTransfer("1", "2", "Demo Bank", amount, 1L);
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.benchmark;
+
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartState;
+import org.example.model.cart.Product;
+import org.example.repository.ProductCatalog;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained heap of N carts with and without the interned ProductCatalog.
+ *
+ * Each cart gets 3 lines drawn from a catalog of 1,000 products. Names and
+ * prices are rebuilt per line from text, as JSON deserialization does, then:
+ * - perLine:  new Product(name, price) for every line (the old CartService)
+ * - interned: ProductCatalog.intern(name, price)
+ *
+ * RUN THIS:
+ * =========
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx4g --enable-preview -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      org.example.benchmark.ProductInterningHeapBenchmark 1000000
+ */
+public class ProductInterningHeapBenchmark {
+
+    private static final int PRODUCTS = 1_000;
+    private static final int LINES_PER_CART = 3;
+
+    public static void main(String[] args) {
+        int cartCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long baseline = usedHeapAfterGc();
+        List<CartState> perLine = buildCarts(cartCount, null);
+        long perLineBytes = usedHeapAfterGc() - baseline;
+        perLine = null;
+
+        baseline = usedHeapAfterGc();
+        ProductCatalog catalog = new ProductCatalog();
+        List<CartState> interned = buildCarts(cartCount, catalog);
+        long internedBytes = usedHeapAfterGc() - baseline;
+
+        long lines = (long) cartCount * LINES_PER_CART;
+        System.out.printf("%,d carts, %,d lines, %,d distinct products%n", cartCount, lines, catalog.size());
+        System.out.printf("per-line Product: %,d MB (%d bytes/line)%n", perLineBytes >> 20, perLineBytes / lines);
+        System.out.printf("interned Product: %,d MB (%d bytes/line)%n", internedBytes >> 20, internedBytes / lines);
+        System.out.printf("saved:            %,d MB (%.0f%%)%n", (perLineBytes - internedBytes) >> 20,
+                100.0 * (perLineBytes - internedBytes) / perLineBytes);
+        System.out.println(interned.size()); // keep the carts reachable until measured
+    }
+
+    private static List<CartState> buildCarts(int cartCount, ProductCatalog catalog) {
+        List<CartState> carts = new ArrayList<>(cartCount);
+        long itemId = 1;
+        for (int c = 0; c < cartCount; c++) {
+            CartState cart = new CartState();
+            for (int line = 0; line < LINES_PER_CART; line++) {
+                int p = (c * 7 + line * 131) % PRODUCTS;
+                // Fresh objects per line, like a deserialized CartItemRequest
+                String name = new String("Product " + p);
+                BigDecimal price = new BigDecimal((p + 1) + ".99");
+
+                Product product = catalog != null ? catalog.intern(name, price) : new Product(name, price);
+                BigDecimal unitPrice = catalog != null ? product.price() : price;
+                cart.apply(new CartCommand.AddItem(new CartItem(itemId++, product, 1, unitPrice), false));
+            }
+            cart.drainPendingCommands();
+            carts.add(cart);
+        }
+        return carts;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
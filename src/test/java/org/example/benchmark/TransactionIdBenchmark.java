@@ -0,0 +1,47 @@
+package org.example.benchmark;
+
+import org.example.service.SnowflakeIdGenerator;
+import org.example.service.TransactionIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark: payment transaction id generation with 32 threads.
+ *
+ * Compares:
+ * - uuid:      "TXN-" + UUID.randomUUID() cut to 8 hex characters
+ *              (the original PaymentService.generateTransactionId() - shared
+ *              SecureRandom, several temporary strings, and only 32 bits left)
+ * - snowflake: TransactionIdGenerator.nextTransactionId() shared by all threads
+ *
+ * RUN THIS:
+ * =========
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      org.openjdk.jmh.Main TransactionIdBenchmark -prof gc
+ *
+ * Scores are ops/sec summed over all threads; "-prof gc" adds bytes per id.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@Threads(32)
+@State(Scope.Benchmark)
+public class TransactionIdBenchmark {
+
+    private final TransactionIdGenerator snowflake = new TransactionIdGenerator(new SnowflakeIdGenerator(1));
+
+    @Benchmark
+    public String uuid() {
+        return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+
+    @Benchmark
+    public String snowflake() {
+        return snowflake.nextTransactionId();
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dto.cart.CartBatchRequest;
+import org.example.dto.common.ApiResponse;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.example.service.CartService;
+import org.example.service.SyncCartEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CartControllerTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final ProductCatalog catalog = new ProductCatalog();
+    private final CartRepository repository = new CartRepository(10, Duration.ofMinutes(30), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            catalog, new SimpleMeterRegistry());
+    private final AtomicLong ids = new AtomicLong();
+    private final CartController controller = new CartController(
+            new CartService(new SyncCartEngine(repository), ids::incrementAndGet, catalog), null);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+    @Test
+    void batchWithoutOperationsIsABadRequest() throws Exception {
+        for (String body : new String[] {"{\"operations\": null}", "{}", "{\"operations\": []}"}) {
+            ResponseEntity<ApiResponse> response = controller.applyBatch(1L, request(body));
+
+            assertThat(response.getStatusCode()).as(body).isEqualTo(HttpStatus.BAD_REQUEST);
+            assertThat(response.getBody().getError()).as(body).contains("operations");
+        }
+        assertThat(repository.snapshot(1L).items()).isEmpty();
+    }
+
+    @Test
+    void batchWithAnInvalidOperationIsABadRequestAndChangesNothing() throws Exception {
+        String[] invalidOperations = {
+                "{ \"item\": { \"productName\": \"Mouse\", \"price\": 19.50, \"quantity\": 1 } }", // no type
+                "{ \"type\": \"ADD_LAST\" }",                                                      // no item
+                "{ \"type\": \"REMOVE\" }"                                                         // no itemId
+        };
+        for (String operation : invalidOperations) {
+            ResponseEntity<ApiResponse> response = controller.applyBatch(1L, request("""
+                    { "operations": [
+                        { "type": "ADD_LAST", "item": { "productName": "Laptop", "price": 999.99, "quantity": 1 } },
+                        %s
+                    ] }
+                    """.formatted(operation)));
+
+            assertThat(response.getStatusCode()).as(operation).isEqualTo(HttpStatus.BAD_REQUEST);
+            assertThat(response.getBody().getError()).as(operation).isNotBlank();
+        }
+        assertThat(repository.snapshot(1L).items()).isEmpty();
+    }
+
+    @Test
+    void batchWithOperationsIsApplied() throws Exception {
+        ResponseEntity<ApiResponse> response = controller.applyBatch(1L, request("""
+                { "operations": [
+                    { "type": "ADD_LAST", "item": { "productName": "Mouse", "price": 19.50, "quantity": 1 } },
+                    { "type": "ADD_FIRST", "item": { "productName": "Laptop", "price": 999.99, "quantity": 1 } }
+                ] }
+                """));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getError()).isNull();
+        assertThat(response.getBody().getMetadata()).containsEntry("cartSize", 2);
+    }
+
+    @Test
+    void conditionalGetIsNotModifiedUntilTheCartChanges() throws Exception {
+        controller.applyBatch(1L, request("""
+                { "operations": [
+                    { "type": "ADD_LAST", "item": { "productName": "Mouse", "price": 19.50, "quantity": 1 } }
+                ] }
+                """));
+        String tag = mockMvc.perform(get("/api/cart/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(tag).isNotBlank();
+
+        mockMvc.perform(get("/api/cart/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, tag))
+                .andExpect(content().string(""));
+
+        controller.applyBatch(1L, request("""
+                { "operations": [
+                    { "type": "ADD_LAST", "item": { "productName": "Cable", "price": 5.00, "quantity": 1 } }
+                ] }
+                """));
+
+        String newTag = mockMvc.perform(get("/api/cart/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newTag).isNotEqualTo(tag);
+    }
+
+    private CartBatchRequest request(String json) throws Exception {
+        return objectMapper.readValue(json, CartBatchRequest.class);
+    }
+}
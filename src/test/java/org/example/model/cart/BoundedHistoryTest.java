@@ -0,0 +1,89 @@
+package org.example.model.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedHistoryTest {
+
+    @Test
+    void fullHistoryOverwritesTheOldestEntry() {
+        BoundedHistory<Integer> history = new BoundedHistory<>(3);
+        history.addLast(1);
+        history.addLast(2);
+        history.addLast(3);
+        history.addLast(4);
+        history.addLast(5);
+
+        assertThat(history).containsExactly(3, 4, 5);
+        assertThat(history).hasSize(3);
+        assertThat(history.capacity()).isEqualTo(3);
+        assertThat(history.getFirst()).isEqualTo(3);
+        assertThat(history.getLast()).isEqualTo(5);
+    }
+
+    @Test
+    void wrapsAroundTheBackingArrayManyTimes() {
+        BoundedHistory<Integer> history = new BoundedHistory<>(4);
+        for (int i = 1; i <= 1_000; i++) {
+            history.addLast(i);
+            if (i % 7 == 0) {
+                // Pop the newest now and then so head and tail drift apart
+                assertThat(history.removeLast()).isEqualTo(i);
+            }
+        }
+
+        assertThat(history).containsExactly(997, 998, 999, 1000);
+    }
+
+    @Test
+    void removeLastPopsNewestFirstAcrossTheWrap() {
+        BoundedHistory<String> history = new BoundedHistory<>(3, List.of("a", "b", "c", "d"));
+
+        assertThat(history.removeLast()).isEqualTo("d");
+        assertThat(history.removeLast()).isEqualTo("c");
+        history.addLast("e");
+        assertThat(history).containsExactly("b", "e");
+        assertThat(history.removeLast()).isEqualTo("e");
+        assertThat(history.removeLast()).isEqualTo("b");
+
+        assertThat(history).isEmpty();
+        assertThatThrownBy(history::removeLast).isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(history::getLast).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void reversedIteratesNewestFirst() {
+        BoundedHistory<Integer> history = new BoundedHistory<>(3);
+        for (int i = 1; i <= 5; i++) {
+            history.addLast(i);
+        }
+
+        assertThat(history.reversed()).containsExactly(5, 4, 3);
+        assertThat(history.reversed().getFirst()).isEqualTo(5);
+        assertThat(history.reversed().removeFirst()).isEqualTo(5);
+        assertThat(history).containsExactly(3, 4);
+        assertThat(history.reversed().reversed()).isSameAs(history);
+    }
+
+    @Test
+    void iteratorFailsFastOnModification() {
+        BoundedHistory<Integer> history = new BoundedHistory<>(3, List.of(1, 2));
+        Iterator<Integer> iterator = history.iterator();
+        iterator.next();
+        history.addLast(3);
+
+        assertThatThrownBy(iterator::next).isInstanceOf(ConcurrentModificationException.class);
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> new BoundedHistory<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.model.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Property: after every change the published CartSnapshot shows exactly the
+ * live cart (order, first/last, total), and snapshots published earlier never
+ * change afterwards - for any mix of add / addFirst / remove / undo / redo / clear.
+ *
+ * RUN THIS:
+ * mvn test -Dtest=CartSnapshotPropertyTest
+ */
+class CartSnapshotPropertyTest {
+
+    private static final int SEQUENCES = 200;
+    private static final int ACTIONS_PER_SEQUENCE = 60;
+
+    @Test
+    void snapshotsMatchTheCartAndStayFrozen() {
+        for (long seed = 0; seed < SEQUENCES; seed++) {
+            Random random = new Random(seed);
+            CartState cart = new CartState(20);
+            List<CartSnapshot> published = new ArrayList<>();
+            List<List<Long>> expected = new ArrayList<>();
+            long nextId = 1;
+
+            for (int step = 0; step < ACTIONS_PER_SEQUENCE; step++) {
+                CartCommand command = switch (random.nextInt(10)) {
+                    case 0, 1, 2 -> new CartCommand.AddItem(item(random, nextId++), false);
+                    case 3, 4 -> new CartCommand.AddItem(item(random, nextId++), true);
+                    case 5, 6 -> new CartCommand.RemoveItem(cart.getItems().isEmpty()
+                            ? -1 : ids(cart.getItems()).get(random.nextInt(cart.getItems().size())));
+                    case 7 -> new CartCommand.UndoLast();
+                    case 8 -> new CartCommand.RedoLast();
+                    default -> new CartCommand.ClearCart();
+                };
+                cart.apply(command);
+                CartSnapshot snapshot = cart.publishSnapshot();
+
+                assertThat(ids(snapshot.items())).as("seed %d step %d", seed, step)
+                        .isEqualTo(ids(cart.getItems()));
+                assertThat(snapshot.totalAmount()).isEqualByComparingTo(cart.getTotalAmount());
+                assertThat(snapshot.version()).isEqualTo(cart.getVersion());
+                if (!cart.getItems().isEmpty()) {
+                    assertThat(snapshot.items().getFirst()).isSameAs(cart.getItems().getFirst());
+                    assertThat(snapshot.items().reversed().getFirst()).isSameAs(cart.getItems().getLast());
+                }
+                published.add(snapshot);
+                expected.add(ids(cart.getItems()));
+            }
+
+            for (int i = 0; i < published.size(); i++) {
+                assertThat(ids(published.get(i).items())).as("seed %d, snapshot %d", seed, i)
+                        .isEqualTo(expected.get(i));
+            }
+        }
+    }
+
+    @Test
+    void unchangedCartRepublishesTheSameSnapshot() {
+        CartState cart = new CartState();
+        cart.apply(new CartCommand.AddItem(item(new Random(1), 1), false));
+        CartSnapshot first = cart.publishSnapshot();
+
+        cart.apply(new CartCommand.RemoveItem(99)); // no-op, version unchanged
+        assertThat(cart.publishSnapshot()).isSameAs(first);
+        assertThat(cart.getSnapshot()).isSameAs(first);
+    }
+
+    @Test
+    void publishedHistoryHoldsNoLiveItemCollections() {
+        CartState cart = new CartState();
+        Random random = new Random(3);
+        cart.apply(new CartCommand.AddItem(item(random, 1), false));
+        cart.apply(new CartCommand.AddItem(item(random, 2), false));
+        cart.apply(new CartCommand.ClearCart());
+        cart.apply(new CartCommand.UndoLast()); // the cart is rebuilt from the cleared lines
+        cart.apply(new CartCommand.RedoLast());
+
+        CartSnapshot snapshot = cart.publishSnapshot();
+        CartAction.Cleared cleared = (CartAction.Cleared) snapshot.actionHistory().getLast();
+        assertThat(cleared.items()).isNull();
+        assertThat(cleared.itemCount()).isEqualTo(2);
+        // The live action still holds what undo needs
+        assertThat(((CartAction.Cleared) cart.getActionHistory().getLast()).items()).hasSize(2);
+    }
+
+    @Test
+    void repeatedInsertsAtOneSpotRenumberWithoutLosingOrder() {
+        IndexedCartItems items = new IndexedCartItems();
+        Random random = new Random(7);
+        items.addLast(item(random, 1));
+        items.addLast(item(random, 2));
+        PersistentCartItems before = items.persistentView();
+
+        // Each insert halves the gap after line 1 - far more than ORDER_GAP allows
+        for (long id = 100; id < 160; id++) {
+            items.addAfter(1L, item(random, id));
+            assertThat(ids(items.persistentView())).isEqualTo(ids(items));
+        }
+        assertThat(ids(items).getFirst()).isEqualTo(1L);
+        assertThat(ids(items).get(1)).isEqualTo(159L);
+        assertThat(ids(items).getLast()).isEqualTo(2L);
+        assertThat(ids(before)).containsExactly(1L, 2L);
+    }
+
+    private static CartItem item(Random random, long id) {
+        BigDecimal price = BigDecimal.valueOf(1 + random.nextInt(50_000), 2);
+        return new CartItem(id, new Product("P" + id, price), 1 + random.nextInt(3), price);
+    }
+
+    private static List<Long> ids(Iterable<CartItem> items) {
+        List<Long> ids = new ArrayList<>();
+        items.forEach(item -> ids.add(item.getId()));
+        return ids;
+    }
+}
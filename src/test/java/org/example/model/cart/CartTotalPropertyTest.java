@@ -0,0 +1,147 @@
+package org.example.model.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Property: the incrementally maintained cart total always equals the total
+ * obtained by streaming every line (the original CartState implementation),
+ * no matter which sequence of add / addFirst / remove / undo / clear ran.
+ *
+ * Runs a few hundred seeded random operation sequences; a failing seed is
+ * printed in the assertion message so it can be replayed.
+ *
+ * RUN THIS:
+ * mvn test -Dtest=CartTotalPropertyTest
+ */
+class CartTotalPropertyTest {
+
+    private static final int SEQUENCES = 300;
+    private static final int OPERATIONS_PER_SEQUENCE = 200;
+
+    @Test
+    void runningTotalMatchesStreamedTotal() {
+        for (long seed = 0; seed < SEQUENCES; seed++) {
+            Random random = new Random(seed);
+            CartState cart = new CartState();
+            List<CartItem> history = new ArrayList<>();
+            long nextId = 1;
+
+            for (int op = 0; op < OPERATIONS_PER_SEQUENCE; op++) {
+                switch (random.nextInt(10)) {
+                    case 0, 1, 2 -> {
+                        CartItem item = randomItem(random, nextId++);
+                        cart.getItems().addLast(item);
+                        history.add(item);
+                    }
+                    case 3, 4 -> {
+                        CartItem item = randomItem(random, nextId++);
+                        cart.getItems().addFirst(item);
+                        history.add(item);
+                    }
+                    case 5, 6 -> {
+                        if (!history.isEmpty()) {
+                            CartItem target = history.get(random.nextInt(history.size()));
+                            cart.getItems().removeById(target.getId());
+                        }
+                    }
+                    case 7 -> {
+                        if (!history.isEmpty()) {
+                            CartItem undone = history.removeLast();
+                            cart.getItems().removeById(undone.getId());
+                        }
+                    }
+                    case 8 -> {
+                        if (!cart.getItems().isEmpty()) {
+                            if (random.nextBoolean()) {
+                                cart.getItems().removeFirst();
+                            } else {
+                                cart.getItems().removeLast();
+                            }
+                        }
+                    }
+                    default -> {
+                        if (random.nextInt(5) == 0) {
+                            cart.getItems().clear();
+                            history.clear();
+                        }
+                    }
+                }
+
+                assertThat(cart.getTotalAmount())
+                        .as("seed=%d op=%d", seed, op)
+                        .isEqualByComparingTo(streamedTotal(cart));
+            }
+        }
+    }
+
+    @Test
+    void subCentAndHugePricesFallBackToExactArithmetic() {
+        CartState cart = new CartState();
+        cart.getItems().addLast(item(1, "0.001", 3));
+        cart.getItems().addLast(item(2, "99999999999999999.99", 7));
+        cart.getItems().addLast(item(3, "19.99", 2));
+
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo(streamedTotal(cart));
+
+        cart.getItems().removeById(1L);
+        cart.getItems().removeById(2L);
+
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo("39.98");
+    }
+
+    @Test
+    void largeCartIsServedFromRunningTotal() {
+        CartState cart = new CartState();
+        for (long id = 1; id <= 1500; id++) {
+            cart.getItems().addLast(item(id, "1234.56", 1 + (int) (id % 50)));
+        }
+
+        assertThat(cart.getItems().runningTotalAvailable()).isTrue();
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo(streamedTotal(cart));
+    }
+
+    @Test
+    void overflowingSumFallsBackAndRecoversOnRemoval() {
+        CartState cart = new CartState();
+        cart.getItems().addLast(item(1, "50000000000000000.00", 1));
+        cart.getItems().addLast(item(2, "50000000000000000.00", 1));
+        cart.getItems().addLast(item(3, "19.99", 2));
+
+        assertThat(cart.getItems().runningTotalAvailable()).isFalse();
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo(streamedTotal(cart));
+
+        cart.getItems().removeById(2L);
+
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo("50000000000000039.98");
+        assertThat(cart.getItems().runningTotalAvailable()).isTrue();
+    }
+
+    private static CartItem randomItem(Random random, long id) {
+        BigDecimal price = switch (random.nextInt(8)) {
+            case 0 -> BigDecimal.valueOf(random.nextInt(100_000));                    // whole dollars
+            case 1 -> BigDecimal.valueOf(random.nextInt(100_000_000), 4);             // sub-cent digits
+            case 2 -> new BigDecimal("1E+16").add(BigDecimal.valueOf(random.nextInt(100)));
+            default -> BigDecimal.valueOf(random.nextInt(10_000_000), 2);             // ordinary cents
+        };
+        return new CartItem(id, new Product("SKU-" + id, price), 1 + random.nextInt(1000), price);
+    }
+
+    private static CartItem item(long id, String price, int quantity) {
+        BigDecimal unitPrice = new BigDecimal(price);
+        return new CartItem(id, new Product("SKU-" + id, unitPrice), quantity, unitPrice);
+    }
+
+    // The original CartState.getTotalAmount() implementation
+    private static BigDecimal streamedTotal(CartState cart) {
+        return cart.getItems().stream()
+                .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.model.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Property: undoing k actions restores exactly the cart (order and total) as it
+ * was k actions ago, and redoing them walks forward through the same states,
+ * for any mix of add / addFirst / remove / clear.
+ *
+ * RUN THIS:
+ * mvn test -Dtest=CartUndoRedoPropertyTest
+ */
+class CartUndoRedoPropertyTest {
+
+    private static final int SEQUENCES = 200;
+    private static final int ACTIONS_PER_SEQUENCE = 40;
+    private static final int MAX_HISTORY = 50;
+
+    @Test
+    void undoAndRedoWalkThroughEarlierStates() {
+        for (long seed = 0; seed < SEQUENCES; seed++) {
+            Random random = new Random(seed);
+            CartState cart = new CartState(MAX_HISTORY);
+            List<List<Long>> states = new ArrayList<>();
+            List<BigDecimal> totals = new ArrayList<>();
+            states.add(ids(cart));
+            totals.add(cart.getTotalAmount());
+            long nextId = 1;
+
+            while (states.size() <= ACTIONS_PER_SEQUENCE) {
+                CartCommand command = switch (random.nextInt(8)) {
+                    case 0, 1, 2 -> new CartCommand.AddItem(item(random, nextId++), false);
+                    case 3, 4 -> new CartCommand.AddItem(item(random, nextId++), true);
+                    case 5, 6 -> new CartCommand.RemoveItem(cart.getItems().isEmpty()
+                            ? -1 : ids(cart).get(random.nextInt(cart.getItems().size())));
+                    default -> new CartCommand.ClearCart();
+                };
+                if (cart.apply(command)) {
+                    states.add(ids(cart));
+                    totals.add(cart.getTotalAmount());
+                }
+            }
+
+            for (int back = states.size() - 2; back >= 0; back--) {
+                assertThat(cart.apply(new CartCommand.UndoLast())).as("seed %d", seed).isTrue();
+                assertThat(ids(cart)).as("seed %d, undo to state %d", seed, back).isEqualTo(states.get(back));
+                assertThat(cart.getTotalAmount()).isEqualByComparingTo(totals.get(back));
+            }
+            assertThat(cart.apply(new CartCommand.UndoLast())).isFalse();
+
+            for (int forward = 1; forward < states.size(); forward++) {
+                assertThat(cart.apply(new CartCommand.RedoLast())).as("seed %d", seed).isTrue();
+                assertThat(ids(cart)).as("seed %d, redo to state %d", seed, forward).isEqualTo(states.get(forward));
+                assertThat(cart.getTotalAmount()).isEqualByComparingTo(totals.get(forward));
+            }
+            assertThat(cart.apply(new CartCommand.RedoLast())).isFalse();
+        }
+    }
+
+    @Test
+    void newActionDiscardsRedoAndHistoryIsBounded() {
+        CartState cart = new CartState(3);
+        for (long id = 1; id <= 5; id++) {
+            cart.apply(new CartCommand.AddItem(item(new Random(id), id), false));
+        }
+        assertThat(cart.getActionHistory()).hasSize(3);
+
+        cart.apply(new CartCommand.UndoLast());
+        assertThat(cart.getRedoHistory()).hasSize(1);
+
+        cart.apply(new CartCommand.RemoveItem(1L));
+        assertThat(cart.getRedoHistory()).isEmpty();
+        assertThat(ids(cart)).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void undoingAMergeRestoresTheCartFromTheGuestLinesAlone() {
+        CartState cart = new CartState(MAX_HISTORY);
+        cart.apply(new CartCommand.AddItem(line(1, "A", 1), false));
+        cart.apply(new CartCommand.AddItem(line(2, "B", 2), false));
+        cart.apply(new CartCommand.AddItem(line(3, "C", 1), false));
+        List<Long> idsBefore = ids(cart);
+        BigDecimal totalBefore = cart.getTotalAmount();
+
+        // B twice onto the existing line, D twice into one new line, E once
+        List<CartItem> guest = List.of(line(10, "B", 1), line(11, "D", 2), line(12, "B", 3),
+                line(13, "D", 1), line(14, "E", 1));
+        assertThat(cart.apply(new CartCommand.MergeItems(9L, guest))).isTrue();
+
+        assertThat(ids(cart)).containsExactly(1L, 2L, 3L, 11L, 14L);
+        assertThat(cart.getItems().findById(2L).getQuantity()).isEqualTo(6);
+        assertThat(cart.getItems().findById(11L).getQuantity()).isEqualTo(3);
+        CartAction.Merged merged = (CartAction.Merged) cart.getActionHistory().getLast();
+        assertThat(merged.guestItems()).hasSize(guest.size());
+        assertThat(merged.lineIds()).containsExactly(2L, 11L, 2L, 11L, 14L);
+
+        assertThat(cart.apply(new CartCommand.UndoLast())).isTrue();
+        assertThat(ids(cart)).isEqualTo(idsBefore);
+        assertThat(cart.getItems().findById(2L).getQuantity()).isEqualTo(2);
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo(totalBefore);
+        assertThat(cart.getRedoHistory()).isEmpty();
+    }
+
+    private static List<Long> ids(CartState cart) {
+        return cart.getItems().stream().map(CartItem::getId).toList();
+    }
+
+    private static CartItem line(long id, String product, int quantity) {
+        BigDecimal price = new BigDecimal("2.50");
+        return new CartItem(id, new Product(product, price), quantity, price);
+    }
+
+    private static CartItem item(Random random, long id) {
+        BigDecimal price = BigDecimal.valueOf(random.nextInt(100_000), 2);
+        return new CartItem(id, new Product("Product-" + id, price), 1 + random.nextInt(3), price);
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.model.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.SequencedSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentlyViewedIdsTest {
+
+    @Test
+    void repeatViewsMoveToTheEndAndTheOldestIsEvicted() {
+        RecentlyViewedIds views = new RecentlyViewedIds(3);
+
+        views.addLast(101);
+        views.addLast(102);
+        views.addLast(103);
+        assertThat(views.addLast(101)).isFalse();
+        assertThat(views.addLast(104)).isTrue();
+
+        assertThat(views.toArrayMostRecentFirst()).containsExactly(104, 101, 103);
+        assertThat(views.contains(102)).isFalse();
+        assertThat(views.getFirst()).isEqualTo(103);
+        assertThat(views.getLast()).isEqualTo(104);
+    }
+
+    @Test
+    void behavesLikeABoundedLinkedHashSet() {
+        Random random = new Random(42);
+        for (int capacity : new int[] {1, 2, 5, 20}) {
+            RecentlyViewedIds views = new RecentlyViewedIds(capacity);
+            SequencedSet<Long> model = new LinkedHashSet<>();
+
+            for (int i = 0; i < 20_000; i++) {
+                // Small id range forces repeat views, evictions and probe-run deletes
+                long id = random.nextInt(capacity * 3);
+                views.addLast(id);
+                model.addLast(id);
+                if (model.size() > capacity) {
+                    model.removeFirst();
+                }
+            }
+
+            List<Long> expected = new ArrayList<>(model.reversed());
+            assertThat(views.toArrayMostRecentFirst()).containsExactly(
+                    expected.stream().mapToLong(Long::longValue).toArray());
+            for (long id = 0; id < capacity * 3L; id++) {
+                assertThat(views.contains(id)).isEqualTo(model.contains(id));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.model.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyTest {
+
+    @Test
+    void wholeCentsBecomeLongsAndEverythingElseFallsBack() {
+        assertThat(Money.toCents(new BigDecimal("1500.00"))).isEqualTo(150_000);
+        assertThat(Money.toCents(new BigDecimal("12.5"))).isEqualTo(1_250);
+        assertThat(Money.toCents(new BigDecimal("7"))).isEqualTo(700);
+        assertThat(Money.toCents(new BigDecimal("-0.01"))).isEqualTo(-1);
+        assertThat(Money.toCents(new BigDecimal("9999999999999999"))).isEqualTo(999_999_999_999_999_900L);
+
+        assertThat(Money.toCents(new BigDecimal("0.005"))).isEqualTo(Money.NOT_CENTS);
+        assertThat(Money.toCents(new BigDecimal("10.000"))).isEqualTo(Money.NOT_CENTS);
+        assertThat(Money.toCents(new BigDecimal("1E+3"))).isEqualTo(Money.NOT_CENTS);
+        assertThat(Money.toCents(new BigDecimal("10000000000000000"))).isEqualTo(Money.NOT_CENTS);
+
+        // Thresholds are normalized first: trailing zeros and exponents are fine
+        assertThat(Money.thresholdToCents(new BigDecimal("1E+3"))).isEqualTo(100_000);
+        assertThat(Money.thresholdToCents(new BigDecimal("1000.000"))).isEqualTo(100_000);
+        assertThat(Money.thresholdToCents(new BigDecimal("999.995"))).isEqualTo(Money.NOT_CENTS);
+    }
+}
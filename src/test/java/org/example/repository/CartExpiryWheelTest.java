@@ -0,0 +1,72 @@
+package org.example.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartExpiryWheelTest {
+
+    private static final long TTL = 10;
+
+    // customerId -> last access tick, standing in for the repository
+    private final Map<Long, Long> lastAccess = new HashMap<>();
+    private final List<Long> expired = new ArrayList<>();
+
+    private final CartExpiryWheel wheel = new CartExpiryWheel(Duration.ofSeconds(1), 4, (customerId, token, now) -> {
+        Long accessed = lastAccess.get(customerId);
+        if (accessed == null) {
+            return -1;
+        }
+        if (accessed + TTL > now) {
+            return accessed + TTL;
+        }
+        lastAccess.remove(customerId);
+        expired.add(customerId);
+        return -1;
+    });
+
+    @Test
+    void expiresIdleCartsAfterTtlEvenBeyondOneRevolution() {
+        create(1L);
+        create(2L);
+
+        advance(9);
+        assertThat(expired).isEmpty();
+
+        advance(1);
+        assertThat(expired).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void touchedCartsAreLazilyRescheduled() {
+        create(1L);
+        create(2L);
+
+        advance(7);
+        lastAccess.put(2L, wheel.currentTick());
+        advance(3);
+        assertThat(expired).containsExactly(1L);
+
+        advance(6);
+        assertThat(expired).containsExactly(1L);
+        advance(1);
+        assertThat(expired).containsExactly(1L, 2L);
+    }
+
+    private void create(long customerId) {
+        lastAccess.put(customerId, wheel.currentTick());
+        wheel.schedule(customerId, 0, wheel.currentTick() + TTL);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance();
+        }
+    }
+}
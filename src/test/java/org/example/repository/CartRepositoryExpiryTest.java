@@ -0,0 +1,60 @@
+package org.example.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.Product;
+import org.example.repository.journal.CartJournal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartRepositoryExpiryTest {
+
+    // 10 ticks of 1 second; the wheel is advanced by hand
+    private final CartRepository repository = new CartRepository(10, Duration.ofSeconds(10), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            new ProductCatalog(), new SimpleMeterRegistry());
+    private final CartExpiryWheel wheel = repository.expiryWheel();
+    private long nextItemId = 1;
+
+    @Test
+    void recreatedCartKeepsOneDeadline() {
+        // Merged away and recreated three times: each cart left a deadline behind
+        for (int i = 0; i < 3; i++) {
+            add(1L);
+            repository.detach(1L);
+        }
+        add(1L);
+        assertThat(wheel.pendingDeadlines()).isEqualTo(4);
+
+        advance(5);
+        repository.snapshot(1L); // keeps the live cart from expiring at tick 10
+        advance(5);
+
+        // The stale deadlines were dropped, the live cart's one rescheduled
+        assertThat(wheel.pendingDeadlines()).isEqualTo(1);
+        assertThat(repository.snapshot(1L).items()).hasSize(1); // last access: tick 10
+
+        advance(10);
+        assertThat(repository.snapshot(1L)).isSameAs(CartSnapshot.EMPTY);
+        assertThat(wheel.pendingDeadlines()).isZero();
+    }
+
+    private void add(long customerId) {
+        Product product = new Product("Mouse", new BigDecimal("19.50"));
+        repository.mutate(customerId, cartState -> cartState.apply(
+                new CartCommand.AddItem(new CartItem(nextItemId++, product, 1, product.price()), false)));
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.repository;
+
+import org.example.model.cart.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCatalogTest {
+
+    private final ProductCatalog catalog = new ProductCatalog();
+
+    @Test
+    void returnsOneCanonicalInstancePerNameAndPrice() {
+        Product first = catalog.intern(new String("iPhone 15"), new BigDecimal("999.99"));
+        Product second = catalog.intern(new String("iPhone 15"), new BigDecimal("999.99"));
+        Product other = catalog.intern("iPhone 15", new BigDecimal("899.99"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        assertThat(catalog.size()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotKeepUnreferencedProductsAlive() throws InterruptedException {
+        for (int i = 0; i < 1_000; i++) {
+            catalog.intern("Product " + i, BigDecimal.valueOf(i));
+        }
+
+        // Nothing references the products any more; entries are purged on later calls
+        for (int attempt = 0; attempt < 50 && catalog.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+            catalog.intern("trigger", BigDecimal.ONE);
+        }
+
+        assertThat(catalog.size()).isLessThan(1_000);
+    }
+}
@@ -0,0 +1,249 @@
+package org.example.repository.journal;
+
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartState;
+import org.example.model.cart.Product;
+import org.example.repository.ProductCatalog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    private final ProductCatalog products = new ProductCatalog();
+    private long nextItemId = 1;
+
+    @Test
+    void recoversCartsFromSnapshotPlusJournalTail() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+
+        apply(journal, 1L, new CartCommand.AddItem(item("Laptop", "999.99"), false));
+        apply(journal, 1L, new CartCommand.AddItem(item("Mouse", "19.50"), true));
+        apply(journal, 2L, new CartCommand.AddItem(item("Desk", "250.00"), false));
+        journal.snapshot(this::forEachCart);
+
+        // Changes after the snapshot live only in the journal
+        apply(journal, 1L, new CartCommand.UndoLast());
+        apply(journal, 2L, new CartCommand.ClearCart());
+        apply(journal, 3L, new CartCommand.AddItem(item("Chair", "120.00"), false));
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        CartJournal.RecoveryResult result = reopened.recover(recovered, id -> new CartState(), products);
+        reopened.close();
+
+        assertThat(result.cartsFromSnapshot()).isEqualTo(2);
+        assertThat(result.entriesReplayed()).isEqualTo(3);
+        // The Mouse lives on only in cart 1's redo log, the Desk in cart 2's undo log
+        assertThat(result.highestItemId()).isEqualTo(4);
+        assertThat(names(recovered.get(1L))).containsExactly("Laptop");
+        assertThat(recovered.get(2L).getItems()).isEmpty();
+        assertThat(names(recovered.get(3L))).containsExactly("Chair");
+        assertThat(recovered.get(1L).getTotalAmount()).isEqualByComparingTo("999.99");
+        assertThat(recovered.get(1L).getNewestItem().name()).isEqualTo("Laptop");
+    }
+
+    @Test
+    void snapshotKeepsUndoAndRedoLogs() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+        apply(journal, 1L, new CartCommand.AddItem(item("Laptop", "999.99"), false));
+        apply(journal, 1L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 1L, new CartCommand.ClearCart());
+        apply(journal, 1L, new CartCommand.UndoLast());
+        apply(journal, 1L, new CartCommand.RemoveItem(1L));
+        apply(journal, 1L, new CartCommand.UndoLast());
+        journal.snapshot(this::forEachCart);
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+        CartState cart = recovered.get(1L);
+        assertThat(names(cart)).containsExactly("Laptop", "Mouse");
+
+        apply(reopened, recovered, 1L, new CartCommand.RedoLast());
+        assertThat(names(cart)).containsExactly("Mouse");
+        apply(reopened, recovered, 1L, new CartCommand.UndoLast()); // the removal
+        apply(reopened, recovered, 1L, new CartCommand.UndoLast()); // adding the mouse
+        assertThat(names(cart)).containsExactly("Laptop");
+        reopened.close();
+    }
+
+    @Test
+    void mergeIsRecoveredAndReleasesTheSourceCart() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+        apply(journal, 1L, new CartCommand.AddItem(item("Laptop", "999.99"), false));
+        apply(journal, 1L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Cable", "5.00"), false));
+        journal.snapshot(this::forEachCart);
+
+        // What CartService.mergeCarts() does: detach the guest, merge into the account
+        List<CartItem> guestItems = List.copyOf(carts.remove(9L).getItems());
+        apply(journal, 1L, new CartCommand.MergeItems(9L, guestItems));
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+
+        assertThat(recovered).doesNotContainKey(9L);
+        CartState cart = recovered.get(1L);
+        assertThat(names(cart)).containsExactly("Laptop", "Mouse", "Cable");
+        assertThat(cart.getItems().findById(2L).getQuantity()).isEqualTo(2);
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo("1043.99");
+
+        apply(reopened, recovered, 1L, new CartCommand.UndoLast());
+        assertThat(names(cart)).containsExactly("Laptop", "Mouse");
+        assertThat(cart.getItems().findById(2L).getQuantity()).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    void mergeInASnapshotUndoLogCanStillBeUndone() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+        apply(journal, 1L, new CartCommand.AddItem(item("Laptop", "999.99"), false));
+        apply(journal, 1L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Cable", "5.00"), false));
+        CartState guest = carts.remove(9L);
+        apply(journal, 1L, new CartCommand.MergeItems(9L, List.copyOf(guest.getItems()),
+                List.copyOf(guest.getActionHistory())));
+        journal.snapshot(this::forEachCart);
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+
+        CartState cart = recovered.get(1L);
+        CartAction.Merged merged = (CartAction.Merged) cart.getActionHistory().getLast();
+        assertThat(merged.lineIds()).containsExactly(2L, 4L);
+        assertThat(merged.guestHistory()).hasSize(2);
+
+        apply(reopened, recovered, 1L, new CartCommand.UndoLast());
+        assertThat(names(cart)).containsExactly("Laptop", "Mouse");
+        assertThat(cart.getItems().findById(2L).getQuantity()).isEqualTo(1);
+        assertThat(cart.getTotalAmount()).isEqualByComparingTo("1019.49");
+        reopened.close();
+    }
+
+    @Test
+    void undoingARecoveredMergeGivesTheGuestItsLinesAndHistoryBack() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+        apply(journal, 1L, new CartCommand.AddItem(item("Laptop", "999.99"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Mouse", "19.50"), false));
+        apply(journal, 9L, new CartCommand.AddItem(item("Cable", "5.00"), false));
+
+        CartState guest = carts.remove(9L);
+        apply(journal, 1L, new CartCommand.MergeItems(9L, List.copyOf(guest.getItems()),
+                List.copyOf(guest.getActionHistory())));
+        apply(journal, 1L, new CartCommand.UndoLast());
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+        reopened.close();
+
+        assertThat(names(recovered.get(1L))).containsExactly("Laptop");
+        CartState restored = recovered.get(9L);
+        assertThat(names(restored)).containsExactly("Mouse", "Cable");
+        assertThat(restored.getActionHistory()).hasSize(2);
+    }
+
+    @Test
+    void snapshotKeepsProductNamesLongerThan64KB() throws Exception {
+        String longName = "Ü".repeat(40_000); // 80,000 bytes of UTF-8
+        CartJournal journal = new CartJournal(directory, 1 << 20, Duration.ofMillis(10), Duration.ofHours(1));
+        journal.recover(carts, id -> new CartState(), products);
+        apply(journal, 1L, new CartCommand.AddItem(item(longName, "1.00"), false));
+        journal.snapshot(this::forEachCart);
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+        reopened.close();
+
+        assertThat(names(recovered.get(1L))).containsExactly(longName);
+    }
+
+    @Test
+    void rollsSegmentsAndKeepsAppendingAfterRecovery() throws Exception {
+        CartJournal journal = open();
+        journal.recover(carts, id -> new CartState(), products);
+        for (int i = 0; i < 500; i++) {
+            apply(journal, (long) (i % 7), new CartCommand.AddItem(item("Item-" + i, "1.25"), false));
+        }
+        journal.close();
+
+        Map<Long, CartState> recovered = new ConcurrentHashMap<>();
+        CartJournal reopened = open();
+        reopened.recover(recovered, id -> new CartState(), products);
+        apply(reopened, recovered, 0L, new CartCommand.RemoveItem(recovered.get(0L).getItems().getFirst().getId()));
+        reopened.close();
+
+        Map<Long, CartState> again = new ConcurrentHashMap<>();
+        CartJournal third = open();
+        CartJournal.RecoveryResult result = third.recover(again, id -> new CartState(), products);
+        third.close();
+
+        assertThat(result.lastSequence()).isEqualTo(501);
+        int total = again.values().stream().mapToInt(cart -> cart.getItems().size()).sum();
+        assertThat(total).isEqualTo(499);
+    }
+
+    private CartJournal open() {
+        // Tiny segments so the tests exercise rolling
+        return new CartJournal(directory, 4096, Duration.ofMillis(10), Duration.ofHours(1));
+    }
+
+    private void apply(CartJournal journal, Long customerId, CartCommand command) {
+        apply(journal, carts, customerId, command);
+    }
+
+    private static void apply(CartJournal journal, Map<Long, CartState> carts, Long customerId, CartCommand command) {
+        carts.compute(customerId, (id, cartState) -> {
+            CartState target = cartState != null ? cartState : new CartState();
+            target.apply(command);
+            journal.append(id, target, target.drainPendingCommands());
+            return target;
+        });
+        journal.writePending();
+    }
+
+    private void forEachCart(BiConsumer<Long, CartState> visitor) {
+        carts.forEach(visitor);
+    }
+
+    private CartItem item(String name, String price) {
+        BigDecimal amount = new BigDecimal(price);
+        return new CartItem(nextItemId++, new Product(name, amount), 1, amount);
+    }
+
+    private static List<String> names(CartState cartState) {
+        return cartState.getItems().stream().map(item -> item.getProduct().name()).toList();
+    }
+}
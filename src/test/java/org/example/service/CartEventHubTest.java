@@ -0,0 +1,176 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dto.cart.CartItemRequest;
+import org.example.model.cart.CartSnapshot;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartEventHubTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final ProductCatalog catalog = new ProductCatalog();
+    private final CartRepository repository = new CartRepository(10, Duration.ofMinutes(30), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            catalog, new SimpleMeterRegistry());
+    private final CartEngine engine = new SyncCartEngine(repository);
+    private final AtomicLong ids = new AtomicLong();
+    private final CartService service = new CartService(engine, ids::incrementAndGet, catalog);
+    private CartEventHub hub = hub(256);
+
+    @AfterEach
+    void shutdown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void firstEventIsTheCurrentCartThenChangesArePushed() throws Exception {
+        service.addItem(1L, item("Laptop", "999.99"));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        hub.subscribe(1L, emitter);
+
+        JsonNode initial = emitter.awaitEvent(0);
+        assertThat(initial.get("itemCount").asInt()).isEqualTo(1);
+        assertThat(initial.get("changes").get(0).get("type").asText()).isEqualTo("ITEMS_REPLACED");
+        assertThat(initial.get("changes").get(0).get("items").get(0).get("product").get("name").asText())
+                .isEqualTo("Laptop");
+
+        service.addItem(1L, item("Mouse", "19.50"));
+
+        JsonNode change = emitter.awaitEvent(1);
+        assertThat(change.get("version").asLong()).isGreaterThan(initial.get("version").asLong());
+        assertThat(change.get("changes").get(0).get("type").asText()).isEqualTo("ITEM_ADDED");
+        assertThat(change.get("itemCount").asInt()).isEqualTo(2);
+        assertThat(change.get("totalAmount").decimalValue()).isEqualByComparingTo("1019.49");
+    }
+
+    @Test
+    void subscribingDoesNotCreateACart() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        hub.subscribe(5L, emitter);
+
+        assertThat(emitter.awaitEvent(0).get("itemCount").asInt()).isZero();
+        assertThat(repository.snapshot(5L)).isSameAs(CartSnapshot.EMPTY);
+    }
+
+    @Test
+    void mergedAwayCartIsPushedAsEmpty() throws Exception {
+        service.addItem(9L, item("Mouse", "19.50"));
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.subscribe(9L, emitter);
+        emitter.awaitEvent(0);
+
+        service.mergeCarts(9L, 1L);
+
+        JsonNode removed = emitter.awaitEvent(1);
+        assertThat(removed.get("itemCount").asInt()).isZero();
+        assertThat(removed.get("changes").get(0).get("items")).isEmpty();
+    }
+
+    @Test
+    void laggingSubscriberIsClosedFromASenderThread() throws Exception {
+        hub.shutdown();
+        hub = hub(2);
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.blockSends();
+        hub.subscribe(1L, emitter);
+
+        // The initial event is stuck in send(); the next changes pile up behind it
+        for (int i = 0; i < 5; i++) {
+            service.addItem(1L, item("Item " + i, "1.00"));
+        }
+
+        assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(emitter.completedBy).isNotSameAs(Thread.currentThread());
+        assertThat(hub.isWatched(1L)).isFalse();
+        // The cart itself is unaffected
+        assertThat(repository.snapshot(1L).items()).hasSize(5);
+        emitter.unblockSends();
+    }
+
+    private CartEventHub hub(int streamBuffer) {
+        return new CartEventHub(repository, engine, Duration.ofMinutes(30), streamBuffer,
+                objectMapper, new SimpleMeterRegistry());
+    }
+
+    private static CartItemRequest item(String name, String price) {
+        CartItemRequest request = new CartItemRequest();
+        request.setProductName(name);
+        request.setPrice(new BigDecimal(price));
+        request.setQuantity(1);
+        return request;
+    }
+
+    /**
+     * Records the JSON of every event sent instead of writing to a response
+     */
+    private final class RecordingEmitter extends SseEmitter {
+        final List<JsonNode> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Thread completedBy;
+        private volatile CountDownLatch sendGate = new CountDownLatch(0);
+
+        void blockSends() {
+            sendGate = new CountDownLatch(1);
+        }
+
+        void unblockSends() {
+            sendGate.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                sendGate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof String text && text.startsWith("{")) {
+                    events.add(objectMapper.readTree(text));
+                }
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completedBy = Thread.currentThread();
+            completed.countDown();
+        }
+
+        JsonNode awaitEvent(int index) throws InterruptedException {
+            awaitUntil(() -> events.size() > index);
+            return events.get(index);
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
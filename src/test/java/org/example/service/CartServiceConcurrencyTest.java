@@ -0,0 +1,93 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dto.cart.CartItemRequest;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads adding to the same customer's cart through CartService and
+ * CartRepository.mutate() - no add may be lost or applied twice.
+ */
+class CartServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 500;
+
+    private final ProductCatalog catalog = new ProductCatalog();
+    private final CartRepository repository = new CartRepository(10, Duration.ofMinutes(30), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            catalog, new SimpleMeterRegistry());
+    private final AtomicLong ids = new AtomicLong();
+    private final CartService service = new CartService(new SyncCartEngine(repository), ids::incrementAndGet, catalog);
+
+    @Test
+    void concurrentAddsToOneCartAreNeverLost() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>(THREADS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                boolean priority = t % 2 == 0;
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        if (priority) {
+                            service.addPriorityItem(42L, item("Mouse", "19.99", 2));
+                        } else {
+                            service.addItem(42L, item("Cable", "5.01", 3));
+                        }
+                        // Readers run alongside the writers
+                        service.getCartState(42L);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int perProduct = THREADS / 2 * ADDS_PER_THREAD;
+        CartSnapshot cart = service.getCartState(42L);
+        assertThat(cart.items()).hasSize(THREADS * ADDS_PER_THREAD);
+        assertThat(cart.items().stream().map(CartItem::getId).distinct().count())
+                .isEqualTo(THREADS * ADDS_PER_THREAD);
+        assertThat(cart.items().stream().mapToInt(CartItem::getQuantity).sum())
+                .isEqualTo(perProduct * 2 + perProduct * 3);
+        // 4 x 500 x (2 x 19.99 + 3 x 5.01)
+        assertThat(cart.totalAmount()).isEqualByComparingTo(
+                new BigDecimal("19.99").multiply(BigDecimal.valueOf(2L * perProduct))
+                        .add(new BigDecimal("5.01").multiply(BigDecimal.valueOf(3L * perProduct))));
+        assertThat(cart.version()).isEqualTo(THREADS * ADDS_PER_THREAD);
+    }
+
+    private static CartItemRequest item(String name, String price, int quantity) {
+        CartItemRequest request = new CartItemRequest();
+        request.setProductName(name);
+        request.setPrice(new BigDecimal(price));
+        request.setQuantity(quantity);
+        return request;
+    }
+}
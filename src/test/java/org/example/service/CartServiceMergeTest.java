@@ -0,0 +1,91 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dto.cart.CartItemRequest;
+import org.example.model.cart.CartAction;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.CartSnapshot;
+import org.example.model.cart.Product;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartServiceMergeTest {
+
+    private static final Long ACCOUNT = 1L;
+    private static final Long GUEST = 9L;
+
+    private final ProductCatalog catalog = new ProductCatalog();
+    private final CartRepository repository = new CartRepository(10, Duration.ofMinutes(30), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            catalog, new SimpleMeterRegistry());
+    private final CartEngine engine = new SyncCartEngine(repository);
+    private final AtomicLong ids = new AtomicLong();
+    private final CartService service = new CartService(engine, ids::incrementAndGet, catalog);
+
+    @Test
+    void failedMergeLeavesTheGuestCartInPlace() {
+        // A summed quantity that overflows an int makes the merge throw
+        Product mouse = catalog.intern("Mouse", new BigDecimal("19.50"));
+        engine.execute(ACCOUNT, cartState -> cartState.apply(new CartCommand.AddItem(
+                new CartItem(ids.incrementAndGet(), mouse, Integer.MAX_VALUE, mouse.price()), false)));
+        service.addItem(GUEST, request("Mouse", "19.50"));
+        service.addItem(GUEST, request("Cable", "5.00"));
+
+        assertThatThrownBy(() -> service.mergeCarts(GUEST, ACCOUNT)).isInstanceOf(ArithmeticException.class);
+
+        CartSnapshot guest = service.getCartState(GUEST);
+        assertThat(names(guest)).containsExactly("Mouse", "Cable");
+        assertThat(guest.actionHistory()).hasSize(2);
+        CartSnapshot account = service.getCartState(ACCOUNT);
+        assertThat(account.items()).hasSize(1);
+        assertThat(account.actionHistory()).hasSize(1);
+    }
+
+    @Test
+    void undoingAMergeGivesTheGuestItsLinesAndHistoryBack() {
+        service.addItem(ACCOUNT, request("Laptop", "999.99"));
+        service.addItem(GUEST, request("Mouse", "19.50"));
+        service.addItem(GUEST, request("Cable", "5.00"));
+
+        service.mergeCarts(GUEST, ACCOUNT);
+        assertThat(names(service.getCartState(ACCOUNT))).containsExactly("Laptop", "Mouse", "Cable");
+        assertThat(service.getCartState(GUEST).items()).isEmpty();
+
+        service.undoLastAction(ACCOUNT);
+
+        CartSnapshot account = service.getCartState(ACCOUNT);
+        assertThat(names(account)).containsExactly("Laptop");
+        assertThat(account.redoHistory()).isEmpty();
+        CartSnapshot guest = service.getCartState(GUEST);
+        assertThat(names(guest)).containsExactly("Mouse", "Cable");
+        assertThat(guest.actionHistory()).hasSize(2).allMatch(CartAction.Added.class::isInstance);
+
+        // The guest's own history still works after it came back
+        service.undoLastAction(GUEST);
+        assertThat(names(service.getCartState(GUEST))).containsExactly("Mouse");
+    }
+
+    private static CartItemRequest request(String name, String price) {
+        CartItemRequest request = new CartItemRequest();
+        request.setProductName(name);
+        request.setPrice(new BigDecimal(price));
+        request.setQuantity(1);
+        return request;
+    }
+
+    private static List<String> names(CartSnapshot snapshot) {
+        return snapshot.items().stream().map(item -> item.getProduct().name()).toList();
+    }
+}
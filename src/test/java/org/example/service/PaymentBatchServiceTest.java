@@ -0,0 +1,120 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.velocity.PaymentVelocityEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PaymentBatchServiceTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final PaymentBatchService batchService = new PaymentBatchService(
+            new PaymentService(new PaymentRouter(new DefaultResourceLoader(), objectMapper,
+                    "classpath:payment-routes.json"),
+                    new TransactionIdGenerator(new SnowflakeIdGenerator(0)),
+                    new StaticListableBeanFactory().getBeanProvider(PaymentVelocityEngine.class), "off", 1),
+            objectMapper, 4, "isolate");
+
+    @AfterEach
+    void shutdown() {
+        batchService.shutdown();
+    }
+
+    @Test
+    void resultsComeBackInInputOrderWithFailuresIsolated() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String method = i % 50 == 7 ? "cash" : List.of("credit", "paypal", "bank").get(i % 3);
+            ndjson.append(payment(method, 1 + i * 20)).append('\n');
+        }
+        ndjson.append("{\"paymentMethod\": \"credit\", \"amount\": \"lots\"}\n");
+
+        List<JsonNode> lines = run(ndjson.toString(), null);
+
+        assertThat(lines).hasSize(502);
+        for (int i = 0; i < 501; i++) {
+            assertThat(lines.get(i).get("index").asLong()).isEqualTo(i);
+            boolean shouldFail = i == 500 || i % 50 == 7;
+            assertThat(lines.get(i).has("error")).as("item %d", i).isEqualTo(shouldFail);
+        }
+        assertThat(lines.get(1).get("response").get("paymentMethod").asText()).isEqualTo("PayPal");
+        JsonNode summary = lines.getLast().get("summary");
+        assertThat(summary.get("received").asLong()).isEqualTo(501);
+        assertThat(summary.get("failed").asLong()).isEqualTo(11);
+        assertThat(summary.get("aborted").asBoolean()).isFalse();
+    }
+
+    @Test
+    void jsonArrayInputAndFailFastStopReading() throws Exception {
+        List<String> payments = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            payments.add(payment(i == 10 ? "cash" : "credit", 50));
+        }
+
+        List<JsonNode> lines = run("[" + String.join(",", payments) + "]", PaymentBatchService.FailureMode.FAIL_FAST);
+
+        JsonNode summary = lines.getLast().get("summary");
+        assertThat(summary.get("aborted").asBoolean()).isTrue();
+        assertThat(summary.get("failed").asLong()).isEqualTo(1);
+        // Only items already inside the window (4) when item 10 failed can follow it
+        assertThat(summary.get("received").asLong()).isLessThanOrEqualTo(10 + 1 + 4);
+        assertThat(lines.get(10).get("error").asText()).contains("cash");
+    }
+
+    @Test
+    void writerFailureEndsTheBatchInsteadOfBlockingTheParser() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            ndjson.append(payment("credit", 50)).append('\n');
+        }
+        // Not an IOException, so it is not handled as a disconnect - it kills the writer
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("broken response stream");
+            }
+        };
+
+        // Window is 4: without the writer freeing it the parser would wait forever
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThatThrownBy(() -> batchService.processBatch(
+                        new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)),
+                        broken, null, null))
+                        .isInstanceOf(IOException.class)
+                        .hasMessage("Batch writer failed")
+                        .hasRootCauseMessage("broken response stream"));
+    }
+
+    private List<JsonNode> run(String input, PaymentBatchService.FailureMode mode) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchService.processBatch(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out, null, mode);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static String payment(String method, int amount) {
+        return "{\"paymentMethod\": \"" + method + "\", \"amount\": " + amount
+                + ", \"customerId\": 1, \"customerType\": \"BASIC\", \"international\": false}";
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dto.payment.PaymentResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentIdempotencyCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final PaymentIdempotencyCache cache =
+            new PaymentIdempotencyCache(3, Duration.ofMinutes(10), registry, clock::get);
+    private final AtomicInteger processed = new AtomicInteger();
+
+    @Test
+    void concurrentDuplicatesRunThePaymentOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        int duplicates = 16;
+        List<Future<PaymentIdempotencyCache.Result>> results = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < duplicates; i++) {
+                results.add(pool.submit(() -> cache.execute(1L, "key-1", "credit|50", () -> {
+                    await(release);
+                    return payment();
+                })));
+            }
+            // Let every duplicate reach the cache before the payment finishes
+            while (count("coalesced") + count("miss") < duplicates) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            String transactionId = null;
+            for (Future<PaymentIdempotencyCache.Result> result : results) {
+                String id = result.get().response().getTransactionId();
+                assertThat(transactionId == null || transactionId.equals(id)).isTrue();
+                transactionId = id;
+            }
+        }
+        assertThat(processed).hasValue(1);
+        assertThat(count("miss")).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(duplicates - 1);
+
+        PaymentIdempotencyCache.Result retry = cache.execute(1L, "key-1", "credit|50", this::payment);
+        assertThat(retry.outcome()).isEqualTo(PaymentIdempotencyCache.Outcome.HIT);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void entriesExpireAreBoundedAndKeysAreScopedToTheirPayment() {
+        cache.execute(1L, "a", "credit|50", this::payment);
+        // Same key for another customer is another payment
+        assertThat(cache.execute(2L, "a", "credit|50", this::payment).outcome())
+                .isEqualTo(PaymentIdempotencyCache.Outcome.MISS);
+        assertThatThrownBy(() -> cache.execute(1L, "a", "credit|99", this::payment))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // A failed payment is not remembered
+        assertThatThrownBy(() -> cache.execute(1L, "b", "paypal|5", () -> {
+            throw new IllegalStateException("declined");
+        })).hasMessage("declined");
+        assertThat(cache.execute(1L, "b", "paypal|5", this::payment).outcome())
+                .isEqualTo(PaymentIdempotencyCache.Outcome.MISS);
+
+        // Over max-entries (3): the oldest key goes first
+        cache.execute(1L, "c", "bank|7", this::payment);
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.execute(1L, "a", "credit|50", this::payment).outcome())
+                .isEqualTo(PaymentIdempotencyCache.Outcome.MISS);
+
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThat(cache.execute(1L, "c", "bank|7", this::payment).outcome())
+                .isEqualTo(PaymentIdempotencyCache.Outcome.MISS);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void inFlightEntriesSurviveEvictionPastMaxEntries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        int inFlight = 4;
+        int completed = 50;
+        List<Future<PaymentIdempotencyCache.Result>> firsts = new ArrayList<>();
+        List<Future<PaymentIdempotencyCache.Result>> retries = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < inFlight; i++) {
+                String key = "in-flight-" + i;
+                firsts.add(pool.submit(() -> cache.execute(1L, key, "credit|50", () -> {
+                    await(release);
+                    return payment();
+                })));
+            }
+            while (count("miss") < inFlight) {
+                Thread.sleep(1);
+            }
+
+            // Fill the cache (max-entries = 3) well past its bound from many threads
+            List<Future<PaymentIdempotencyCache.Result>> fillers = new ArrayList<>();
+            for (int i = 0; i < completed; i++) {
+                String key = "done-" + i;
+                fillers.add(pool.submit(() -> cache.execute(2L, key, "paypal|5", this::payment)));
+            }
+            for (Future<PaymentIdempotencyCache.Result> filler : fillers) {
+                filler.get();
+            }
+
+            // Retries of the in-flight payments must still find them
+            for (int i = 0; i < inFlight; i++) {
+                String key = "in-flight-" + i;
+                retries.add(pool.submit(() -> cache.execute(1L, key, "credit|50", this::payment)));
+            }
+            while (count("coalesced") < inFlight) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (int i = 0; i < inFlight; i++) {
+                PaymentIdempotencyCache.Result retry = retries.get(i).get();
+                assertThat(retry.outcome()).isEqualTo(PaymentIdempotencyCache.Outcome.COALESCED);
+                assertThat(retry.response().getTransactionId())
+                        .isEqualTo(firsts.get(i).get().response().getTransactionId());
+            }
+        }
+        assertThat(processed).hasValue(inFlight + completed);
+        assertThat(count("miss")).isEqualTo(inFlight + completed);
+
+        // Once done they are ordinary entries again and the bound applies
+        cache.execute(3L, "after", "bank|7", this::payment);
+        assertThat(cache.size()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void failedAndReplacedKeysDoNotGrowTheQueue() {
+        for (int i = 0; i < 500; i++) {
+            String key = "failing-" + i;
+            assertThatThrownBy(() -> cache.execute(1L, key, "credit|50", () -> {
+                throw new IllegalStateException("declined");
+            })).hasMessage("declined");
+            // Retried with the same key, failing again
+            assertThatThrownBy(() -> cache.execute(1L, key, "credit|50", () -> {
+                throw new IllegalStateException("declined");
+            })).hasMessage("declined");
+        }
+        assertThat(cache.queued()).isZero();
+
+        // Expired keys replaced by a new payment under the same key
+        for (int i = 0; i < 500; i++) {
+            cache.execute(2L, "key-" + (i % 2), "paypal|5", this::payment);
+            clock.addAndGet(Duration.ofMinutes(10).toNanos());
+            assertThat(cache.queued()).as("round %d", i).isLessThanOrEqualTo(3);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(3);
+    }
+
+    private PaymentResponse payment() {
+        PaymentResponse response = new PaymentResponse();
+        response.setTransactionId(TransactionIdGenerator.format(processed.incrementAndGet()));
+        return response;
+    }
+
+    private double count(String result) {
+        return registry.get("payment.idempotency.requests").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.dto.payment.PaymentResponse;
+import org.example.model.payment.CreditCard;
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.TracingLevel;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.velocity.PaymentVelocityEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentProcessedEventTest {
+
+    @TempDir
+    Path directory;
+
+    private final PaymentService service = new PaymentService(
+            new PaymentRouter(new DefaultResourceLoader(), new ObjectMapper(), "classpath:payment-routes.json"),
+            new TransactionIdGenerator(new SnowflakeIdGenerator(0)),
+            new StaticListableBeanFactory().getBeanProvider(PaymentVelocityEngine.class), "off", 100);
+
+    @Test
+    void processedPaymentCommitsOneEventWithItsOutcome() throws Exception {
+        // Not recorded: no recording is running yet
+        service.processPayment(new CreditCard("4532", "Visa", "123", "12/25", new BigDecimal("10.00"), 1L),
+                CustomerType.BASIC, false);
+
+        PaymentResponse response;
+        Path file = directory.resolve("payments.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PaymentProcessedEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            response = service.processPayment(
+                    new CreditCard("4532", "Visa", "123", "12/25", new BigDecimal("1500.00"), 1L),
+                    CustomerType.VIP, true, TracingLevel.OFF);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("org.example.PaymentProcessed"))
+                .toList();
+        assertThat(events).hasSize(1);
+        RecordedEvent event = events.getFirst();
+        assertThat(event.getString("paymentType")).isEqualTo("CreditCard");
+        assertThat(event.getString("customerType")).isEqualTo("VIP");
+        assertThat(event.getBoolean("international")).isTrue();
+        assertThat(event.getDouble("amount")).isEqualTo(1500.0);
+        assertThat(event.getString("amountBand")).isNotBlank();
+        assertThat(event.getInt("caseNumber")).isPositive();
+        assertThat(event.getInt("guardsFailed")).isEqualTo(event.getInt("caseNumber") - 1);
+        assertThat(event.getString("status")).isEqualTo(response.getStatus().name());
+        assertThat(event.getBoolean("requiresVerification")).isEqualTo(response.isRequiresAdditionalVerification());
+        assertThat(event.getString("tracing")).isEqualTo("OFF");
+        assertThat(event.getDuration().isNegative()).isFalse();
+    }
+}
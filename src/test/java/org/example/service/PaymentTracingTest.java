@@ -0,0 +1,62 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.dto.payment.PatternMatchingStep;
+import org.example.dto.payment.PaymentResponse;
+import org.example.model.payment.BankTransfer;
+import org.example.model.payment.CreditCard;
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.PayPal;
+import org.example.model.payment.Payment;
+import org.example.model.payment.TracingLevel;
+import org.example.service.routing.PaymentRouter;
+import org.example.service.velocity.PaymentVelocityEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentTracingTest {
+
+    private static final List<Payment> PAYMENTS = List.of(
+            new CreditCard("4532", "Visa", "123", "12/25", new BigDecimal("1500.00"), 1L),
+            new CreditCard("4532", "Visa", "123", "12/25", new BigDecimal("99.99"), 1L),
+            new PayPal("demo@example.com", "PP-1", new BigDecimal("250.00"), 2L),
+            new BankTransfer("1", "2", "Demo Bank", new BigDecimal("7500.00"), 3L),
+            new BankTransfer("1", "2", "Demo Bank", new BigDecimal("10.00"), 3L));
+
+    @Test
+    void sampledTracesMatchFullTracesAndOffRecordsNothing() {
+        // Sample rate 1: every SAMPLED payment is traced
+        PaymentRouter router = new PaymentRouter(new DefaultResourceLoader(), new ObjectMapper(),
+                "classpath:payment-routes.json");
+        PaymentService service = new PaymentService(router, new TransactionIdGenerator(new SnowflakeIdGenerator(0)),
+                new StaticListableBeanFactory().getBeanProvider(PaymentVelocityEngine.class), "full", 1);
+
+        for (Payment payment : PAYMENTS) {
+            for (boolean international : new boolean[] {false, true}) {
+                PaymentResponse full = service.processPayment(payment, CustomerType.VIP, international, TracingLevel.FULL);
+                PaymentResponse sampled = service.processPayment(payment, CustomerType.VIP, international, TracingLevel.SAMPLED);
+                PaymentResponse off = service.processPayment(payment, CustomerType.VIP, international, TracingLevel.OFF);
+
+                assertThat(full.getPatternMatchingSteps()).isNotEmpty();
+                assertThat(describe(sampled.getPatternMatchingSteps()))
+                        .isEqualTo(describe(full.getPatternMatchingSteps()));
+                assertThat(off.getPatternMatchingSteps()).isEmpty();
+                assertThat(off.getStatus()).isEqualTo(full.getStatus());
+            }
+        }
+    }
+
+    private static List<String> describe(List<PatternMatchingStep> steps) {
+        return steps.stream()
+                .map(step -> step.getNumber() + " " + step.getType() + " " + step.isPassed() + " "
+                        + step.getMessage() + " " + step.getGuardExpression() + " "
+                        + step.getConditions().stream().map(c -> c.getName() + "=" + c.getResult()).toList())
+                .toList();
+    }
+}
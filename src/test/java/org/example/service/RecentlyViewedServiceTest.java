@@ -0,0 +1,47 @@
+package org.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentlyViewedServiceTest {
+
+    private final RecentlyViewedService service =
+            new RecentlyViewedService(3, Duration.ofMillis(50), Duration.ofMillis(10));
+
+    @AfterEach
+    void shutdown() {
+        service.stopExpiry();
+    }
+
+    @Test
+    void repeatViewsMoveToTheFrontAndTheOldestIsEvicted() {
+        service.recordView(1L, 10);
+        service.recordView(1L, 20);
+        service.recordView(1L, 30);
+        service.recordView(1L, 10);
+
+        assertThat(service.recordView(1L, 40)).containsExactly(40, 10, 30);
+        assertThat(service.getRecentlyViewed(2L)).isEmpty();
+    }
+
+    @Test
+    void idleCustomersAreForgotten() throws Exception {
+        service.startExpiry();
+        for (long customerId = 1; customerId <= 100; customerId++) {
+            service.recordView(customerId, 7);
+        }
+        assertThat(service.trackedCustomers()).isEqualTo(100);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (service.trackedCustomers() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(service.trackedCustomers()).isZero();
+        assertThat(service.getRecentlyViewed(1L)).isEmpty();
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.model.cart.CartCommand;
+import org.example.model.cart.CartItem;
+import org.example.model.cart.Product;
+import org.example.repository.CartRepository;
+import org.example.repository.ProductCatalog;
+import org.example.repository.journal.CartJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedCartEngineTest {
+
+    private final CartRepository repository = new CartRepository(10, Duration.ofMinutes(30), Duration.ofSeconds(1),
+            new StaticListableBeanFactory().getBeanProvider(CartJournal.class),
+            new ProductCatalog(), new SimpleMeterRegistry());
+    private final ShardedCartEngine engine = new ShardedCartEngine(repository, 4, 16);
+
+    @AfterEach
+    void close() {
+        engine.close();
+    }
+
+    @Test
+    void concurrentCommandsForOneCustomerAreNeverLost() throws Exception {
+        AtomicLong ids = new AtomicLong();
+        Product product = new Product("Mouse", new BigDecimal("19.99"));
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2_000; i++) {
+                callers.submit(() -> engine.execute(42L, cartState -> cartState.apply(new CartCommand.AddItem(
+                        new CartItem(ids.incrementAndGet(), product, 1, product.price()), false))));
+            }
+        }
+
+        int size = engine.execute(42L, cartState -> cartState.getItems().size());
+        assertThat(size).isEqualTo(2_000);
+    }
+
+    @Test
+    void operationExceptionsReachTheCaller() {
+        assertThatThrownBy(() -> engine.execute(7L, cartState -> {
+            throw new IllegalArgumentException("bad operation");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessage("bad operation");
+    }
+}
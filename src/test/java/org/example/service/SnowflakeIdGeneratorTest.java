@@ -0,0 +1,105 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void idsAreUniqueAndIncreasingPerThreadUnderContention() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = 16;
+        int idsPerThread = 200_000;
+
+        List<long[]> batches = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    long[] ids = new long[idsPerThread];
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            for (Future<long[]> future : futures) {
+                batches.add(future.get());
+            }
+        }
+
+        long[] all = new long[threads * idsPerThread];
+        int offset = 0;
+        for (long[] ids : batches) {
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+            }
+            System.arraycopy(ids, 0, all, offset, ids.length);
+            offset += ids.length;
+        }
+
+        assertThat(all).doesNotHaveDuplicates();
+        assertThat(SnowflakeIdGenerator.nodeIdOf(all[0])).isEqualTo(7);
+    }
+
+    @Test
+    void clockGoingBackwardsNeverProducesSmallerIds() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-50_000);
+        long after = generator.nextId();
+
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void restartSeededWithRecoveredIdNeverReissuesBurstIds() {
+        long now = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000;
+        SnowflakeIdGenerator beforeRestart = new SnowflakeIdGenerator(0, () -> now);
+        long highest = 0;
+        // A burst of 10 000 ids within one millisecond runs the state ~2 ms ahead of the clock
+        for (int i = 0; i < 10_000; i++) {
+            highest = beforeRestart.nextId();
+        }
+        assertThat(SnowflakeIdGenerator.timestampOf(highest)).isGreaterThan(now);
+
+        SnowflakeIdGenerator afterRestart = new SnowflakeIdGenerator(0, () -> now);
+        assertThat(afterRestart.nextId()).isLessThan(highest);
+
+        afterRestart.advancePast(highest);
+        assertThat(afterRestart.nextId()).isGreaterThan(highest);
+
+        // Seeding never moves the state backwards
+        long next = afterRestart.nextId();
+        afterRestart.advancePast(1);
+        assertThat(afterRestart.nextId()).isGreaterThan(next);
+    }
+
+    @Test
+    void timestampIsEmbeddedInTheId() {
+        long now = SnowflakeIdGenerator.EPOCH_MILLIS + 123_456_789;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> now);
+
+        long id = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.timestampOf(id)).isEqualTo(now);
+        assertThat(SnowflakeIdGenerator.nodeIdOf(id)).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsNodeIdOutsideTenBits() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(1024))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Offset.offset;
+
+class TransactionIdGeneratorTest {
+
+    @Test
+    void formatRoundTripsAndSortsLikeTheNumbers() {
+        long[] ids = {0L, 1L, 31L, 32L, 1L << 40, Long.MAX_VALUE, -1L};
+        List<String> rendered = new ArrayList<>();
+        for (long id : ids) {
+            String text = TransactionIdGenerator.format(id);
+            assertThat(text).hasSize(4 + TransactionIdGenerator.ENCODED_LENGTH).startsWith("TXN-");
+            assertThat(TransactionIdGenerator.parse(text)).isEqualTo(id);
+            rendered.add(text);
+        }
+        assertThat(TransactionIdGenerator.format(0L)).isEqualTo("TXN-0000000000000");
+        assertThat(TransactionIdGenerator.format(-1L)).isEqualTo("TXN-FZZZZZZZZZZZZ");
+        // Unsigned order: -1 is the largest 64-bit pattern
+        assertThat(rendered).isSorted();
+
+        assertThatThrownBy(() -> TransactionIdGenerator.parse("TXN-1234ABCD"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionIdGenerator.parse("TXN-G000000000000"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void issuedIdsAreUniqueTimeOrderedAndCarryTheNode() {
+        TransactionIdGenerator generator = new TransactionIdGenerator(new SnowflakeIdGenerator(42));
+        String previous = "";
+        for (int i = 0; i < 100_000; i++) {
+            String next = generator.nextTransactionId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+        long id = TransactionIdGenerator.parse(previous);
+        assertThat(SnowflakeIdGenerator.nodeIdOf(id)).isEqualTo(42);
+        assertThat(SnowflakeIdGenerator.timestampOf(id)).isCloseTo(System.currentTimeMillis(),
+                offset(10_000L));
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.service.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.benchmark.PaymentRoutingBenchmark;
+import org.example.dto.payment.PaymentResponse.PaymentStatus;
+import org.example.model.payment.CreditCard;
+import org.example.model.payment.CustomerType;
+import org.example.model.payment.Money;
+import org.example.model.payment.Payment;
+import org.example.model.payment.PaymentKind;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentRoutingTableTest {
+
+    @Test
+    void defaultRulesDecideLikeTheSealedSwitch() {
+        PaymentRoutingTable table = new PaymentRouter(new DefaultResourceLoader(), new ObjectMapper(),
+                "classpath:payment-routes.json").current();
+        Random random = new Random(3);
+
+        List<Payment> payments = new ArrayList<>();
+        for (String edge : new String[] {"1000", "1000.00", "1000.01", "5000", "5000.01"}) {
+            payments.add(new CreditCard("4532", "Visa", "123", "12/25", new BigDecimal(edge), 1L));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            payments.add(PaymentRoutingBenchmark.randomPayment(random));
+        }
+
+        for (Payment payment : payments) {
+            for (CustomerType customerType : CustomerType.values()) {
+                for (boolean international : new boolean[] {false, true}) {
+                    PaymentRoute route = table.route(PaymentKind.of(payment), payment.getAmount(),
+                            international, customerType);
+                    assertThat(route.message()).as("%s %s %s", payment, customerType, international)
+                            .isEqualTo(PaymentRoutingBenchmark.sealedSwitch(payment, customerType, international));
+                }
+            }
+        }
+    }
+
+    @Test
+    void compiledLookupAgreesWithFirstMatchOverRandomRules() {
+        Random random = new Random(11);
+        for (int tableNo = 0; tableNo < 200; tableNo++) {
+            List<PaymentRoute> rules = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                rules.add(randomRule(random, PaymentKind.values()[random.nextInt(3)], i));
+            }
+            for (PaymentKind kind : PaymentKind.values()) {
+                rules.add(new PaymentRoute(kind, null, null, null, null, PaymentStatus.SUCCESS, false, "default"));
+            }
+            PaymentRoutingTable table = PaymentRoutingTable.compile(rules);
+
+            for (int i = 0; i < 500; i++) {
+                PaymentKind kind = PaymentKind.values()[random.nextInt(3)];
+                // Whole, cent and sub-cent amounts: long-cents and BigDecimal paths must agree
+                BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(4_000_000), 3)
+                        .setScale(random.nextInt(4), RoundingMode.DOWN);
+                boolean international = random.nextBoolean();
+                CustomerType customerType = CustomerType.values()[random.nextInt(3)];
+
+                PaymentRoute expected = table.routesFor(kind).stream()
+                        .filter(rule -> rule.matches(amount, international, customerType))
+                        .findFirst().orElseThrow();
+                assertThat(table.route(kind, amount, international, customerType)).isSameAs(expected);
+                assertThat(table.route(kind, amount, Money.NOT_CENTS, international, customerType)).isSameAs(expected);
+            }
+        }
+    }
+
+    @Test
+    void tablesThatLeaveAPaymentUnroutedAreRejected() {
+        List<PaymentRoute> rules = List.of(
+                new PaymentRoute(PaymentKind.CREDIT_CARD, new BigDecimal("100"), null, null, null,
+                        PaymentStatus.SUCCESS, false, "over 100"),
+                new PaymentRoute(PaymentKind.PAYPAL, null, null, null, null, PaymentStatus.SUCCESS, false, "paypal"),
+                new PaymentRoute(PaymentKind.BANK_TRANSFER, null, null, null, null, PaymentStatus.PENDING, false, "bank"));
+
+        assertThatThrownBy(() -> PaymentRoutingTable.compile(rules))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("CREDIT_CARD")
+                .hasMessageContaining("(-∞, 100]");
+    }
+
+    private static PaymentRoute randomRule(Random random, PaymentKind kind, int n) {
+        // Now and then a threshold that is not whole cents - its cells take the BigDecimal path
+        BigDecimal above = random.nextBoolean() ? BigDecimal.valueOf(random.nextInt(2_000_000), 3) : null;
+        BigDecimal atMost = random.nextBoolean() ? BigDecimal.valueOf(2_000 + random.nextInt(2_000)) : null;
+        Boolean international = switch (random.nextInt(3)) {
+            case 0 -> true;
+            case 1 -> false;
+            default -> null;
+        };
+        Set<CustomerType> customerTypes = random.nextBoolean()
+                ? Set.of(CustomerType.values()[random.nextInt(3)])
+                : null;
+        return new PaymentRoute(kind, above, atMost, international, customerTypes,
+                PaymentStatus.SUCCESS, false, "rule " + n);
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.service.velocity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentVelocityEngineTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong(Duration.ofDays(20_000).toMillis());
+
+    @Test
+    void windowsSlideAndLimitsFlagThePaymentThatBreaksThem() {
+        PaymentVelocityEngine engine = new PaymentVelocityEngine(1024,
+                VelocityLimits.parse("3,0,0", "0,0,100"), registry, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(engine.record(7, 20_00).isExceeded()).isFalse();
+        }
+        VelocityCheck fourth = engine.record(7, 20_00);
+        assertThat(fourth.getExceeded()).isEqualTo("4 payments in 1m (limit 3)");
+        assertThat(fourth.amount(VelocityWindow.ONE_DAY)).isEqualByComparingTo("80.00");
+        // Other customers are counted separately
+        assertThat(engine.record(8, 1).payments(VelocityWindow.ONE_MINUTE)).isEqualTo(1);
+
+        // Two minutes later the minute window is empty again, hour and day are not
+        clock.addAndGet(2 * MINUTE);
+        VelocityCheck later = engine.record(7, 30_00);
+        assertThat(later.payments(VelocityWindow.ONE_MINUTE)).isEqualTo(1);
+        assertThat(later.payments(VelocityWindow.ONE_HOUR)).isEqualTo(5);
+        assertThat(later.getExceeded()).isEqualTo("$110.00 in 24h (limit $100.00)");
+
+        clock.addAndGet(Duration.ofHours(25).toMillis());
+        VelocityCheck nextDay = engine.record(7, 1_00);
+        assertThat(nextDay.payments(VelocityWindow.ONE_DAY)).isEqualTo(1);
+        assertThat(nextDay.amount(VelocityWindow.ONE_DAY)).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(registry.get("payment.velocity.flagged").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentPaymentsAreAllCountedAndMemoryStaysBounded() throws Exception {
+        PaymentVelocityEngine engine = new PaymentVelocityEngine(64,
+                VelocityLimits.parse("0,0,0", "0,0,0"), registry, clock::get);
+        int threads = 8;
+        int paymentsPerThread = 5_000;
+
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < paymentsPerThread; i++) {
+                        engine.record(42, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        VelocityCheck check = engine.record(42, 1);
+        assertThat(check.payments(VelocityWindow.ONE_MINUTE)).isEqualTo(threads * paymentsPerThread + 1);
+        assertThat(check.amount(VelocityWindow.ONE_MINUTE)).isEqualByComparingTo("400.01");
+
+        // Far more customers than slots: the table never grows, quiet customers make room
+        for (long customer = 1_000; customer < 101_000; customer++) {
+            engine.record(customer, 1);
+        }
+        assertThat(engine.getSlotCount()).isEqualTo(64);
+        assertThat(registry.get("payment.velocity.evictions").counter().count()).isGreaterThan(99_000);
+    }
+}